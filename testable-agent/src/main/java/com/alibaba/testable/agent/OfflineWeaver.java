@@ -0,0 +1,303 @@
+package com.alibaba.testable.agent;
+
+import com.alibaba.testable.agent.config.ArgumentParser;
+import com.alibaba.testable.agent.config.PropertiesParser;
+import com.alibaba.testable.agent.handler.BaseClassHandler;
+import com.alibaba.testable.agent.model.WeaveRecord;
+import com.alibaba.testable.agent.tool.ClassPathIndex;
+import com.alibaba.testable.agent.tool.MockIndex;
+import com.alibaba.testable.agent.tool.WeaveIndex;
+import com.alibaba.testable.agent.transformer.TestableClassTransformer;
+import com.alibaba.testable.agent.util.ClassUtil;
+import com.alibaba.testable.agent.util.GlobalConfig;
+import com.alibaba.testable.agent.util.PreWovenUtil;
+import com.alibaba.testable.core.util.LogUtil;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import static com.alibaba.testable.agent.constant.ConstPool.PROPERTY_CLASS_PATH;
+
+/**
+ * Apply the agent transformation to compiled classes ahead of time, like the offline mode of JaCoCo
+ * Woven classes are written to separate folders with a marker, which will be skipped by agent at runtime.
+ * Classes whose transformation relies on the running JVM (e.g. mock classes) are copied as is.
+ * Usage: OfflineWeaver IndexFile ThreadCount AgentArgs InputFolder OutputFolder [InputFolder OutputFolder ...]
+ *
+ * @author flin
+ */
+public class OfflineWeaver {
+
+    private static final String CLASS_FILE_POSTFIX = ".class";
+    private static final int FIXED_ARG_COUNT = 3;
+
+    private final File indexFile;
+    private final int threadCount;
+    private final File[] inputRoots;
+    private final File[] outputRoots;
+    private final String environment;
+    private final TestableClassTransformer transformer = new TestableClassTransformer();
+
+    private final AtomicInteger wovenCount = new AtomicInteger();
+    private final AtomicInteger deferredCount = new AtomicInteger();
+    private final AtomicInteger copiedCount = new AtomicInteger();
+
+    public OfflineWeaver(File indexFile, int threadCount, File[] inputRoots, File[] outputRoots,
+                         String environment) {
+        this.indexFile = indexFile;
+        this.threadCount = threadCount;
+        this.inputRoots = inputRoots;
+        this.outputRoots = outputRoots;
+        this.environment = environment;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < FIXED_ARG_COUNT + 2 || (args.length - FIXED_ARG_COUNT) % 2 != 0) {
+            System.err.println("Usage: OfflineWeaver IndexFile ThreadCount AgentArgs InputFolder OutputFolder " +
+                "[InputFolder OutputFolder ...]");
+            System.exit(1);
+        }
+        String agentArgs = args[2].isEmpty() ? null : args[2];
+        ArgumentParser.parseArgs(agentArgs);
+        PropertiesParser.parseFile(ArgumentParser.configFilePath);
+        GlobalConfig.setupLogRootPath();
+        PreWovenUtil.setWeaving(true);
+        if (GlobalConfig.enableClassPathIndex) {
+            String classPath = System.getProperty(PROPERTY_CLASS_PATH);
+            ClassUtil.getClassNodeCache().setClassPathIndex(ClassPathIndex.build(classPath));
+        }
+        int rootCount = (args.length - FIXED_ARG_COUNT) / 2;
+        File[] inputRoots = new File[rootCount];
+        File[] outputRoots = new File[rootCount];
+        StringBuilder environment = new StringBuilder(String.format("%s|%d|%s|%d",
+            PreMain.class.getPackage().getImplementationVersion(), TestableClassTransformer.getAgentJarModifiedTime(),
+            agentArgs, getChecksum(new File(PropertiesParser.getFullPath(ArgumentParser.configFilePath)))));
+        for (int i = 0; i < rootCount; i++) {
+            inputRoots[i] = new File(args[FIXED_ARG_COUNT + i * 2]);
+            outputRoots[i] = new File(args[FIXED_ARG_COUNT + i * 2 + 1]);
+            // mock index changes relationship between classes without any class file changed
+            environment.append('|').append(inputRoots[i].getAbsolutePath()).append('>')
+                .append(outputRoots[i].getAbsolutePath()).append('|')
+                .append(getChecksum(new File(inputRoots[i], MockIndex.INDEX_FILE)));
+        }
+        int threadCount = Integer.parseInt(args[1]);
+        if (threadCount <= 0) {
+            threadCount = Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            new OfflineWeaver(new File(args[0]), threadCount, inputRoots, outputRoots, environment.toString()).weave();
+        } finally {
+            LogUtil.cleanup();
+        }
+    }
+
+    /**
+     * Weave classes changed since last time, or depending on any changed class
+     * @throws Exception failed to weave any class
+     */
+    public void weave() throws Exception {
+        WeaveIndex index = WeaveIndex.load(indexFile, environment);
+        // index is written only after all classes are woven, an index missing means last weaving not finished
+        if (indexFile.exists() && !indexFile.delete()) {
+            throw new IOException("Failed to delete index file " + indexFile.getAbsolutePath());
+        }
+        Map<String, File> classFiles = new HashMap<String, File>();
+        Map<String, Integer> classRoots = new HashMap<String, Integer>();
+        for (int i = 0; i < inputRoots.length; i++) {
+            collectFiles(i, inputRoots[i], "", classFiles, classRoots);
+        }
+        Set<String> changedClasses = new HashSet<String>();
+        for (String className : index.getClassNames()) {
+            if (!classFiles.containsKey(className)) {
+                // class removed
+                changedClasses.add(className);
+                deleteOutput(index.get(className).outputRoot, className);
+                index.remove(className);
+            }
+        }
+        for (Map.Entry<String, File> e : classFiles.entrySet()) {
+            String className = e.getKey();
+            WeaveIndex.Entry entry = index.isEnvironmentMatched() ? index.get(className) : null;
+            if (entry == null || entry.outputRoot != classRoots.get(className) ||
+                !getOutputFile(entry.outputRoot, className).isFile()) {
+                changedClasses.add(className);
+            } else if (entry.modifiedTime != e.getValue().lastModified()) {
+                long checksum = getChecksum(e.getValue());
+                if (checksum != entry.checksum) {
+                    changedClasses.add(className);
+                } else {
+                    // only touched, keep the woven class
+                    index.put(className, new WeaveIndex.Entry(entry.outputRoot, e.getValue().lastModified(),
+                        checksum, entry.dependencies));
+                }
+            }
+        }
+        List<String> classesToWeave = new ArrayList<String>();
+        for (String className : classFiles.keySet()) {
+            if (changedClasses.contains(className) || isAnyDependencyChanged(index.get(className), changedClasses)) {
+                classesToWeave.add(className);
+            }
+        }
+        weaveInParallel(classesToWeave, classFiles, classRoots, index);
+        File indexFolder = indexFile.getAbsoluteFile().getParentFile();
+        if (!indexFolder.isDirectory() && !indexFolder.mkdirs()) {
+            throw new IOException("Failed to create folder " + indexFolder.getAbsolutePath());
+        }
+        index.save(indexFile);
+        System.out.println(String.format("Woven %d classes, %d classes deferred to runtime, %d classes unchanged, " +
+                "%d resources copied", wovenCount.get(), deferredCount.get(),
+            classFiles.size() - classesToWeave.size(), copiedCount.get()));
+    }
+
+    private boolean isAnyDependencyChanged(WeaveIndex.Entry entry, Set<String> changedClasses) {
+        for (String dependency : entry.dependencies) {
+            if (changedClasses.contains(dependency)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void weaveInParallel(List<String> classNames, final Map<String, File> classFiles,
+                                 final Map<String, Integer> classRoots, final WeaveIndex index) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final String className : classNames) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        int root = classRoots.get(className);
+                        File classFile = classFiles.get(className);
+                        long modifiedTime = classFile.lastModified();
+                        byte[] bytes = readFile(classFile);
+                        WeaveRecord record = weaveClass(className, bytes, getOutputFile(root, className));
+                        record.dependencies.remove(className);
+                        index.put(className, new WeaveIndex.Entry(root, modifiedTime, getChecksum(bytes),
+                            record.dependencies));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private WeaveRecord weaveClass(String className, byte[] bytes, File outputFile) throws IOException {
+        PreWovenUtil.beginRecord();
+        byte[] transformedBytes;
+        WeaveRecord record;
+        try {
+            transformedBytes = transformer.transform(null, className, null, null, bytes);
+        } finally {
+            record = PreWovenUtil.endRecord();
+        }
+        if (transformedBytes == null || record.deferred) {
+            if (record.deferred) {
+                deferredCount.incrementAndGet();
+            }
+            writeFile(outputFile, bytes);
+        } else {
+            ClassNode cn = BaseClassHandler.readClassNode(transformedBytes);
+            PreWovenUtil.addMarker(cn, record);
+            writeFile(outputFile, BaseClassHandler.writeClassNode(cn));
+            wovenCount.incrementAndGet();
+        }
+        return record;
+    }
+
+    /**
+     * Collect class files recursively, and copy other resources to output folder directly
+     */
+    private void collectFiles(int root, File folder, String path, Map<String, File> classFiles,
+                              Map<String, Integer> classRoots) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = path + file.getName();
+            if (file.isDirectory()) {
+                collectFiles(root, file, name + "/", classFiles, classRoots);
+            } else if (name.endsWith(CLASS_FILE_POSTFIX)) {
+                String className = name.substring(0, name.length() - CLASS_FILE_POSTFIX.length());
+                if (!classFiles.containsKey(className)) {
+                    classFiles.put(className, file);
+                    classRoots.put(className, root);
+                }
+            } else {
+                File outputFile = new File(outputRoots[root], name);
+                if (outputFile.lastModified() != file.lastModified()) {
+                    writeFile(outputFile, readFile(file));
+                    outputFile.setLastModified(file.lastModified());
+                    copiedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private File getOutputFile(int root, String className) {
+        return new File(outputRoots[root], className + CLASS_FILE_POSTFIX);
+    }
+
+    private void deleteOutput(int root, String className) {
+        if (root < outputRoots.length) {
+            getOutputFile(root, className).delete();
+        }
+    }
+
+    private static long getChecksum(File file) {
+        try {
+            return file.isFile() ? getChecksum(readFile(file)) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long getChecksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int)file.length());
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        File folder = file.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Failed to create folder " + folder.getAbsolutePath());
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -2,13 +2,17 @@ package com.alibaba.testable.agent;
 
 import com.alibaba.testable.agent.config.ArgumentParser;
 import com.alibaba.testable.agent.config.PropertiesParser;
+import com.alibaba.testable.agent.tool.ClassPathIndex;
 import com.alibaba.testable.agent.transformer.TestableClassTransformer;
+import com.alibaba.testable.agent.util.ClassUtil;
 import com.alibaba.testable.agent.util.GlobalConfig;
+import com.alibaba.testable.core.util.ContextPropagationUtil;
 import com.alibaba.testable.core.util.LogUtil;
 import com.alibaba.ttl.threadpool.agent.TtlAgent;
 
 import java.lang.instrument.Instrumentation;
 
+import static com.alibaba.testable.agent.constant.ConstPool.PROPERTY_CLASS_PATH;
 import static com.alibaba.testable.agent.constant.ConstPool.PROPERTY_USER_DIR;
 
 /**
@@ -22,7 +26,11 @@ public class PreMain {
         PropertiesParser.parseFile(ArgumentParser.configFilePath);
         GlobalConfig.setupLogRootPath();
         LogUtil.info("TestableMock start at %s", System.getProperty(PROPERTY_USER_DIR));
-        if (GlobalConfig.enhanceThreadLocal) {
+        if (GlobalConfig.enableClassPathIndex) {
+            String classPath = System.getProperty(PROPERTY_CLASS_PATH);
+            ClassUtil.getClassNodeCache().setClassPathIndex(ClassPathIndex.build(classPath));
+        }
+        if (GlobalConfig.enhanceThreadLocal && !GlobalConfig.isLazyThreadPoolEnhance()) {
             // add transmittable thread local transformer
             TtlAgent.premain(agentArgs, inst);
         }
@@ -35,6 +43,12 @@ public class PreMain {
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
+                LogUtil.verbose("Class node cache hit %d times, missed %d times",
+                    ClassUtil.getClassNodeCache().getHitCount(), ClassUtil.getClassNodeCache().getMissCount());
+                if (GlobalConfig.isLazyThreadPoolEnhance()) {
+                    LogUtil.verbose("Mock context propagated to %d task submissions, skipped %d",
+                        ContextPropagationUtil.getCapturedCount(), ContextPropagationUtil.getSkippedCount());
+                }
                 LogUtil.cleanup();
             }
         });
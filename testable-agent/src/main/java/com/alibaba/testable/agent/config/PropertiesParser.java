@@ -26,15 +26,21 @@ public class PropertiesParser {
     private static final String INNER_MOCK_CLASS_NAME = "mock.innerClass.name";
     private static final String MOCK_PKG_MAPPING_PREFIX = "mock.package.mapping.";
     private static final String DEFAULT_MOCK_SCOPE = "mock.scope.default";
+    private static final String DEFAULT_MOCK_RECORD_MODE = "mock.recordMode.default";
+    private static final String MOCK_CONTEXT_MODE = "mock.context.mode";
     private static final String ENABLE_MOCK_TARGET_CHECK = "mock.target.checking.enable";
+    private static final String ENABLE_MOCK_INDEX = "mock.index.enable";
+    private static final String ENABLE_CLASS_PATH_INDEX = "classpath.index.enable";
     private static final String ENABLE_OMNI_INJECT = "omni.constructor.enhance.enable";
     private static final String ENABLE_FINAL_INJECT = "private.access.enhance.enable";
     private static final String ENABLE_THREAD_POOL = "thread.pool.enhance.enable";
+    private static final String THREAD_POOL_ENHANCE_MODE = "thread.pool.enhance.mode";
+    private static final String THREAD_POOL_PKG_PREFIX_INCLUDES = "thread.pool.enhance.pkgPrefix.includes";
+    private static final String ENABLE_BYTECODE_CACHE = "bytecode.cache.enable";
+    private static final String BYTECODE_CACHE_PATH = "bytecode.cache.path";
 
     public static void parseFile(String configFilePath) {
-        String path = (configFilePath == null) ? DEFAULT_CONFIG_FILE : configFilePath;
-        String fullPath = PathUtil.isAbsolutePath(path) ? path :
-            PathUtil.join(System.getProperty(PROPERTY_USER_DIR), path);
+        String fullPath = getFullPath(configFilePath);
         Properties pps = new Properties();
         try {
             InputStream in = new BufferedInputStream(new FileInputStream(fullPath));
@@ -51,6 +57,16 @@ public class PropertiesParser {
         parsePropertiesContent(pps);
     }
 
+    /**
+     * Get absolute path of the configure file
+     * @param configFilePath path from agent argument, null for default location
+     * @return absolute path of the file
+     */
+    public static String getFullPath(String configFilePath) {
+        String path = (configFilePath == null) ? DEFAULT_CONFIG_FILE : configFilePath;
+        return PathUtil.isAbsolutePath(path) ? path : PathUtil.join(System.getProperty(PROPERTY_USER_DIR), path);
+    }
+
     private static void parsePropertiesContent(Properties pps) {
         Enumeration<?> en = pps.propertyNames();
         while(en.hasMoreElements()) {
@@ -72,6 +88,10 @@ public class PropertiesParser {
                 GlobalConfig.addMockPackageMapping(k.substring(MOCK_PKG_MAPPING_PREFIX.length()), v);
             } else if (k.equals(DEFAULT_MOCK_SCOPE)) {
                 GlobalConfig.defaultMockScope = MockScope.of(v);
+            } else if (k.equals(DEFAULT_MOCK_RECORD_MODE)) {
+                GlobalConfig.setDefaultRecordMode(v);
+            } else if (k.equals(MOCK_CONTEXT_MODE)) {
+                GlobalConfig.setMockContextMode(v);
             } else if (k.equals(ENABLE_OMNI_INJECT)) {
                 GlobalConfig.enhanceOmniConstructor = Boolean.parseBoolean(v);
             } else if (k.equals(ENABLE_MOCK_INJECT)) {
@@ -80,8 +100,20 @@ public class PropertiesParser {
                 GlobalConfig.enhanceFinal = Boolean.parseBoolean(v);
             } else if (k.equals(ENABLE_MOCK_TARGET_CHECK)) {
                 GlobalConfig.checkMockTargetExistence = Boolean.parseBoolean(v);
+            } else if (k.equals(ENABLE_MOCK_INDEX)) {
+                GlobalConfig.enableMockIndex = Boolean.parseBoolean(v);
+            } else if (k.equals(ENABLE_CLASS_PATH_INDEX)) {
+                GlobalConfig.enableClassPathIndex = Boolean.parseBoolean(v);
             } else if (k.equals(ENABLE_THREAD_POOL)) {
                 GlobalConfig.enhanceThreadLocal = Boolean.parseBoolean(v);
+            } else if (k.equals(THREAD_POOL_ENHANCE_MODE)) {
+                GlobalConfig.setThreadPoolEnhanceMode(v);
+            } else if (k.equals(THREAD_POOL_PKG_PREFIX_INCLUDES)) {
+                GlobalConfig.setThreadPoolPkgPrefixWhiteList(v);
+            } else if (k.equals(ENABLE_BYTECODE_CACHE)) {
+                GlobalConfig.enableBytecodeCache = Boolean.parseBoolean(v);
+            } else if (k.equals(BYTECODE_CACHE_PATH)) {
+                GlobalConfig.setBytecodeCachePath(v);
             }
         }
     }
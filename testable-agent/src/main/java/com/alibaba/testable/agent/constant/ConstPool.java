@@ -9,11 +9,13 @@ public class ConstPool {
     public static final String FIELD_TARGET_CLASS = "targetClass";
     public static final String FIELD_TARGET_CLASS_NAME = "targetClassName";
     public static final String FIELD_SCOPE = "scope";
+    public static final String FIELD_RECORD_MODE = "recordMode";
     public static final String FIELD_VALUE = "value";
     public static final String FIELD_INHERITS = "inherits";
 
     public static final String PROPERTY_USER_DIR = "user.dir";
     public static final String PROPERTY_TEMP_DIR = "java.io.tmpdir";
+    public static final String PROPERTY_CLASS_PATH = "java.class.path";
 
     public static final String MOCK_CONTAINER = "com.alibaba.testable.core.annotation.MockContainer";
     public static final String MOCK_WITH = "com.alibaba.testable.core.annotation.MockWith";
@@ -27,4 +29,6 @@ public class ConstPool {
     public static final String KOTLIN_PREFIX_ACCESS = "access$";
 
     public static final String CLASS_OBJECT = "java/lang/Object";
+    public static final String CLASS_TESTABLE_TOOL = "com/alibaba/testable/core/tool/TestableTool";
+    public static final String FIELD_SOURCE_METHOD = "SOURCE_METHOD";
 }
@@ -15,21 +15,48 @@ abstract public class BaseClassHandler implements Opcodes {
     protected static final String VOID_RES = "V";
 
     public byte[] getBytes(byte[] classFileBuffer) {
+        ClassNode cn = readClassNode(classFileBuffer);
+        transform(cn);
+        return writeClassNode(cn);
+    }
+
+    /**
+     * Parse class byte code to class node
+     * @param classFileBuffer original class bytes
+     * @return class node
+     */
+    public static ClassNode readClassNode(byte[] classFileBuffer) {
         ClassReader cr = new ClassReader(classFileBuffer);
         ClassNode cn = new ClassNode();
         cr.accept(cn, 0);
-        transform(cn);
+        return cn;
+    }
 
+    /**
+     * Generate class byte code from class node
+     * @param cn class node
+     * @return class bytes
+     */
+    public static byte[] writeClassNode(ClassNode cn) {
         // flag 1 was auto compute max
         ClassWriter cw = new ClassWriter( ClassWriter.COMPUTE_MAXS);
         cn.accept(cw);
         return cw.toByteArray();
     }
 
+    /**
+     * Get information besides class bytes which affects transform result, used as key of bytecode cache
+     * @return signature of the transformation, null if transform result should not be cached
+     */
+    public String getCacheSignature() {
+        return null;
+    }
+
     /**
      * Transform class byte code
+     * Note: several handlers could be applied to the same class node in turn
      * @param cn original class node
      */
-    abstract protected void transform(ClassNode cn);
+    abstract public void transform(ClassNode cn);
 
 }
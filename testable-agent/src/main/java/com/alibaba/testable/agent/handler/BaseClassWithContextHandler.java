@@ -2,19 +2,20 @@ package com.alibaba.testable.agent.handler;
 
 import org.objectweb.asm.tree.*;
 
+import static com.alibaba.testable.agent.constant.ConstPool.CLASS_TESTABLE_TOOL;
+import static com.alibaba.testable.agent.constant.ConstPool.FIELD_SOURCE_METHOD;
+
 /**
  * @author flin
  */
 abstract public class BaseClassWithContextHandler extends BaseClassHandler {
 
     protected static final String CLASS_MOCK_CONTEXT_UTIL = "com/alibaba/testable/core/util/MockContextUtil";
-    private static final String CLASS_TESTABLE_TOOL = "com/alibaba/testable/core/tool/TestableTool";
     private static final String CLASS_TESTABLE_UTIL = "com/alibaba/testable/core/util/TestableUtil";
-    private static final String FIELD_SOURCE_METHOD = "SOURCE_METHOD";
     private static final String FIELD_MOCK_CONTEXT = "MOCK_CONTEXT";
     private static final String METHOD_PARAMETERS = "parameters";
-    private static final String METHOD_CURRENT_SOURCE_METHOD_NAME = "currentSourceMethodName";
-    private static final String SIGNATURE_CURRENT_SOURCE_METHOD_NAME = "()Ljava/lang/String;";
+    private static final String METHOD_SOURCE_METHOD_NAME = "sourceMethodName";
+    private static final String SIGNATURE_SOURCE_METHOD_NAME = "()Ljava/lang/String;";
     private static final String SIGNATURE_PARAMETERS = "()Ljava/util/Map;";
 
     protected void handleTestableUtil(MethodNode mn) {
@@ -39,8 +40,8 @@ abstract public class BaseClassWithContextHandler extends BaseClassHandler {
     private void replaceTestableUtilField(MethodNode mn, AbstractInsnNode[] instructions, String fieldName, int pos) {
         InsnList il = new InsnList();
         if (FIELD_SOURCE_METHOD.equals(fieldName)) {
-            il.add(new MethodInsnNode(INVOKESTATIC, CLASS_TESTABLE_UTIL, METHOD_CURRENT_SOURCE_METHOD_NAME,
-                SIGNATURE_CURRENT_SOURCE_METHOD_NAME, false));
+            il.add(new MethodInsnNode(INVOKESTATIC, CLASS_TESTABLE_UTIL, METHOD_SOURCE_METHOD_NAME,
+                SIGNATURE_SOURCE_METHOD_NAME, false));
         } else if (FIELD_MOCK_CONTEXT.equals(fieldName)) {
             il.add(new MethodInsnNode(INVOKESTATIC, CLASS_MOCK_CONTEXT_UTIL, METHOD_PARAMETERS,
                 SIGNATURE_PARAMETERS, false));
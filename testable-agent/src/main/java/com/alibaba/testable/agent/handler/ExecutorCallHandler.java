@@ -0,0 +1,91 @@
+package com.alibaba.testable.agent.handler;
+
+import org.objectweb.asm.tree.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wrap tasks submitted to executors, so that mock context could be propagated to thread pool lazily
+ *
+ * @author flin
+ */
+public class ExecutorCallHandler extends BaseClassHandler {
+
+    /**
+     * Names of submission methods, only class referring any of them need to be handled
+     */
+    public static final List<String> SUBMIT_METHODS = Arrays.asList("execute", "submit");
+
+    private static final String CLASS_CONTEXT_PROPAGATION_UTIL = "com/alibaba/testable/core/util/ContextPropagationUtil";
+    private static final String METHOD_WRAP = "wrap";
+    private static final String PARAMETER_RUNNABLE = "(Ljava/lang/Runnable;)";
+    private static final String PARAMETER_CALLABLE = "(Ljava/util/concurrent/Callable;)";
+    private static final String SIGNATURE_WRAP_RUNNABLE = "(Ljava/lang/Runnable;Ljava/lang/Object;)Ljava/lang/Runnable;";
+    private static final String SIGNATURE_WRAP_CALLABLE =
+        "(Ljava/util/concurrent/Callable;Ljava/lang/Object;)Ljava/util/concurrent/Callable;";
+    /**
+     * Classes loaded by bootstrap class loader can not refer to testable classes, and testable should not
+     * wrap its own invocations
+     */
+    private static final String[] EXCLUDED_PREFIXES = new String[] { "java/", "javax/", "jdk/",
+        "com/alibaba/testable/", "com/alibaba/ttl/" };
+
+    private int wrappedCount = 0;
+
+    @Override
+    public void transform(ClassNode cn) {
+        for (String prefix : EXCLUDED_PREFIXES) {
+            if (cn.name.startsWith(prefix)) {
+                return;
+            }
+        }
+        for (MethodNode mn : cn.methods) {
+            for (AbstractInsnNode node : mn.instructions.toArray()) {
+                if (node.getOpcode() == INVOKEINTERFACE || node.getOpcode() == INVOKEVIRTUAL) {
+                    String signature = getWrapSignature((MethodInsnNode)node);
+                    if (signature != null) {
+                        injectTaskWrapper(mn, node, signature);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether any submission is wrapped
+     */
+    public boolean isTransformed() {
+        return wrappedCount > 0;
+    }
+
+    /**
+     * Only single-task submissions e.g. "execute(Runnable)", "submit(Runnable)" and "submit(Callable)" are
+     * wrapped, whether the receiver is an executor is checked at runtime
+     * @return signature of wrapper method, null if not a submission
+     */
+    private String getWrapSignature(MethodInsnNode node) {
+        if (!SUBMIT_METHODS.contains(node.name)) {
+            return null;
+        } else if (node.desc.startsWith(PARAMETER_RUNNABLE)) {
+            return SIGNATURE_WRAP_RUNNABLE;
+        } else if (node.desc.startsWith(PARAMETER_CALLABLE)) {
+            return SIGNATURE_WRAP_CALLABLE;
+        }
+        return null;
+    }
+
+    /**
+     * Stack: executor, task → task, executor → executor, task, executor → executor, wrapped task
+     */
+    private void injectTaskWrapper(MethodNode mn, AbstractInsnNode invokeNode, String signature) {
+        InsnList il = new InsnList();
+        il.add(new InsnNode(SWAP));
+        il.add(new InsnNode(DUP_X1));
+        il.add(new MethodInsnNode(INVOKESTATIC, CLASS_CONTEXT_PROPAGATION_UTIL, METHOD_WRAP, signature, false));
+        mn.instructions.insertBefore(invokeNode, il);
+        mn.maxStack++;
+        wrappedCount++;
+    }
+
+}
@@ -9,7 +9,7 @@ import org.objectweb.asm.tree.FieldNode;
 public class FinalFieldClassHandler extends BaseClassHandler {
 
     @Override
-    protected void transform(ClassNode cn) {
+    public void transform(ClassNode cn) {
         if ((cn.access & ACC_INTERFACE) == 0) {
             for (FieldNode field : cn.fields) {
                 field.access &= ~ACC_FINAL;
@@ -2,6 +2,7 @@ package com.alibaba.testable.agent.handler;
 
 import com.alibaba.testable.agent.tool.ImmutablePair;
 import com.alibaba.testable.agent.util.*;
+import com.alibaba.testable.core.model.InvokeRecord;
 import com.alibaba.testable.core.model.MockScope;
 import com.alibaba.testable.core.util.LogUtil;
 import com.alibaba.testable.core.util.MockAssociationUtil;
@@ -27,13 +28,22 @@ public class MockClassHandler extends BaseClassWithContextHandler {
 
     private static final String CLASS_INVOKE_RECORD_UTIL = "com/alibaba/testable/core/util/InvokeRecordUtil";
     private static final String CLASS_MOCK_ASSOCIATION_UTIL = "com/alibaba/testable/core/util/MockAssociationUtil";
-    private static final String METHOD_INVOKE_ORIGIN = "invokeOrigin";
-    private static final String SIGNATURE_INVOKE_ORIGIN =
+    private static final String METHOD_INVOKE_ORIGIN_CONSTRUCTOR = "invokeOriginConstructor";
+    private static final String SIGNATURE_INVOKE_ORIGIN_CONSTRUCTOR =
         "(Ljava/lang/Class;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String METHOD_INVOKE_ORIGIN_METHOD = "invokeOriginMethod";
+    private static final String SIGNATURE_INVOKE_ORIGIN_METHOD = "(Ljava/lang/Class;Ljava/lang/String;" +
+        "Ljava/lang/String;Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
     private static final String METHOD_RECORD_MOCK_INVOKE = "recordMockInvoke";
-    private static final String SIGNATURE_RECORDER_METHOD_INVOKE = "([Ljava/lang/Object;Z)V";
+    private static final String SIGNATURE_RECORDER_METHOD_INVOKE =
+        "([Ljava/lang/Object;ZLjava/lang/String;Ljava/lang/String;)V";
+    private static final String SIGNATURE_RECORDER_METHOD_INVOKE_POSTFIX = "ZLjava/lang/String;Ljava/lang/String;)V";
+    /**
+     * Parameter types which have primitive-specialized recorder, to avoid boxing and array allocation
+     */
+    private static final List<String> PRIMARY_RECORDER_PARAMETERS = fastListOf("", "I", "J", "II", "JJ");
     private static final String METHOD_IS_ASSOCIATED = "isAssociated";
-    private static final String SIGNATURE_IS_ASSOCIATED = "()Z";
+    private static final String SIGNATURE_IS_ASSOCIATED = "(I)Z";
     private static final String SELF_REF = "__self";
     private static final String TESTABLE_REF = "__testable";
 
@@ -44,7 +54,7 @@ public class MockClassHandler extends BaseClassWithContextHandler {
     }
 
     @Override
-    protected void transform(ClassNode cn) {
+    public void transform(ClassNode cn) {
         LogUtil.diagnose("Found mock class %s", cn.name);
         if (!CLASS_OBJECT.equals(cn.superName)) {
             MockAssociationUtil.recordSubMockContainer(ClassUtil.toDotSeparatedName(cn.superName),
@@ -231,13 +241,16 @@ public class MockClassHandler extends BaseClassWithContextHandler {
         }
         LabelNode firstLine = new LabelNode(new Label());
         InsnList il = new InsnList();
+        // mock class id is assigned in current jvm, so mock class should never be saved to bytecode cache
+        int mockClassId = MockAssociationUtil.getMockClassId(ClassUtil.toDotSeparatedName(mockClassName));
+        il.add(BytecodeUtil.getIntInsn(mockClassId));
         il.add(new MethodInsnNode(INVOKESTATIC, CLASS_MOCK_ASSOCIATION_UTIL, METHOD_IS_ASSOCIATED,
             SIGNATURE_IS_ASSOCIATED, false));
         il.add(new JumpInsnNode(IFNE, firstLine));
         il.add(invokeOriginalMethod(mn));
         il.add(firstLine);
         il.add(new FrameNode(F_SAME, 0, null, 0, null));
-        mn.maxStack = Math.max(6, mn.maxStack);
+        mn.maxStack = Math.max(9, mn.maxStack);
         mn.instructions.insertBefore(mn.instructions.getFirst(), il);
     }
 
@@ -245,10 +258,21 @@ public class MockClassHandler extends BaseClassWithContextHandler {
         InsnList il = new InsnList();
         ImmutablePair<Type, String> target = getTargetClassAndMethodName(mn);
         il.add(new LdcInsnNode(target.left));
-        il.add(new LdcInsnNode(target.right));
-        il.add(duplicateParameters(mn));
-        il.add(new MethodInsnNode(INVOKESTATIC, CLASS_MOCK_ASSOCIATION_UTIL, METHOD_INVOKE_ORIGIN,
-            SIGNATURE_INVOKE_ORIGIN, false));
+        // parameter types are passed to resolve the exact original method, which will be cached at runtime
+        if (isMockForConstructor(mn)) {
+            il.add(new LdcInsnNode(MethodUtil.extractParameters(mn.desc)));
+            il.add(duplicateParameters(mn, 0));
+            il.add(new MethodInsnNode(INVOKESTATIC, CLASS_MOCK_ASSOCIATION_UTIL, METHOD_INVOKE_ORIGIN_CONSTRUCTOR,
+                SIGNATURE_INVOKE_ORIGIN_CONSTRUCTOR, false));
+        } else {
+            il.add(new LdcInsnNode(target.right));
+            il.add(new LdcInsnNode(MethodUtil.extractParameters(MethodUtil.removeFirstParameter(mn.desc))));
+            // pass target object apart from other parameters, to avoid slicing parameter array
+            il.add(new VarInsnNode(ALOAD, MethodUtil.isStatic(mn) ? 0 : 1));
+            il.add(duplicateParameters(mn, 1));
+            il.add(new MethodInsnNode(INVOKESTATIC, CLASS_MOCK_ASSOCIATION_UTIL, METHOD_INVOKE_ORIGIN_METHOD,
+                SIGNATURE_INVOKE_ORIGIN_METHOD, false));
+        }
         String returnType = MethodUtil.getReturnType(mn.desc);
         if (VOID_RES.equals(returnType)) {
             il.add(new InsnNode(POP));
@@ -354,28 +378,81 @@ public class MockClassHandler extends BaseClassWithContextHandler {
 
     private void injectInvokeRecorder(MethodNode mn) {
         InsnList il = new InsnList();
-        il.add(duplicateParameters(mn));
-        if (isMockForConstructor(mn)) {
-            il.add(new InsnNode(ICONST_1));
+        boolean isConstructor = isMockForConstructor(mn);
+        String recordMode = getRecordMode(mn);
+        // target object (first parameter of mock method) is not recorded
+        int firstRecordParameter = isConstructor ? 0 : 1;
+        List<Byte> types = MethodUtil.getParameterTypes(mn.desc);
+        StringBuilder recordParameters = new StringBuilder();
+        for (Byte type : types.subList(firstRecordParameter, types.size())) {
+            recordParameters.append((char)type.byteValue());
+        }
+        String signature;
+        if (!InvokeRecord.of(recordMode).isArgumentRetained()) {
+            // no need to pass parameters which would not be retained
+            signature = "(" + SIGNATURE_RECORDER_METHOD_INVOKE_POSTFIX;
+        } else if (PRIMARY_RECORDER_PARAMETERS.contains(recordParameters.toString())) {
+            il.add(loadParameters(mn, firstRecordParameter));
+            signature = "(" + recordParameters + SIGNATURE_RECORDER_METHOD_INVOKE_POSTFIX;
         } else {
-            il.add(new InsnNode(ICONST_0));
+            il.add(duplicateParameters(mn, firstRecordParameter));
+            signature = SIGNATURE_RECORDER_METHOD_INVOKE;
         }
+        il.add(new InsnNode(isConstructor ? ICONST_1 : ICONST_0));
+        il.add(new LdcInsnNode(mn.name));
+        il.add(new LdcInsnNode(recordMode));
         il.add(new MethodInsnNode(INVOKESTATIC, CLASS_INVOKE_RECORD_UTIL, METHOD_RECORD_MOCK_INVOKE,
-            SIGNATURE_RECORDER_METHOD_INVOKE, false));
+            signature, false));
         mn.instructions.insertBefore(mn.instructions.getFirst(), il);
-        mn.maxStack += (2 + MethodUtil.getParameterTypes(mn.desc).size() * 3);
+        mn.maxStack += (4 + types.size() * 3);
+    }
+
+    private String getRecordMode(MethodNode mn) {
+        for (AnnotationNode an : mn.visibleAnnotations) {
+            if (isMockMethodAnnotation(an) || isMockNewAnnotation(an)) {
+                String mode = AnnotationUtil.getAnnotationParameter(an, FIELD_RECORD_MODE, "", String.class);
+                if (mode.isEmpty()) {
+                    break;
+                } else if (InvokeRecord.isValidMode(mode)) {
+                    return mode;
+                }
+                LogUtil.warn("Invalid record mode \"%s\" of mock method \"%s\", use default mode instead",
+                    mode, mn.name);
+            }
+        }
+        return GlobalConfig.getDefaultRecordMode();
+    }
+
+    /**
+     * load parameters to stack as they are
+     * @param firstParameter index of the first parameter to load
+     */
+    private InsnList loadParameters(MethodNode mn, int firstParameter) {
+        InsnList il = new InsnList();
+        List<Byte> types = MethodUtil.getParameterTypes(mn.desc);
+        int parameterOffset = getParameterOffset(mn, types, firstParameter);
+        for (int i = firstParameter; i < types.size(); i++) {
+            ImmutablePair<Integer, Integer> code = BytecodeUtil.getLoadParameterByteCode(types.get(i));
+            il.add(new VarInsnNode(code.left, parameterOffset));
+            parameterOffset += code.right;
+        }
+        return il;
     }
 
-    private InsnList duplicateParameters(MethodNode mn) {
+    /**
+     * load parameters to stack as an object array, primary type parameters are boxed
+     * @param firstParameter index of the first parameter to put into array
+     */
+    private InsnList duplicateParameters(MethodNode mn, int firstParameter) {
         InsnList il = new InsnList();
         List<Byte> types = MethodUtil.getParameterTypes(mn.desc);
         int size = types.size();
-        il.add(BytecodeUtil.getIntInsn(size));
+        il.add(BytecodeUtil.getIntInsn(size - firstParameter));
         il.add(new TypeInsnNode(ANEWARRAY, CLASS_OBJECT));
-        int parameterOffset = MethodUtil.isStatic(mn) ? 0 : 1;
-        for (int i = 0; i < size; i++) {
+        int parameterOffset = getParameterOffset(mn, types, firstParameter);
+        for (int i = firstParameter; i < size; i++) {
             il.add(new InsnNode(DUP));
-            il.add(BytecodeUtil.getIntInsn(i));
+            il.add(BytecodeUtil.getIntInsn(i - firstParameter));
             ImmutablePair<Integer, Integer> code = BytecodeUtil.getLoadParameterByteCode(types.get(i));
             il.add(new VarInsnNode(code.left, parameterOffset));
             parameterOffset += code.right;
@@ -388,6 +465,14 @@ public class MockClassHandler extends BaseClassWithContextHandler {
         return il;
     }
 
+    private int getParameterOffset(MethodNode mn, List<Byte> types, int parameterIndex) {
+        int parameterOffset = MethodUtil.isStatic(mn) ? 0 : 1;
+        for (int i = 0; i < parameterIndex; i++) {
+            parameterOffset += BytecodeUtil.getLoadParameterByteCode(types.get(i)).right;
+        }
+        return parameterOffset;
+    }
+
     private boolean isMockForConstructor(MethodNode mn) {
         for (AnnotationNode an : mn.visibleAnnotations) {
             String annotationName = ClassUtil.toJavaStyleClassName(an.desc);
@@ -51,7 +51,7 @@ public class OmniClassHandler extends BaseClassHandler {
     private static final Map<String, Class<?>[]> constructorParameterCache = new HashMap<String, Class<?>[]>();
 
     @Override
-    protected void transform(ClassNode cn) {
+    public void transform(ClassNode cn) {
         if (isInterfaceOrAtom(cn) || isUniqueConstructorClass(cn) || isUninstantiableClass(cn) ||
                 AnnotationUtil.getClassAnnotation(cn, ENABLE_CONFIGURATION) != null) {
             return;
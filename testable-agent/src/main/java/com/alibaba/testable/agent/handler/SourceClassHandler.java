@@ -3,8 +3,8 @@ package com.alibaba.testable.agent.handler;
 import com.alibaba.testable.agent.model.BasicType;
 import com.alibaba.testable.agent.model.BsmArg;
 import com.alibaba.testable.agent.model.MethodInfo;
-import com.alibaba.testable.agent.model.TravelStatus;
-import com.alibaba.testable.agent.util.BytecodeUtil;
+import com.alibaba.testable.agent.tool.MockMethodIndex;
+import com.alibaba.testable.agent.tool.StackLevelMap;
 import com.alibaba.testable.agent.util.ClassUtil;
 import com.alibaba.testable.agent.util.MethodUtil;
 import com.alibaba.testable.core.util.LogUtil;
@@ -22,54 +22,77 @@ import static com.alibaba.testable.core.constant.ConstPool.DOLLAR;
  */
 public class SourceClassHandler extends BaseClassHandler {
 
+    private static final String CLASS_TESTABLE_UTIL = "com/alibaba/testable/core/util/TestableUtil";
+    private static final String METHOD_SET_SOURCE_METHOD_NAME = "setSourceMethodName";
+    private static final String SIGNATURE_SET_SOURCE_METHOD_NAME = "(Ljava/lang/String;)Ljava/lang/String;";
+    private static final String METHOD_RESET_SOURCE_METHOD_NAME = "resetSourceMethodName";
+    private static final String SIGNATURE_RESET_SOURCE_METHOD_NAME = "(Ljava/lang/String;)V";
+    private static final String CLASS_STRING = "java/lang/String";
+    private static final String CLASS_THROWABLE = "java/lang/Throwable";
+
     private final AtomicInteger atomicInteger = new AtomicInteger();
     private final String mockClassName;
     private final List<MethodInfo> injectMethods;
+    private final MockMethodIndex mockMethodIndex;
     private final Set<Integer> invokeOps = new HashSet<Integer>() {{
         add(Opcodes.INVOKEVIRTUAL);
         add(Opcodes.INVOKESPECIAL);
         add(Opcodes.INVOKESTATIC);
         add(Opcodes.INVOKEINTERFACE);
     }};
+    private String ownerClassName;
+    private boolean frameRequired;
+    /**
+     * Local variable slot keeping the previous source method name, allocated once for each method
+     */
+    private int previousNameSlot;
+    /**
+     * Index of the instruction invoking super (or another) constructor, 0 if not in a constructor
+     */
+    private int superConstructorIndex;
 
     public SourceClassHandler(List<MethodInfo> injectMethods, String mockClassName) {
         this.injectMethods = injectMethods;
+        this.mockMethodIndex = new MockMethodIndex(injectMethods);
         this.mockClassName = mockClassName;
     }
 
+    @Override
+    public String getCacheSignature() {
+        StringBuilder sb = new StringBuilder(mockClassName);
+        for (MethodInfo m : injectMethods) {
+            sb.append('|').append(m.getClazz()).append(' ').append(m.getName()).append(' ').append(m.getDesc())
+                .append(' ').append(m.getMockClass()).append(' ').append(m.getMockName()).append(' ')
+                .append(m.getMockDesc()).append(' ').append(m.isStatic()).append(' ').append(m.isUsingSourceMethod());
+        }
+        return sb.toString();
+    }
+
     /**
      * Handle bytecode of source class
      *
      * @param cn original class node
      */
     @Override
-    protected void transform(ClassNode cn) {
+    public void transform(ClassNode cn) {
         LogUtil.diagnose("Found source class %s", cn.name);
-        if (injectMethods.isEmpty()) {
+        if (mockMethodIndex.isEmpty()) {
             return;
         }
 
-        Set<MethodInfo> memberInjectMethods = new HashSet<MethodInfo>();
-        Set<MethodInfo> newOperatorInjectMethods = new HashSet<MethodInfo>();
-        for (MethodInfo im : injectMethods) {
-            if (im.getName().equals(CONSTRUCTOR)) {
-                newOperatorInjectMethods.add(im);
-            } else {
-                memberInjectMethods.add(im);
-            }
-        }
-
-        if (!memberInjectMethods.isEmpty()) {
-            resolveMethodReference(cn, memberInjectMethods);
+        if (!mockMethodIndex.getMemberMethods().isEmpty()) {
+            resolveMethodReference(cn, mockMethodIndex.getMemberMethods());
         }
+        ownerClassName = cn.name;
+        // class file before java 6 has no stack map frame
+        frameRequired = (cn.version & 0xFFFF) >= V1_6;
 
         for (MethodNode m : cn.methods) {
-            transformMethod(m, memberInjectMethods, newOperatorInjectMethods);
+            transformMethod(m);
         }
     }
 
-    private void transformMethod(MethodNode mn, Set<MethodInfo> memberInjectMethods,
-                                 Set<MethodInfo> newOperatorInjectMethods) {
+    private void transformMethod(MethodNode mn) {
         LogUtil.verbose("   Found method %s", mn.name);
         if (mn.name.startsWith(DOLLAR)) {
             // skip methods e.g. "$jacocoInit"
@@ -80,205 +103,102 @@ public class SourceClassHandler extends BaseClassHandler {
             // native method (issue-52)
             return;
         }
-        int i = 0;
-        do {
-            if (invokeOps.contains(instructions[i].getOpcode())) {
-                MethodInsnNode node = (MethodInsnNode) instructions[i];
-                if (CONSTRUCTOR.equals(node.name)) {
-                    if (LogUtil.isVerboseEnabled()) {
-                        LogUtil.verbose("     Line %d, constructing \"%s\"", getLineNum(instructions, i),
-                                MethodUtil.toJavaMethodDesc(node.owner, node.desc));
-                    }
-                    MethodInfo newOperatorInjectMethod = getNewOperatorInjectMethod(newOperatorInjectMethods, node);
-                    if (newOperatorInjectMethod != null) {
-                        // it's a new operation and an inject method for it exist
-                        int rangeStart = getConstructorStart(instructions, node.owner, i);
-                        if (rangeStart >= 0) {
-                            if (rangeStart < i) {
-                                handleFrameStackChange(mn, newOperatorInjectMethod, rangeStart, i);
-                            }
-                            instructions = replaceNewOps(mn, newOperatorInjectMethod, instructions, rangeStart, i);
-                            i = rangeStart;
+        StackLevelMap stackLevelMap = new StackLevelMap(instructions);
+        previousNameSlot = -1;
+        superConstructorIndex = getSuperConstructorIndex(mn, instructions, stackLevelMap);
+        // first node of the code snippet starting at each instruction, changed when byte code inserted before it
+        AbstractInsnNode[] heads = instructions.clone();
+        for (int i = 0; i < instructions.length; i++) {
+            if (!invokeOps.contains(instructions[i].getOpcode())) {
+                continue;
+            }
+            MethodInsnNode node = (MethodInsnNode) instructions[i];
+            if (CONSTRUCTOR.equals(node.name)) {
+                if (LogUtil.isVerboseEnabled()) {
+                    LogUtil.verbose("     Line %d, constructing \"%s\"", stackLevelMap.getLineNum(i),
+                            MethodUtil.toJavaMethodDesc(node.owner, node.desc));
+                }
+                MethodInfo newOperatorInjectMethod = mockMethodIndex.getNewOperatorMethod(node.owner, node.desc);
+                if (newOperatorInjectMethod != null) {
+                    // it's a new operation and an inject method for it exist
+                    int rangeStart = stackLevelMap.getConstructorStart(i);
+                    if (rangeStart >= 0) {
+                        if (rangeStart < i) {
+                            handleFrameStackChange(newOperatorInjectMethod, heads[rangeStart], node);
                         }
+                        replaceNewOps(mn, newOperatorInjectMethod, instructions, heads, rangeStart, i,
+                                stackLevelMap.getLineNum(rangeStart));
                     }
-                } else {
-                    if (LogUtil.isVerboseEnabled()) {
-                        LogUtil.verbose("     Line %d, invoking \"%s\"", getLineNum(instructions, i),
-                                MethodUtil.toJavaMethodDesc(node.owner, node.name, node.desc));
-                    }
-                    MethodInfo mockMethod = getMemberInjectMethodName(memberInjectMethods, node);
-                    if (mockMethod != null) {
-                        // it's a member or static method and an inject method for it exist
-                        int rangeStart = getMemberMethodStart(instructions, i);
-                        if (rangeStart >= 0) {
-                            if (rangeStart < i) {
-                                handleFrameStackChange(mn, mockMethod, rangeStart, i);
-                            }
-                            instructions = replaceMemberCallOps(mn, mockMethod,
-                                    instructions, node.owner, node.getOpcode(), rangeStart, i);
-                            i = rangeStart;
-                        } else {
-                            LogUtil.warn("Potential missed mocking at %s:%s", mn.name, getLineNum(instructions, i));
+                }
+            } else {
+                if (LogUtil.isVerboseEnabled()) {
+                    LogUtil.verbose("     Line %d, invoking \"%s\"", stackLevelMap.getLineNum(i),
+                            MethodUtil.toJavaMethodDesc(node.owner, node.name, node.desc));
+                }
+                MethodInfo mockMethod = mockMethodIndex.getMemberMethod(node.owner, node.name, node.desc);
+                if (mockMethod != null) {
+                    // it's a member or static method and an inject method for it exist
+                    int rangeStart = stackLevelMap.getMemberMethodStart(i);
+                    if (rangeStart >= 0) {
+                        if (rangeStart < i) {
+                            handleFrameStackChange(mockMethod, heads[rangeStart], node);
                         }
+                        replaceMemberCallOps(mn, mockMethod, instructions, heads, node.owner, node.getOpcode(),
+                                rangeStart, i, stackLevelMap.getLineNum(rangeStart));
+                    } else {
+                        LogUtil.warn("Potential missed mocking at %s:%s", mn.name, stackLevelMap.getLineNum(i));
                     }
                 }
             }
-
-            i++;
-        } while (i < instructions.length);
-    }
-
-    /**
-     * find the mock method fit for specified method node
-     *
-     * @param memberInjectMethods mock methods available
-     * @param node                method node to match for
-     * @return mock method info
-     */
-    private MethodInfo getMemberInjectMethodName(Set<MethodInfo> memberInjectMethods, MethodInsnNode node) {
-        for (MethodInfo m : memberInjectMethods) {
-            String nodeOwner = ClassUtil.fitCompanionClassName(node.owner);
-            String nodeName = ClassUtil.fitKotlinAccessorName(node.name);
-            // Kotlin accessor method will append an extra type parameter
-            String nodeDesc = nodeName.equals(node.name) ? node.desc : MethodUtil.removeFirstParameter(node.desc);
-            if (m.getClazz().equals(nodeOwner) && m.getName().equals(nodeName) && m.getDesc().equals(nodeDesc)) {
-                return m;
-            }
         }
-        return null;
     }
 
-    private MethodInfo getNewOperatorInjectMethod(Set<MethodInfo> newOperatorInjectMethods, MethodInsnNode node) {
-        for (MethodInfo m : newOperatorInjectMethods) {
-            if (m.getDesc().equals(getConstructorInjectDesc(node))) {
-                return m;
-            }
+    private int getSuperConstructorIndex(MethodNode mn, AbstractInsnNode[] instructions,
+                                         StackLevelMap stackLevelMap) {
+        if (!CONSTRUCTOR.equals(mn.name)) {
+            return 0;
         }
-        return null;
-    }
-
-    private String getConstructorInjectDesc(MethodInsnNode constructorNode) {
-        return constructorNode.desc.substring(0, constructorNode.desc.length() - 1) +
-                ClassUtil.toByteCodeClassName(constructorNode.owner);
-    }
-
-    private int getConstructorStart(AbstractInsnNode[] instructions, String target, int rangeEnd) {
-        for (int i = rangeEnd - 1; i >= 0; i--) {
-            if (instructions[i].getOpcode() == Opcodes.NEW && ((TypeInsnNode) instructions[i]).desc.equals(target)) {
+        for (int i = 0; i < instructions.length; i++) {
+            if (instructions[i].getOpcode() == INVOKESPECIAL && CONSTRUCTOR.equals(((MethodInsnNode)instructions[i]).name)
+                    && stackLevelMap.getConstructorStart(i) < 0) {
                 return i;
             }
         }
-        return -1;
-    }
-
-    private int getMemberMethodStart(AbstractInsnNode[] instructions, int rangeEnd) {
-        int stackLevel = getInitialStackLevel((MethodInsnNode) instructions[rangeEnd]);
-        if (stackLevel < 0) {
-            return rangeEnd;
-        }
-        Label labelToJump = null;
-        TravelStatus status = TravelStatus.Normal;
-        for (int i = rangeEnd - 1; i >= 0; i--) {
-            switch (status) {
-                case Normal:
-                    if (instructions[i] instanceof FrameNode) {
-                        status = TravelStatus.LookingForLabel;
-                    } else {
-                        stackLevel += getStackLevelChange(instructions[i]);
-                        if (stackLevel < 0) {
-                            return i;
-                        }
-                    }
-                    break;
-                case LookingForLabel:
-                    if (instructions[i] instanceof LabelNode) {
-                        labelToJump = ((LabelNode) instructions[i]).getLabel();
-                        status = TravelStatus.LookingForJump;
-                    }
-                    break;
-                case LookingForJump:
-                    if (instructions[i] instanceof JumpInsnNode &&
-                            ((JumpInsnNode) instructions[i]).label.getLabel().equals(labelToJump)) {
-                        stackLevel += getStackLevelChange(instructions[i]);
-                        labelToJump = null;
-                        status = TravelStatus.Normal;
-                    }
-                    break;
-                default:
-                    break;
-            }
-        }
-        return -1;
-    }
-
-    private int getInitialStackLevel(MethodInsnNode instruction) {
-        int stackLevel = MethodUtil.getParameterTypes((instruction).desc).size();
-        switch (instruction.getOpcode()) {
-            case Opcodes.INVOKESPECIAL:
-            case Opcodes.INVOKEVIRTUAL:
-            case Opcodes.INVOKEINTERFACE:
-                return stackLevel;
-            case Opcodes.INVOKESTATIC:
-            case Opcodes.INVOKEDYNAMIC:
-                return stackLevel - 1;
-            default:
-                return 0;
-        }
-    }
-
-    private int getStackLevelChange(AbstractInsnNode instruction) {
-        switch (instruction.getOpcode()) {
-            case Opcodes.INVOKESPECIAL:
-            case Opcodes.INVOKEVIRTUAL:
-            case Opcodes.INVOKEINTERFACE:
-                return stackEffectOfInvocation(((MethodInsnNode) instruction).desc) + 1;
-            case Opcodes.INVOKESTATIC:
-                return stackEffectOfInvocation(((MethodInsnNode) instruction).desc);
-            case Opcodes.INVOKEDYNAMIC:
-                return stackEffectOfInvocation(((InvokeDynamicInsnNode) instruction).desc);
-            case -1:
-                // either LabelNode or LineNumberNode
-                return 0;
-            default:
-                return -BytecodeUtil.stackEffect(instruction.getOpcode());
-        }
-    }
-
-    private int stackEffectOfInvocation(String desc) {
-        return MethodUtil.getParameterTypes(desc).size() - (MethodUtil.getReturnType(desc).equals(VOID_RES) ? 0 : 1);
+        return 0;
     }
 
-    private AbstractInsnNode[] replaceNewOps(MethodNode mn, MethodInfo newOperatorInjectMethod,
-                                             AbstractInsnNode[] instructions, int start, int end) {
+    private void replaceNewOps(MethodNode mn, MethodInfo newOperatorInjectMethod, AbstractInsnNode[] instructions,
+                               AbstractInsnNode[] heads, int start, int end, int lineNum) {
         String mockMethodName = newOperatorInjectMethod.getMockName();
         int invokeOpcode = newOperatorInjectMethod.isStatic() ? INVOKESTATIC : INVOKEVIRTUAL;
-        String log = String.format("Line %d, mock method \"%s\" used", getLineNum(instructions, start), mockMethodName);
         if (LogUtil.isVerboseEnabled()) {
-            LogUtil.verbose(5, log);
+            LogUtil.verbose(5, "Line %d, mock method \"%s\" used", lineNum, mockMethodName);
         } else {
-            LogUtil.diagnose(2, log);
+            LogUtil.diagnose(2, "Line %d, mock method \"%s\" used", lineNum, mockMethodName);
         }
-        String classType = ((TypeInsnNode) instructions[start]).desc;
+        AbstractInsnNode newNode = instructions[start];
+        AbstractInsnNode dupNode = newNode.getNext();
+        AbstractInsnNode firstParameterNode = dupNode.getNext();
+        String classType = ((TypeInsnNode) newNode).desc;
         String constructorDesc = ((MethodInsnNode) instructions[end]).desc;
+        AbstractInsnNode head = null;
         if (!newOperatorInjectMethod.isStatic()) {
-            mn.instructions.insertBefore(instructions[start], new MethodInsnNode(INVOKESTATIC, mockClassName,
-                    GET_TESTABLE_REF, VOID_ARGS + ClassUtil.toByteCodeClassName(mockClassName), false));
+            head = new MethodInsnNode(INVOKESTATIC, mockClassName,
+                    GET_TESTABLE_REF, VOID_ARGS + ClassUtil.toByteCodeClassName(mockClassName), false);
+            mn.instructions.insertBefore(heads[start], head);
         }
-        mn.instructions.insertBefore(instructions[end], new MethodInsnNode(invokeOpcode, mockClassName,
-                mockMethodName, getConstructorInjectDesc(constructorDesc, classType), false));
-        mn.instructions.remove(instructions[start]);
-        mn.instructions.remove(instructions[start + 1]);
-        mn.instructions.remove(instructions[end]);
-        return mn.instructions.toArray();
-    }
-
-    private int getLineNum(AbstractInsnNode[] instructions, int start) {
-        for (int i = start - 1; i >= 0; i--) {
-            if (instructions[i] instanceof LineNumberNode) {
-                return ((LineNumberNode) instructions[i]).line;
-            }
+        AbstractInsnNode invokeNode = new MethodInsnNode(invokeOpcode, mockClassName,
+                mockMethodName, getConstructorInjectDesc(constructorDesc, classType), false);
+        replaceInvokeNode(mn, instructions, heads, end, invokeNode);
+        if (newOperatorInjectMethod.isUsingSourceMethod()) {
+            invokeNode = injectSourceMethodName(mn, heads, end, invokeNode);
         }
-        return 0;
+        mn.instructions.remove(newNode);
+        mn.instructions.remove(dupNode);
+        if (head == null) {
+            head = (firstParameterNode == instructions[end]) ? invokeNode : firstParameterNode;
+        }
+        heads[start] = head;
     }
 
     private String getConstructorInjectDesc(String constructorDesc, String classType) {
@@ -286,40 +206,228 @@ public class SourceClassHandler extends BaseClassHandler {
                 ClassUtil.toByteCodeClassName(classType);
     }
 
-    private AbstractInsnNode[] replaceMemberCallOps(MethodNode mn, MethodInfo mockMethod, AbstractInsnNode[] instructions,
-                                                    String ownerClass, int opcode, int start, int end) {
-        String log = String.format("Line %d, mock method \"%s\" used", getLineNum(instructions, start),
-                mockMethod.getMockName());
+    private void replaceMemberCallOps(MethodNode mn, MethodInfo mockMethod, AbstractInsnNode[] instructions,
+                                      AbstractInsnNode[] heads, String ownerClass, int opcode, int start, int end,
+                                      int lineNum) {
         if (LogUtil.isVerboseEnabled()) {
-            LogUtil.verbose(5, log);
+            LogUtil.verbose(5, "Line %d, mock method \"%s\" used", lineNum, mockMethod.getMockName());
         } else {
-            LogUtil.diagnose(2, log);
+            LogUtil.diagnose(2, "Line %d, mock method \"%s\" used", lineNum, mockMethod.getMockName());
         }
+        AbstractInsnNode originalHead = heads[start];
         if (!mockMethod.isStatic()) {
-            mn.instructions.insertBefore(instructions[start], new MethodInsnNode(INVOKESTATIC, mockClassName,
+            insertBeforeHead(mn, heads, start, originalHead, new MethodInsnNode(INVOKESTATIC, mockClassName,
                     GET_TESTABLE_REF, VOID_ARGS + ClassUtil.toByteCodeClassName(mockClassName), false));
         }
         if (Opcodes.INVOKESTATIC == opcode || isCompanionMethod(ownerClass, opcode)) {
             // append a null value if it was a static invoke or in kotlin companion class
-            mn.instructions.insertBefore(instructions[start], new InsnNode(ACONST_NULL));
+            insertBeforeHead(mn, heads, start, originalHead, new InsnNode(ACONST_NULL));
             mn.maxStack++;
             if (ClassUtil.isCompanionClassName(ownerClass)) {
                 // for kotlin companion class, remove the byte code of reference to "companion" static field
-                mn.instructions.remove(instructions[end - 1]);
+                mn.instructions.remove(instructions[end].getPrevious());
             }
         }
         // method with @MockInvoke will be modified as public access
         int invokeOpcode = mockMethod.isStatic() ? INVOKESTATIC : INVOKEVIRTUAL;
-        mn.instructions.insertBefore(instructions[end], new MethodInsnNode(invokeOpcode, mockClassName,
-                mockMethod.getMockName(), mockMethod.getMockDesc(), false));
-        mn.instructions.remove(instructions[end]);
+        AbstractInsnNode invokeNode = new MethodInsnNode(invokeOpcode, mockClassName,
+                mockMethod.getMockName(), mockMethod.getMockDesc(), false);
+        replaceInvokeNode(mn, instructions, heads, end, invokeNode);
+        if (mockMethod.isUsingSourceMethod()) {
+            injectSourceMethodName(mn, heads, end, invokeNode);
+        }
+        mn.maxStack++;
+    }
+
+    /**
+     * Record name of current method right before invoking mock method which reads "SOURCE_METHOD" variable,
+     * so that mock method needn't walk through the stack to find it out.
+     * The previous name is kept in a local variable and restored right after the invocation, or in an exception
+     * handler appended to the end of method when the mock method throws.
+     * @return the first inserted node
+     */
+    private AbstractInsnNode injectSourceMethodName(MethodNode mn, AbstractInsnNode[] heads, int index,
+                                                    AbstractInsnNode invokeNode) {
+        if (previousNameSlot < 0) {
+            previousNameSlot = mn.maxLocals++;
+        }
+        List<TryCatchBlockNode> outerBlocks = getTryCatchBlocksAround(mn, invokeNode);
+        AbstractInsnNode nameNode = new LdcInsnNode(mn.name);
+        LabelNode invokeStart = new LabelNode();
+        LabelNode invokeEnd = new LabelNode();
+        mn.instructions.insertBefore(invokeNode, nameNode);
+        mn.instructions.insertBefore(invokeNode, new MethodInsnNode(INVOKESTATIC, CLASS_TESTABLE_UTIL,
+                METHOD_SET_SOURCE_METHOD_NAME, SIGNATURE_SET_SOURCE_METHOD_NAME, false));
+        mn.instructions.insertBefore(invokeNode, new VarInsnNode(ASTORE, previousNameSlot));
+        mn.instructions.insertBefore(invokeNode, invokeStart);
+        mn.instructions.insert(invokeNode, invokeEnd);
+        mn.instructions.insert(invokeEnd, resetSourceMethodName());
+        if (heads[index] == invokeNode) {
+            heads[index] = nameNode;
+        }
+
+        LabelNode handlerStart = new LabelNode();
+        LabelNode handlerEnd = new LabelNode();
+        mn.instructions.add(handlerStart);
+        if (frameRequired) {
+            List<Object> locals = outerBlocks.isEmpty() ? new ArrayList<Object>() :
+                    getFrameLocals(mn, outerBlocks.get(0).handler);
+            Object[] handlerLocals = getHandlerLocals(locals, index);
+            mn.instructions.add(new FrameNode(F_FULL, handlerLocals.length, handlerLocals, 1,
+                    new Object[] {CLASS_THROWABLE}));
+        }
+        mn.instructions.add(resetSourceMethodName());
+        mn.instructions.add(new InsnNode(ATHROW));
+        mn.instructions.add(handlerEnd);
+        // the inner most handler must be the first one in exception table
+        mn.tryCatchBlocks.add(0, new TryCatchBlockNode(invokeStart, invokeEnd, handlerStart, null));
+        // exception thrown again from the handler should still be caught by the original try-catch blocks
+        for (TryCatchBlockNode block : outerBlocks) {
+            mn.tryCatchBlocks.add(new TryCatchBlockNode(handlerStart, handlerEnd, block.handler, block.type));
+        }
         mn.maxStack++;
-        return mn.instructions.toArray();
+        return nameNode;
+    }
+
+    private InsnList resetSourceMethodName() {
+        InsnList il = new InsnList();
+        il.add(new VarInsnNode(ALOAD, previousNameSlot));
+        il.add(new MethodInsnNode(INVOKESTATIC, CLASS_TESTABLE_UTIL,
+                METHOD_RESET_SOURCE_METHOD_NAME, SIGNATURE_RESET_SOURCE_METHOD_NAME, false));
+        return il;
+    }
+
+    /**
+     * Get the original try-catch blocks covering specified instruction, inner most block first
+     */
+    private List<TryCatchBlockNode> getTryCatchBlocksAround(MethodNode mn, AbstractInsnNode node) {
+        List<TryCatchBlockNode> blocks = new ArrayList<TryCatchBlockNode>();
+        if (mn.tryCatchBlocks.isEmpty()) {
+            return blocks;
+        }
+        int position = mn.instructions.indexOf(node);
+        for (TryCatchBlockNode block : mn.tryCatchBlocks) {
+            if (mn.instructions.indexOf(block.start) < position && position < mn.instructions.indexOf(block.end)) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Local variables of the handler frame, reuse those of the inner most original handler (if exist), so that the
+     * handler code could also be covered by the original try-catch blocks
+     */
+    private Object[] getHandlerLocals(List<Object> locals, int index) {
+        List<Object> slots = new ArrayList<Object>();
+        for (Object local : locals) {
+            slots.add(local);
+            if (local == LONG || local == DOUBLE) {
+                slots.add(TOP);
+            }
+        }
+        if (slots.isEmpty() && index < superConstructorIndex) {
+            // "this" is not initialized yet before invoking super constructor
+            slots.add(UNINITIALIZED_THIS);
+        }
+        while (slots.size() <= previousNameSlot) {
+            slots.add(TOP);
+        }
+        slots.set(previousNameSlot, CLASS_STRING);
+        List<Object> handlerLocals = new ArrayList<Object>();
+        for (int i = 0; i < slots.size(); i++) {
+            handlerLocals.add(slots.get(i));
+            if (slots.get(i) == LONG || slots.get(i) == DOUBLE) {
+                i++;
+            }
+        }
+        return handlerLocals.toArray();
+    }
+
+    /**
+     * Expand the compressed frames from the beginning of method, till the frame of specified label
+     */
+    private List<Object> getFrameLocals(MethodNode mn, LabelNode label) {
+        List<Object> locals = new ArrayList<Object>();
+        if ((mn.access & ACC_STATIC) == 0) {
+            locals.add(CONSTRUCTOR.equals(mn.name) ? UNINITIALIZED_THIS : ownerClassName);
+        }
+        for (Type type : Type.getArgumentTypes(mn.desc)) {
+            locals.add(toFrameType(type));
+        }
+        boolean labelFound = false;
+        for (AbstractInsnNode node : mn.instructions) {
+            if (node instanceof FrameNode) {
+                FrameNode fn = (FrameNode)node;
+                switch (fn.type) {
+                    case F_FULL:
+                    case F_NEW:
+                        locals = new ArrayList<Object>(fn.local);
+                        break;
+                    case F_APPEND:
+                        locals.addAll(fn.local);
+                        break;
+                    case F_CHOP:
+                        locals = new ArrayList<Object>(locals.subList(0, locals.size() - fn.local.size()));
+                        break;
+                    default:
+                        // F_SAME and F_SAME1 keep locals unchanged
+                        break;
+                }
+                if (labelFound) {
+                    return locals;
+                }
+            } else if (node == label) {
+                labelFound = true;
+            } else if (labelFound && node.getOpcode() >= 0) {
+                break;
+            }
+        }
+        // handler frame not found, should not happen for class compiled with stack map frames
+        return new ArrayList<Object>();
+    }
+
+    private Object toFrameType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.BYTE:
+            case Type.CHAR:
+            case Type.SHORT:
+            case Type.INT:
+                return INTEGER;
+            case Type.FLOAT:
+                return FLOAT;
+            case Type.LONG:
+                return LONG;
+            case Type.DOUBLE:
+                return DOUBLE;
+            default:
+                return type.getInternalName();
+        }
+    }
+
+    /**
+     * Insert node before the original head of code snippet, and keep new head as the first inserted node
+     */
+    private void insertBeforeHead(MethodNode mn, AbstractInsnNode[] heads, int start, AbstractInsnNode originalHead,
+                                  AbstractInsnNode node) {
+        mn.instructions.insertBefore(originalHead, node);
+        if (heads[start] == originalHead) {
+            heads[start] = node;
+        }
+    }
+
+    private void replaceInvokeNode(MethodNode mn, AbstractInsnNode[] instructions, AbstractInsnNode[] heads, int index,
+                                   AbstractInsnNode node) {
+        mn.instructions.set(instructions[index], node);
+        if (heads[index] == instructions[index]) {
+            heads[index] = node;
+        }
     }
 
-    private void handleFrameStackChange(MethodNode mn, MethodInfo mockMethod, int start, int end) {
-        AbstractInsnNode curInsn = mn.instructions.get(start);
-        AbstractInsnNode endInsn = mn.instructions.get(end);
+    private void handleFrameStackChange(MethodInfo mockMethod, AbstractInsnNode startInsn,
+                                        AbstractInsnNode endInsn) {
+        AbstractInsnNode curInsn = startInsn;
         do {
             if (curInsn instanceof FrameNode) {
                 FrameNode fn = (FrameNode) curInsn;
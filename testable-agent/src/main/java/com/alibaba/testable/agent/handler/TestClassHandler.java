@@ -2,11 +2,9 @@ package com.alibaba.testable.agent.handler;
 
 import com.alibaba.testable.agent.handler.test.Framework;
 import com.alibaba.testable.agent.model.TestCaseMethodType;
+import com.alibaba.testable.agent.util.ClassUtil;
 import com.alibaba.testable.core.util.LogUtil;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.InsnList;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.*;
 
 /**
  * @author flin
@@ -14,7 +12,7 @@ import org.objectweb.asm.tree.MethodNode;
 public class TestClassHandler extends BaseClassWithContextHandler {
 
     private static final String METHOD_INIT = "init";
-    private static final String DESC_METHOD_INIT = "()V";
+    private static final String DESC_METHOD_INIT = "(Ljava/lang/String;Ljava/lang/String;)V";
     private static final String METHOD_CLEAN = "clean";
     private static final String DESC_METHOD_CLEAN = "()V";
 
@@ -26,16 +24,21 @@ public class TestClassHandler extends BaseClassWithContextHandler {
         this.framework = framework;
     }
 
+    @Override
+    public String getCacheSignature() {
+        return framework.getClass().getName();
+    }
+
     /**
      * Handle bytecode of test class
      * @param cn original class node
      */
     @Override
-    protected void transform(ClassNode cn) {
+    public void transform(ClassNode cn) {
         LogUtil.diagnose("Found test class %s", cn.name);
         for (MethodNode mn : cn.methods) {
             handleTestableUtil(mn);
-            handleTestCaseMethod(mn, framework);
+            handleTestCaseMethod(cn, mn, framework);
         }
         if (shouldGenerateCleanupMethod) {
             MethodNode cleanupMethod = framework.getCleanupMethod(cn.name);
@@ -46,11 +49,11 @@ public class TestClassHandler extends BaseClassWithContextHandler {
     }
 
 
-    private void handleTestCaseMethod(MethodNode mn, Framework framework) {
+    private void handleTestCaseMethod(ClassNode cn, MethodNode mn, Framework framework) {
         TestCaseMethodType type = framework.checkMethodType(mn);
         if (type.equals(TestCaseMethodType.TEST)) {
             LogUtil.verbose("   Test case \"%s\"", mn.name);
-            injectMockContextInit(mn);
+            injectMockContextInit(cn, mn);
             testCaseCount++;
         } else if (type.equals(TestCaseMethodType.AFTER_TEST)) {
             injectMockContextClean(mn);
@@ -58,10 +61,14 @@ public class TestClassHandler extends BaseClassWithContextHandler {
         }
     }
 
-    private void injectMockContextInit(MethodNode mn) {
+    private void injectMockContextInit(ClassNode cn, MethodNode mn) {
         InsnList il = new InsnList();
+        // test class and test case name are known here, no need to find them out via stack at runtime
+        il.add(new LdcInsnNode(ClassUtil.toDotSeparatedName(cn.name)));
+        il.add(new LdcInsnNode(mn.name));
         il.add(new MethodInsnNode(INVOKESTATIC, CLASS_MOCK_CONTEXT_UTIL, METHOD_INIT, DESC_METHOD_INIT, false));
         mn.instructions.insertBefore(mn.instructions.getFirst(), il);
+        mn.maxStack += 2;
     }
 
     private void injectMockContextClean(MethodNode mn) {
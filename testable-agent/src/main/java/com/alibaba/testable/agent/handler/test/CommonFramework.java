@@ -7,7 +7,6 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.tree.*;
 
 import java.util.Collections;
-import java.util.List;
 import java.util.Set;
 
 import static com.alibaba.testable.core.constant.ConstPool.THIS_REF;
@@ -59,12 +58,6 @@ abstract public class CommonFramework implements Framework {
         return cleanupMethod;
     }
 
-    /**
-     * Get all annotations that identify test case method
-     * @return list of annotation full name
-     */
-    public abstract List<String> getTestMethodAnnotations();
-
     /**
      * Get annotation that identify test cleanup method
      * @return full name of cleanup method annotation
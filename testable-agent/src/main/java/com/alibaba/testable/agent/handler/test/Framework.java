@@ -3,6 +3,7 @@ package com.alibaba.testable.agent.handler.test;
 import com.alibaba.testable.agent.model.TestCaseMethodType;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -18,6 +19,12 @@ public interface Framework {
      */
     boolean fit(Set<String> classAnnotations, Set<String> methodAnnotations);
 
+    /**
+     * Get all annotations that identify test case method
+     * @return list of annotation descriptor
+     */
+    List<String> getTestMethodAnnotations();
+
     /**
      * Check whether a method is test or cleanup method
      * @param mn method node
@@ -6,6 +6,7 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.tree.*;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import static com.alibaba.testable.core.constant.ConstPool.THIS_REF;
@@ -22,6 +23,11 @@ public class SpockFramework implements Framework {
         return methodAnnotations.contains(ANNOTATION_TEST);
     }
 
+    @Override
+    public List<String> getTestMethodAnnotations() {
+        return Collections.singletonList(ANNOTATION_TEST);
+    }
+
     @Override
     public TestCaseMethodType checkMethodType(MethodNode mn) {
         if (NAME_CLEANUP.equals(mn.name)) {
@@ -33,8 +33,17 @@ public class MethodInfo {
      * whether mock method is defined as static
      */
     private final boolean isStatic;
+    /**
+     * whether mock method reads the name of source method which invoked it
+     */
+    private final boolean usingSourceMethod;
 
     public MethodInfo(String clazz, String name, String desc, String mockClass, String mockName, String mockDesc, boolean isStatic) {
+        this(clazz, name, desc, mockClass, mockName, mockDesc, isStatic, false);
+    }
+
+    public MethodInfo(String clazz, String name, String desc, String mockClass, String mockName, String mockDesc,
+                      boolean isStatic, boolean usingSourceMethod) {
         this.clazz = clazz;
         this.name = name;
         this.desc = desc;
@@ -42,6 +51,7 @@ public class MethodInfo {
         this.mockName = mockName;
         this.mockDesc = mockDesc;
         this.isStatic = isStatic;
+        this.usingSourceMethod = usingSourceMethod;
     }
 
     public String getClazz() {
@@ -72,6 +82,10 @@ public class MethodInfo {
         return isStatic;
     }
 
+    public boolean isUsingSourceMethod() {
+        return usingSourceMethod;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) { return true; }
@@ -0,0 +1,32 @@
+package com.alibaba.testable.agent.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Information collected while weaving a class ahead of time
+ *
+ * @author flin
+ */
+public class WeaveRecord {
+
+    /**
+     * Associations recorded from @MockWith annotation, in "MockClassName=TestClassName" format (dot-separated),
+     * should be replayed when the woven class is loaded
+     */
+    public final List<String> mockWithAssociations = new ArrayList<String>();
+
+    /**
+     * Classes read during the transformation (slash-separated), the class should be woven again once any of
+     * them changed
+     */
+    public final Set<String> dependencies = new TreeSet<String>();
+
+    /**
+     * Whether the transformation could only be done at runtime, e.g. for mock classes
+     */
+    public boolean deferred = false;
+
+}
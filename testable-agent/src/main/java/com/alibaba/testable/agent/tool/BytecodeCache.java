@@ -0,0 +1,237 @@
+package com.alibaba.testable.agent.tool;
+
+import com.alibaba.testable.core.util.LogUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of transformed class bytes, shared by all JVMs using the same cache folder
+ * Index file is a memory-mapped hash table of fixed size, each slot points to a record in data file.
+ * Writers (possibly from different processes) are serialized by a file lock, while readers take no lock,
+ * every record in data file begins with its key, so a half-written slot will never be mistaken as hit.
+ *
+ * @author flin
+ */
+public class BytecodeCache {
+
+    private static final String INDEX_FILE = "index.bin";
+    private static final String DATA_FILE = "data.bin";
+    private static final String LOCK_FILE = "cache.lock";
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final String CHARSET = "UTF-8";
+
+    private static final int MAGIC = 0x54424331;
+    private static final int HEADER_SIZE = 8;
+    private static final int KEY_SIZE = 20;
+    /**
+     * Slot layout: key (20 bytes), record offset (8 bytes), record length (4 bytes)
+     */
+    private static final int SLOT_SIZE = 32;
+    private static final int SLOT_COUNT = 1 << 16;
+    private static final int MAX_PROBE = 32;
+    private static final byte[] EMPTY_KEY = new byte[KEY_SIZE];
+
+    private final byte[] environment;
+    private final MappedByteBuffer index;
+    private final FileChannel dataChannel;
+    private final FileChannel lockChannel;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private BytecodeCache(byte[] environment, MappedByteBuffer index, FileChannel dataChannel,
+                          FileChannel lockChannel) {
+        this.environment = environment;
+        this.index = index;
+        this.dataChannel = dataChannel;
+        this.lockChannel = lockChannel;
+    }
+
+    /**
+     * Open or create cache at specified folder
+     * @param folder folder to store cache files
+     * @param environment everything besides class bytes that affects transform result, e.g. agent version
+     * @return cache instance, null if cache is not available
+     */
+    public static BytecodeCache open(String folder, String environment) {
+        try {
+            File dir = new File(folder);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                LogUtil.warn("Failed to create bytecode cache folder %s", folder);
+                return null;
+            }
+            FileChannel lockChannel = new RandomAccessFile(new File(dir, LOCK_FILE), "rw").getChannel();
+            FileChannel indexChannel = new RandomAccessFile(new File(dir, INDEX_FILE), "rw").getChannel();
+            FileChannel dataChannel = new RandomAccessFile(new File(dir, DATA_FILE), "rw").getChannel();
+            MappedByteBuffer index;
+            FileLock lock = lockChannel.lock();
+            try {
+                long indexSize = HEADER_SIZE + (long)SLOT_COUNT * SLOT_SIZE;
+                boolean valid = indexChannel.size() == indexSize;
+                index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+                if (!valid || index.getInt(0) != MAGIC || index.getInt(4) != SLOT_SIZE) {
+                    // new or broken cache, start over
+                    for (int i = 0; i < indexSize; i++) {
+                        index.put(i, (byte)0);
+                    }
+                    dataChannel.truncate(0);
+                    index.putInt(4, SLOT_SIZE);
+                    index.putInt(0, MAGIC);
+                }
+            } finally {
+                lock.release();
+            }
+            LogUtil.verbose("Bytecode cache opened at %s", folder);
+            return new BytecodeCache(environment.getBytes(CHARSET), index, dataChannel, lockChannel);
+        } catch (IOException e) {
+            LogUtil.warn("Failed to open bytecode cache at %s: %s", folder, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Calculate cache key
+     * @param classFileBuffer original class bytes
+     * @param signature extra information which affects transform result
+     * @return cache key
+     */
+    public byte[] getKey(byte[] classFileBuffer, String signature) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update(environment);
+            digest.update((byte)0);
+            digest.update(signature.getBytes(CHARSET));
+            digest.update((byte)0);
+            digest.update(classFileBuffer);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read transformed class bytes
+     * @param key cache key
+     * @return class bytes, null if not cached
+     */
+    public byte[] get(byte[] key) {
+        int slot = findSlot(key);
+        if (slot >= 0 && !isSlotEmpty(slot)) {
+            byte[] bytes = readRecord(key, index.getLong(slot + KEY_SIZE), index.getInt(slot + KEY_SIZE + 8));
+            if (bytes != null) {
+                hitCount.incrementAndGet();
+                return bytes;
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Save transformed class bytes
+     * @param key cache key
+     * @param bytes class bytes
+     */
+    public synchronized void put(byte[] key, byte[] bytes) {
+        try {
+            FileLock lock = lockChannel.lock();
+            try {
+                int slot = findSlot(key);
+                if (slot < 0 || !isSlotEmpty(slot)) {
+                    // index is full, or already cached by other process
+                    return;
+                }
+                long offset = dataChannel.size();
+                ByteBuffer record = ByteBuffer.allocate(KEY_SIZE + bytes.length);
+                record.put(key).put(bytes).flip();
+                while (record.hasRemaining()) {
+                    dataChannel.write(record, offset + record.position());
+                }
+                index.putLong(slot + KEY_SIZE, offset);
+                index.putInt(slot + KEY_SIZE + 8, bytes.length);
+                // key is written at last, so that slot with key is always complete
+                for (int i = 0; i < KEY_SIZE; i++) {
+                    index.put(slot + i, key[i]);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            LogUtil.warn("Failed to write bytecode cache: %s", e.toString());
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Find the slot with specified key, or the first empty slot
+     * @return position of the slot in index, -1 for not found
+     */
+    private int findSlot(byte[] key) {
+        int hash = ((key[0] & 0xFF) << 24) | ((key[1] & 0xFF) << 16) | ((key[2] & 0xFF) << 8) | (key[3] & 0xFF);
+        for (int i = 0; i < MAX_PROBE; i++) {
+            int slot = HEADER_SIZE + ((hash + i) & (SLOT_COUNT - 1)) * SLOT_SIZE;
+            if (isSlotEmpty(slot) || isKeyMatched(slot, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSlotEmpty(int slot) {
+        return isKeyMatched(slot, EMPTY_KEY);
+    }
+
+    private boolean isKeyMatched(int slot, byte[] key) {
+        for (int i = 0; i < KEY_SIZE; i++) {
+            if (index.get(slot + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readRecord(byte[] key, long offset, int length) {
+        try {
+            ByteBuffer record = ByteBuffer.allocate(KEY_SIZE + length);
+            while (record.hasRemaining()) {
+                if (dataChannel.read(record, offset + record.position()) < 0) {
+                    return null;
+                }
+            }
+            byte[] recordKey = new byte[KEY_SIZE];
+            record.flip();
+            record.get(recordKey);
+            if (!Arrays.equals(key, recordKey)) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            return bytes;
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // e.g. negative length read from a half-written slot
+            return null;
+        }
+    }
+
+}
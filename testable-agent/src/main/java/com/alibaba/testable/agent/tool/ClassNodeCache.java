@@ -0,0 +1,177 @@
+package com.alibaba.testable.agent.tool;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of parsed class nodes, keyed by (class loader, slash-separated class name)
+ * Class loaders are weakly referenced and class nodes are softly referenced, so the cache will shrink
+ * when class loader is discarded or memory is insufficient. Class not exist is also cached.
+ * Note: cached class nodes are shared, callers should treat them as read-only
+ *
+ * @author flin
+ */
+public class ClassNodeCache {
+
+    private static final String CLASS_FILE_POSTFIX = ".class";
+
+    /**
+     * Placeholder of class which could not be read
+     */
+    private static final ClassNode MISSING = new ClassNode();
+    private static final InputStream MISSING_STREAM = new ByteArrayInputStream(new byte[0]);
+
+    private final Map<ClassLoader, ConcurrentMap<String, NodeRef>> loaderCaches =
+        Collections.synchronizedMap(new WeakHashMap<ClassLoader, ConcurrentMap<String, NodeRef>>());
+    private final ReferenceQueue<ClassNode> clearedRefs = new ReferenceQueue<ClassNode>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile ClassPathIndex classPathIndex = null;
+
+    /**
+     * Read class node via cache
+     * @param loader class loader to read class file from, null for system class loader
+     * @param className slash-separated class name
+     * @return class node, or null if class not exist
+     */
+    public ClassNode get(ClassLoader loader, String className) {
+        return get(loader, className, false);
+    }
+
+    /**
+     * Read class node of companion class (e.g. test class or mock class of a source class) via cache,
+     * which usually not exist. Class path index is used if available, so that a missing one needn't be
+     * looked up through the whole class path.
+     * @param loader class loader to read class file from, null for system class loader
+     * @param className slash-separated class name
+     * @return class node, or null if class not exist
+     */
+    public ClassNode getCompanion(ClassLoader loader, String className) {
+        return get(loader, className, true);
+    }
+
+    private ClassNode get(ClassLoader loader, String className, boolean isCompanion) {
+        purgeClearedRefs();
+        ConcurrentMap<String, NodeRef> cache = getLoaderCache(loader);
+        NodeRef ref = cache.get(className);
+        ClassNode cn = (ref == null) ? null : ref.get();
+        if (cn != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            cn = read(loader, className, isCompanion);
+            cache.put(className, new NodeRef(cn, cache, className, clearedRefs));
+        }
+        return cn == MISSING ? null : cn;
+    }
+
+    /**
+     * Use class path index to read companion classes of system class loader
+     * Other classes are always read via class loader, since their packages could be split between
+     * class path and JDK (e.g. "org/w3c/dom" in xml-apis)
+     * @param index index of system class path
+     */
+    public void setClassPathIndex(ClassPathIndex index) {
+        classPathIndex = index;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private ConcurrentMap<String, NodeRef> getLoaderCache(ClassLoader loader) {
+        synchronized (loaderCaches) {
+            ConcurrentMap<String, NodeRef> cache = loaderCaches.get(loader);
+            if (cache == null) {
+                cache = new ConcurrentHashMap<String, NodeRef>();
+                loaderCaches.put(loader, cache);
+            }
+            return cache;
+        }
+    }
+
+    private ClassNode read(ClassLoader loader, String className, boolean isCompanion) {
+        String resourceName = className + CLASS_FILE_POSTFIX;
+        ClassNode cn = new ClassNode();
+        try {
+            InputStream in = (isCompanion && loader == null) ? readFromIndex(className) : null;
+            if (in == MISSING_STREAM) {
+                return MISSING;
+            } else if (in == null) {
+                in = (loader == null) ? ClassLoader.getSystemResourceAsStream(resourceName)
+                    : loader.getResourceAsStream(resourceName);
+            }
+            if (in == null) {
+                return MISSING;
+            }
+            try {
+                new ClassReader(in).accept(cn, 0);
+            } finally {
+                in.close();
+            }
+        } catch (Throwable e) {
+            // Could be IOException, ClassCircularityError or NullPointerException
+            // Ignore all of them
+            return MISSING;
+        }
+        return cn;
+    }
+
+    /**
+     * @return stream of class file, MISSING_STREAM if class surely not exist, or null if unknown
+     */
+    private InputStream readFromIndex(String className) {
+        ClassPathIndex index = classPathIndex;
+        if (index == null) {
+            return null;
+        } else if (index.isMissing(className)) {
+            return MISSING_STREAM;
+        }
+        try {
+            return index.open(className);
+        } catch (IOException e) {
+            // fallback to class loader
+            return null;
+        }
+    }
+
+    private void purgeClearedRefs() {
+        NodeRef ref;
+        while ((ref = (NodeRef)clearedRefs.poll()) != null) {
+            ref.owner.remove(ref.className, ref);
+        }
+    }
+
+    private static class NodeRef extends SoftReference<ClassNode> {
+
+        /**
+         * Refer to the owner cache instead of class loader, to keep class loader weakly reachable
+         */
+        private final ConcurrentMap<String, NodeRef> owner;
+        private final String className;
+
+        NodeRef(ClassNode cn, ConcurrentMap<String, NodeRef> owner, String className,
+                ReferenceQueue<ClassNode> queue) {
+            super(cn, queue);
+            this.owner = owner;
+            this.className = className;
+        }
+    }
+
+}
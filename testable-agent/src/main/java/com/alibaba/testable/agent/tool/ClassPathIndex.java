@@ -0,0 +1,421 @@
+package com.alibaba.testable.agent.tool;
+
+import com.alibaba.testable.core.util.LogUtil;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of class files on class path, built once by reading central directory of jar files and walking
+ * class folders, so that looking for a class not exist needn't scan the whole class path.
+ * Class and package names are kept as 64-bit hashes to save memory, a class is missing from class path only when
+ * its package appears in the index but itself doesn't, note that packages could be split with JDK classes.
+ *
+ * @author flin
+ */
+public class ClassPathIndex {
+
+    private static final String CLASS_FILE_POSTFIX = ".class";
+    private static final String META_INF = "META-INF/";
+    private static final String MANIFEST_FILE = "META-INF/MANIFEST.MF";
+    private static final String FILE_PROTOCOL = "file";
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final long ZIP64_MAGIC_OFFSET = 0xFFFFFFFFL;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * Class name hash → index of class path location
+     */
+    private final HashTable classes = new HashTable();
+
+    /**
+     * Hash of packages containing any class
+     */
+    private final HashTable packages = new HashTable();
+
+    private final List<File> locations = new ArrayList<File>();
+    private final Set<File> visited = new HashSet<File>();
+    private ZipFile[] zipFiles;
+
+    private ClassPathIndex() {
+    }
+
+    /**
+     * Build index of specified class path
+     * @param classPath class path string, e.g. value of "java.class.path" system property
+     * @return the index
+     */
+    public static ClassPathIndex build(String classPath) {
+        long startTime = System.currentTimeMillis();
+        ClassPathIndex index = new ClassPathIndex();
+        if (classPath != null) {
+            for (String path : classPath.split(File.pathSeparator)) {
+                if (!path.isEmpty()) {
+                    index.addLocation(new File(path));
+                }
+            }
+        }
+        index.zipFiles = new ZipFile[index.locations.size()];
+        LogUtil.verbose("Indexed %d classes in %d class path locations within %d ms", index.classes.size(),
+            index.locations.size(), System.currentTimeMillis() - startTime);
+        return index;
+    }
+
+    /**
+     * Check whether a class surely not exist on class path
+     * @param className slash-separated class name
+     * @return true if its package is on class path but the class isn't
+     */
+    public boolean isMissing(String className) {
+        return classes.get(hash(className, className.length())) == NOT_FOUND &&
+            packages.get(hash(className, Math.max(className.lastIndexOf('/'), 0))) != NOT_FOUND;
+    }
+
+    /**
+     * Open class file from its location on class path
+     * @param className slash-separated class name
+     * @return content of class file, null if the class location is unknown
+     * @throws IOException failed to read the class file
+     */
+    public InputStream open(String className) throws IOException {
+        int location = classes.get(hash(className, className.length()));
+        if (location == NOT_FOUND) {
+            return null;
+        }
+        String resourceName = className + CLASS_FILE_POSTFIX;
+        File file = locations.get(location);
+        if (file.isDirectory()) {
+            File classFile = new File(file, resourceName);
+            return classFile.isFile() ? new FileInputStream(classFile) : null;
+        }
+        ZipFile zipFile = getZipFile(location);
+        ZipEntry entry = zipFile.getEntry(resourceName);
+        return (entry == null) ? null : zipFile.getInputStream(entry);
+    }
+
+    private synchronized ZipFile getZipFile(int location) throws IOException {
+        if (zipFiles[location] == null) {
+            zipFiles[location] = new ZipFile(locations.get(location));
+        }
+        return zipFiles[location];
+    }
+
+    private void addLocation(File file) {
+        File location = file.getAbsoluteFile();
+        if (!visited.add(location)) {
+            return;
+        }
+        if (location.isDirectory()) {
+            locations.add(location);
+            addFolder(location, "", locations.size() - 1);
+        } else if (location.isFile()) {
+            locations.add(location);
+            try {
+                addJar(location, locations.size() - 1);
+            } catch (IOException e) {
+                LogUtil.verbose("Failed to index jar file %s: %s", location, e.getMessage());
+            }
+        }
+    }
+
+    private void addFolder(File folder, String path, int location) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = path + file.getName();
+            if (file.isDirectory()) {
+                addFolder(file, name + "/", location);
+            } else if (name.endsWith(CLASS_FILE_POSTFIX)) {
+                addClass(name.substring(0, name.length() - CLASS_FILE_POSTFIX.length()), location);
+            }
+        }
+    }
+
+    private void addClass(String className, int location) {
+        classes.putIfAbsent(hash(className, className.length()), location);
+        packages.putIfAbsent(hash(className, Math.max(className.lastIndexOf('/'), 0)), location);
+    }
+
+    /**
+     * Read entry names from central directory of jar file via memory mapping, without inflating anything
+     */
+    private void addJar(File jar, int location) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(jar, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < EOCD_SIZE) {
+                return;
+            }
+            long tailStart = Math.max(0, size - EOCD_SIZE - MAX_COMMENT_SIZE);
+            ByteBuffer tail = map(channel, tailStart, size - tailStart);
+            int eocd = -1;
+            for (int i = tail.limit() - EOCD_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIGNATURE) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                return;
+            }
+            int entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+            long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+            if (entryCount == ZIP64_MAGIC_COUNT || cenOffset == ZIP64_MAGIC_OFFSET) {
+                addZip64Jar(jar, location);
+                return;
+            }
+            // offsets could be shifted by data prepended to the jar, e.g. a launch script
+            long cenPosition = tailStart + eocd - cenSize;
+            long shift = cenPosition - cenOffset;
+            ByteBuffer cen = map(channel, cenPosition, cenSize);
+            byte[] nameBytes = new byte[256];
+            for (int pos = 0; pos + CEN_HEADER_SIZE <= cen.limit() && cen.getInt(pos) == CEN_SIGNATURE; ) {
+                int method = cen.getShort(pos + 10) & 0xFFFF;
+                long compressedSize = cen.getInt(pos + 20) & 0xFFFFFFFFL;
+                int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+                int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+                int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+                long localOffset = cen.getInt(pos + 42) & 0xFFFFFFFFL;
+                if (nameBytes.length < nameLength) {
+                    nameBytes = new byte[nameLength];
+                }
+                cen.position(pos + CEN_HEADER_SIZE);
+                cen.get(nameBytes, 0, nameLength);
+                if (endsWith(nameBytes, nameLength, CLASS_FILE_POSTFIX) && !startsWith(nameBytes, META_INF)) {
+                    int classNameLength = nameLength - CLASS_FILE_POSTFIX.length();
+                    classes.putIfAbsent(hash(nameBytes, classNameLength), location);
+                    packages.putIfAbsent(hash(nameBytes, Math.max(lastIndexOf(nameBytes, classNameLength, '/'), 0)),
+                        location);
+                } else if (nameLength == MANIFEST_FILE.length() && startsWith(nameBytes, MANIFEST_FILE)) {
+                    byte[] manifest = readEntry(channel, localOffset + shift, method, compressedSize);
+                    if (manifest != null) {
+                        addManifestClassPath(jar, manifest);
+                    }
+                }
+                pos += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void addZip64Jar(File jar, int location) throws IOException {
+        ZipFile zipFile = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.endsWith(CLASS_FILE_POSTFIX) && !name.startsWith(META_INF)) {
+                    addClass(name.substring(0, name.length() - CLASS_FILE_POSTFIX.length()), location);
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Follow "Class-Path" attribute of jar manifest, e.g. the manifest-only jar of surefire
+     */
+    private void addManifestClassPath(File jar, byte[] manifestBytes) {
+        try {
+            Manifest manifest = new Manifest(new ByteArrayInputStream(manifestBytes));
+            String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (classPath == null) {
+                return;
+            }
+            URL base = jar.toURI().toURL();
+            for (String path : classPath.trim().split("\\s+")) {
+                if (path.isEmpty()) {
+                    continue;
+                }
+                URL url = new URL(base, path);
+                if (FILE_PROTOCOL.equals(url.getProtocol())) {
+                    addLocation(new File(url.toURI()));
+                }
+            }
+        } catch (Exception e) {
+            LogUtil.verbose("Failed to parse class path in manifest of %s: %s", jar, e.getMessage());
+        }
+    }
+
+    private byte[] readEntry(FileChannel channel, long localOffset, int method, long compressedSize)
+        throws IOException {
+        ByteBuffer header = map(channel, localOffset, LOC_HEADER_SIZE);
+        if (header.getInt(0) != LOC_SIGNATURE) {
+            return null;
+        }
+        long dataOffset = localOffset + LOC_HEADER_SIZE + (header.getShort(26) & 0xFFFF) +
+            (header.getShort(28) & 0xFFFF);
+        byte[] data = new byte[(int)compressedSize];
+        map(channel, dataOffset, compressedSize).get(data);
+        if (method == METHOD_STORED) {
+            return data;
+        } else if (method != METHOD_DEFLATED) {
+            return null;
+        }
+        InputStream in = new InflaterInputStream(new ByteArrayInputStream(data), new Inflater(true));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static boolean endsWith(byte[] bytes, int length, String postfix) {
+        if (length < postfix.length()) {
+            return false;
+        }
+        for (int i = 0; i < postfix.length(); i++) {
+            if (bytes[length - postfix.length() + i] != postfix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] bytes, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int length, char c) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * FNV-1a hash of the first "length" bytes in UTF-8 encoding
+     */
+    private static long hash(byte[] bytes, int length) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Same as hash of UTF-8 encoded bytes, class names are usually ascii only
+     */
+    private static long hash(String name, int length) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                try {
+                    byte[] bytes = name.substring(0, length).getBytes("UTF-8");
+                    return hash(bytes, bytes.length);
+                } catch (UnsupportedEncodingException e) {
+                    return h;
+                }
+            }
+            h = (h ^ c) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Open addressing hash table from long key to int value, key 0 is reserved as empty slot
+     */
+    private static class HashTable {
+
+        private static final int INITIAL_CAPACITY = 1 << 10;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size = 0;
+
+        int size() {
+            return size;
+        }
+
+        int get(long key) {
+            key = (key == 0) ? 1 : key;
+            int mask = keys.length - 1;
+            for (int i = (int)(key ^ (key >>> 32)) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        void putIfAbsent(long key, int value) {
+            key = (key == 0) ? 1 : key;
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = (int)(key ^ (key >>> 32)) & mask;
+            for (; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    putIfAbsent(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.alibaba.testable.agent.tool;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Light-weight reader of the constant pool of a class file, fields and methods are never parsed
+ * Used to quickly find out whether a class could be related to mock before parsing it into class node
+ *
+ * @author flin
+ */
+public class ConstantPoolScanner {
+
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+    private static final int CONSTANT_POOL_COUNT_OFFSET = 8;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final byte[] bytes;
+    /**
+     * Offset of each constant pool entry, 0 for unused slot
+     */
+    private int[] entryOffsets;
+    private int[] utf8Offsets;
+    private int utf8Count;
+    private int[] classNameIndexes;
+    private int classCount;
+    private Set<String> classNames;
+
+    public ConstantPoolScanner(byte[] classFileBuffer) {
+        this.bytes = classFileBuffer;
+        try {
+            scan();
+        } catch (RuntimeException e) {
+            // e.g. ArrayIndexOutOfBoundsException for truncated class file
+            entryOffsets = null;
+        }
+    }
+
+    /**
+     * Whether the class file is successfully scanned
+     * @return false for malformed class file
+     */
+    public boolean isValid() {
+        return entryOffsets != null;
+    }
+
+    /**
+     * Check whether any utf8 constant starts with specified prefix
+     * @param prefix string with only ascii characters
+     * @return found or not
+     */
+    public boolean hasUtf8StartsWith(String prefix) {
+        for (int i = 0; i < utf8Count; i++) {
+            if (matchAscii(utf8Offsets[i], prefix, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether any utf8 constant equals to one of specified values
+     * @param values strings with only ascii characters
+     * @return found or not
+     */
+    public boolean hasAnyUtf8Of(Collection<String> values) {
+        for (int i = 0; i < utf8Count; i++) {
+            for (String value : values) {
+                if (matchAscii(utf8Offsets[i], value, true)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get all classes referred by constant pool (including the class itself)
+     * @return slash-separated class names, array types are in descriptor format
+     */
+    public Set<String> getClassNames() {
+        if (classNames == null) {
+            classNames = new HashSet<String>(classCount * 2);
+            for (int i = 0; i < classCount; i++) {
+                classNames.add(readUtf8(entryOffsets[classNameIndexes[i]]));
+            }
+        }
+        return classNames;
+    }
+
+    private void scan() {
+        if (readInt(0) != CLASS_FILE_MAGIC) {
+            throw new IllegalArgumentException("not a class file");
+        }
+        int count = readUnsignedShort(CONSTANT_POOL_COUNT_OFFSET);
+        entryOffsets = new int[count];
+        utf8Offsets = new int[count];
+        classNameIndexes = new int[count];
+        int offset = CONSTANT_POOL_COUNT_OFFSET + 2;
+        for (int i = 1; i < count; i++) {
+            int tag = bytes[offset];
+            entryOffsets[i] = offset + 1;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8Offsets[utf8Count++] = offset + 1;
+                    offset += 3 + readUnsignedShort(offset + 1);
+                    break;
+                case CONSTANT_CLASS:
+                    classNameIndexes[classCount++] = readUnsignedShort(offset + 1);
+                    offset += 3;
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    offset += 3;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    offset += 4;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELD_REF:
+                case CONSTANT_METHOD_REF:
+                case CONSTANT_INTERFACE_METHOD_REF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    offset += 5;
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    // takes two slots
+                    offset += 9;
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private boolean matchAscii(int utf8Offset, String value, boolean wholeMatch) {
+        int length = readUnsignedShort(utf8Offset);
+        if (length < value.length() || (wholeMatch && length != value.length())) {
+            return false;
+        }
+        int start = utf8Offset + 2;
+        for (int i = 0; i < value.length(); i++) {
+            if (bytes[start + i] != (byte)value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode modified utf8 string
+     */
+    private String readUtf8(int utf8Offset) {
+        int length = readUnsignedShort(utf8Offset);
+        int current = utf8Offset + 2;
+        int end = current + length;
+        char[] chars = new char[length];
+        int count = 0;
+        while (current < end) {
+            int b = bytes[current++];
+            if ((b & 0x80) == 0) {
+                chars[count++] = (char)(b & 0x7F);
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char)(((b & 0x1F) << 6) + (bytes[current++] & 0x3F));
+            } else {
+                chars[count++] = (char)(((b & 0xF) << 12) + ((bytes[current++] & 0x3F) << 6)
+                    + (bytes[current++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private int readUnsignedShort(int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private int readInt(int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+            | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+}
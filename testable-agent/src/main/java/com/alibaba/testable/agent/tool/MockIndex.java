@@ -0,0 +1,179 @@
+package com.alibaba.testable.agent.tool;
+
+import com.alibaba.testable.core.util.LogUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Relationship between source classes and mock classes, recorded by testable processor at compile time
+ * Index files of all modules on classpath are merged, see MockIndexProcessor for the file format.
+ *
+ * @author flin
+ */
+public class MockIndex {
+
+    public static final String INDEX_FILE = "META-INF/testable/mock-index";
+
+    private static final String CHARSET = "UTF-8";
+    private static final String LINE_SOURCE = "source";
+    private static final String LINE_MOCK = "mock";
+    private static final String LINE_TARGET = "target";
+    private static final String SEPARATOR = " ";
+    private static final String DOLLAR = "$";
+
+    /**
+     * Kinds of source-mock relationship, ordered by priority
+     */
+    private static final String KIND_MOCK_WITH_ON_SOURCE = "mockWithOnSource";
+    private static final String KIND_INNER_MOCK = "innerMock";
+    private static final List<String> KINDS = Arrays.asList(KIND_MOCK_WITH_ON_SOURCE, "mockWithOnTest",
+        KIND_INNER_MOCK, "innerContainer", "outerMock");
+
+    /**
+     * SourceClass → Mock classes of this source class in discovery order
+     */
+    private final Map<String, List<Mapping>> mappings = new HashMap<String, List<Mapping>>();
+
+    /**
+     * MockClass → Owner classes of all mock targets
+     */
+    private final Map<String, Set<String>> targetOwners = new HashMap<String, Set<String>>();
+
+    /**
+     * Load and merge all index files from class loader
+     * @param loader class loader to read from
+     * @return merged index, null if no index file found
+     */
+    public static MockIndex load(ClassLoader loader) {
+        Enumeration<URL> urls;
+        try {
+            urls = loader.getResources(INDEX_FILE);
+        } catch (IOException e) {
+            LogUtil.warn("Failed to look for mock index: %s", e.getMessage());
+            return null;
+        }
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+        MockIndex index = new MockIndex();
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            try {
+                index.read(url);
+                LogUtil.verbose("Loaded mock index %s", url);
+            } catch (IOException e) {
+                LogUtil.warn("Failed to read mock index %s: %s", url, e.getMessage());
+                return null;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get mock class of specified source class
+     * @param sourceClassName slash-separated source class name
+     * @param isOuterOfInnerClass whether looking for mock class of inner class via its outer class,
+     *                            which only takes mock classes related to test class
+     * @param innerMockClassName name of inner mock class in test class
+     * @return mock class with highest priority, null if not found
+     */
+    public Mapping getMapping(String sourceClassName, boolean isOuterOfInnerClass, String innerMockClassName) {
+        List<Mapping> candidates = mappings.get(sourceClassName);
+        if (candidates == null) {
+            return null;
+        }
+        Mapping found = null;
+        for (Mapping m : candidates) {
+            if (isOuterOfInnerClass && m.kind.equals(KIND_MOCK_WITH_ON_SOURCE)) {
+                continue;
+            }
+            if (m.kind.equals(KIND_INNER_MOCK) && !m.mockClassName.endsWith(DOLLAR + innerMockClassName)) {
+                continue;
+            }
+            if (found == null || KINDS.indexOf(m.kind) < KINDS.indexOf(found.kind)) {
+                found = m;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get owner classes of all mock targets in specified mock class
+     * @param mockClassName slash-separated mock class name
+     * @return owner classes, null if the mock class is not indexed
+     */
+    public Set<String> getTargetOwners(String mockClassName) {
+        return targetOwners.get(mockClassName);
+    }
+
+    private void read(URL url) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), CHARSET));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split(SEPARATOR);
+                if (columns[0].equals(LINE_SOURCE) && columns.length >= 4 && KINDS.contains(columns[2])) {
+                    addMapping(columns[1], new Mapping(columns[2], columns[3], columns.length > 4 ? columns[4] : null));
+                } else if (columns[0].equals(LINE_MOCK) && columns.length == 2) {
+                    // a mock class without any mock method is still indexed
+                    addTargetOwner(columns[1], null);
+                } else if (columns[0].equals(LINE_TARGET) && columns.length == 5) {
+                    addTargetOwner(columns[1], columns[2]);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void addMapping(String sourceClassName, Mapping mapping) {
+        List<Mapping> candidates = mappings.get(sourceClassName);
+        if (candidates == null) {
+            candidates = new ArrayList<Mapping>();
+            mappings.put(sourceClassName, candidates);
+        }
+        candidates.add(mapping);
+    }
+
+    private void addTargetOwner(String mockClassName, String ownerClassName) {
+        Set<String> owners = targetOwners.get(mockClassName);
+        if (owners == null) {
+            owners = new HashSet<String>();
+            targetOwners.put(mockClassName, owners);
+        }
+        if (ownerClassName != null) {
+            owners.add(ownerClassName);
+        }
+    }
+
+    public static class Mapping {
+
+        public final String kind;
+
+        /**
+         * Slash-separated mock class name
+         */
+        public final String mockClassName;
+
+        /**
+         * Slash-separated name of test class with @MockWith annotation, null for other kinds
+         */
+        public final String testClassName;
+
+        public Mapping(String kind, String mockClassName, String testClassName) {
+            this.kind = kind;
+            this.mockClassName = mockClassName;
+            this.testClassName = testClassName;
+        }
+
+        public boolean isMockWith() {
+            return kind.equals(KIND_MOCK_WITH_ON_SOURCE) || testClassName != null;
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.alibaba.testable.agent.tool;
+
+import com.alibaba.testable.agent.model.MethodInfo;
+import com.alibaba.testable.agent.util.ClassUtil;
+import com.alibaba.testable.agent.util.MethodUtil;
+
+import java.util.*;
+
+import static com.alibaba.testable.agent.constant.ByteCodeConst.TYPE_CLASS;
+import static com.alibaba.testable.agent.constant.ConstPool.KOTLIN_PREFIX_ACCESS;
+import static com.alibaba.testable.core.constant.ConstPool.CONSTRUCTOR;
+
+/**
+ * Index of mock methods, for looking up mock method of an invocation without traversing all mock methods
+ *
+ * @author flin
+ */
+public class MockMethodIndex {
+
+    private static final String VOID_RETURN = ")V";
+
+    /**
+     * target class -> target method name -> target method descriptor -> mock method
+     */
+    private final Map<String, Map<String, Map<String, MethodInfo>>> memberMethods =
+        new HashMap<String, Map<String, Map<String, MethodInfo>>>();
+    /**
+     * constructed class -> constructor descriptor -> mock method
+     */
+    private final Map<String, Map<String, MethodInfo>> newOperatorMethods =
+        new HashMap<String, Map<String, MethodInfo>>();
+    private final Set<MethodInfo> memberMethodSet = new HashSet<MethodInfo>();
+    /**
+     * Cache of normalized kotlin companion class names, accessor method names and accessor descriptors
+     */
+    private final Map<String, String> companionOwners = new HashMap<String, String>();
+    private final Map<String, String> accessorNames = new HashMap<String, String>();
+    private final Map<String, String> accessorDescs = new HashMap<String, String>();
+
+    public MockMethodIndex(List<MethodInfo> injectMethods) {
+        for (MethodInfo mi : injectMethods) {
+            if (mi.getName().equals(CONSTRUCTOR)) {
+                addNewOperatorMethod(mi);
+            } else {
+                addMemberMethod(mi);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return memberMethods.isEmpty() && newOperatorMethods.isEmpty();
+    }
+
+    /**
+     * Get all mock methods of member or static method
+     * @return set of mock methods
+     */
+    public Set<MethodInfo> getMemberMethods() {
+        return memberMethodSet;
+    }
+
+    /**
+     * Find mock method for invocation of member or static method
+     * @param owner owner class of the invoked method
+     * @param name name of the invoked method
+     * @param desc descriptor of the invoked method
+     * @return mock method info, null if not mocked
+     */
+    public MethodInfo getMemberMethod(String owner, String name, String desc) {
+        String fitOwner = ClassUtil.isCompanionClassName(owner) ? getCompanionOwner(owner) : owner;
+        Map<String, Map<String, MethodInfo>> methodsOfOwner = memberMethods.get(fitOwner);
+        if (methodsOfOwner == null) {
+            return null;
+        }
+        String fitName = getAccessorName(name);
+        // Kotlin accessor method will append an extra type parameter
+        String fitDesc = fitName.equals(name) ? desc : getAccessorDesc(desc);
+        Map<String, MethodInfo> methodsOfName = methodsOfOwner.get(fitName);
+        return methodsOfName == null ? null : methodsOfName.get(fitDesc);
+    }
+
+    /**
+     * Find mock method for constructor invocation
+     * @param owner class to construct
+     * @param desc descriptor of the constructor
+     * @return mock method info, null if not mocked
+     */
+    public MethodInfo getNewOperatorMethod(String owner, String desc) {
+        Map<String, MethodInfo> methodsOfOwner = newOperatorMethods.get(owner);
+        return methodsOfOwner == null ? null : methodsOfOwner.get(desc);
+    }
+
+    private void addMemberMethod(MethodInfo mi) {
+        memberMethodSet.add(mi);
+        Map<String, Map<String, MethodInfo>> methodsOfOwner = memberMethods.get(mi.getClazz());
+        if (methodsOfOwner == null) {
+            methodsOfOwner = new HashMap<String, Map<String, MethodInfo>>();
+            memberMethods.put(mi.getClazz(), methodsOfOwner);
+        }
+        Map<String, MethodInfo> methodsOfName = methodsOfOwner.get(mi.getName());
+        if (methodsOfName == null) {
+            methodsOfName = new HashMap<String, MethodInfo>();
+            methodsOfOwner.put(mi.getName(), methodsOfName);
+        }
+        if (!methodsOfName.containsKey(mi.getDesc())) {
+            methodsOfName.put(mi.getDesc(), mi);
+        }
+    }
+
+    private void addNewOperatorMethod(MethodInfo mi) {
+        // descriptor of constructor mock is like "(params)Lpkg/Owner;"
+        String returnType = MethodUtil.getReturnType(mi.getDesc());
+        if (returnType.isEmpty() || returnType.charAt(0) != TYPE_CLASS) {
+            return;
+        }
+        String owner = ClassUtil.toSlashSeparateJavaStyleName(returnType);
+        String constructorDesc = mi.getDesc().substring(0, mi.getDesc().lastIndexOf(')')) + VOID_RETURN;
+        Map<String, MethodInfo> methodsOfOwner = newOperatorMethods.get(owner);
+        if (methodsOfOwner == null) {
+            methodsOfOwner = new HashMap<String, MethodInfo>();
+            newOperatorMethods.put(owner, methodsOfOwner);
+        }
+        if (!methodsOfOwner.containsKey(constructorDesc)) {
+            methodsOfOwner.put(constructorDesc, mi);
+        }
+    }
+
+    private String getCompanionOwner(String owner) {
+        String fitOwner = companionOwners.get(owner);
+        if (fitOwner == null) {
+            fitOwner = ClassUtil.fitCompanionClassName(owner);
+            companionOwners.put(owner, fitOwner);
+        }
+        return fitOwner;
+    }
+
+    private String getAccessorName(String name) {
+        if (!name.startsWith(KOTLIN_PREFIX_ACCESS)) {
+            return name;
+        }
+        String fitName = accessorNames.get(name);
+        if (fitName == null) {
+            fitName = ClassUtil.fitKotlinAccessorName(name);
+            accessorNames.put(name, fitName);
+        }
+        return fitName;
+    }
+
+    private String getAccessorDesc(String desc) {
+        String fitDesc = accessorDescs.get(desc);
+        if (fitDesc == null) {
+            fitDesc = MethodUtil.removeFirstParameter(desc);
+            accessorDescs.put(desc, fitDesc);
+        }
+        return fitDesc;
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.alibaba.testable.agent.tool;
+
+import com.alibaba.testable.agent.util.BytecodeUtil;
+import com.alibaba.testable.agent.util.MethodUtil;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.testable.core.constant.ConstPool.CONSTRUCTOR;
+
+/**
+ * Stack level and line number of each instruction in a method, calculated in one pass
+ * Used to locate the first instruction of an invocation (including its receiver and all parameters)
+ * without traveling back through the instructions again and again
+ *
+ * @author flin
+ */
+public class StackLevelMap {
+
+    private static final String VOID_RES = "V";
+
+    private final AbstractInsnNode[] instructions;
+    /**
+     * Stack level before each instruction
+     */
+    private final int[] levels;
+    /**
+     * Previous instruction when traveling backward, for frame node it's the jump instruction to its label
+     */
+    private final int[] previous;
+    /**
+     * Nearest previous instruction (along the traveling path) with lower stack level
+     */
+    private final int[] lowerPrevious;
+    /**
+     * Number of the last line before each instruction
+     */
+    private final int[] lineNumbers;
+    /**
+     * Last jump instruction before each label node
+     */
+    private final int[] jumpsBeforeLabel;
+    /**
+     * The NEW instruction of each constructor invocation
+     */
+    private final int[] newInstructions;
+
+    public StackLevelMap(AbstractInsnNode[] instructions) {
+        int size = instructions.length;
+        this.instructions = instructions;
+        this.levels = new int[size];
+        this.previous = new int[size];
+        this.lowerPrevious = new int[size];
+        this.lineNumbers = new int[size];
+        this.jumpsBeforeLabel = new int[size];
+        this.newInstructions = new int[size];
+        build();
+    }
+
+    /**
+     * Get line number of specified instruction
+     * @param index index of instruction
+     * @return line number, 0 for unknown
+     */
+    public int getLineNum(int index) {
+        return lineNumbers[index];
+    }
+
+    /**
+     * Find the first instruction of a member or static method invocation
+     * @param rangeEnd index of the invoke instruction
+     * @return index of first instruction, -1 for not found
+     */
+    public int getMemberMethodStart(int rangeEnd) {
+        int stackLevel = getInitialStackLevel((MethodInsnNode)instructions[rangeEnd]);
+        if (stackLevel < 0) {
+            return rangeEnd;
+        }
+        // the invocation starts at where stack is lower than the level it consumes from
+        int startLevel = levels[rangeEnd] - stackLevel - 1;
+        int i = previous[rangeEnd];
+        while (i >= 0 && levels[i] > startLevel) {
+            i = lowerPrevious[i];
+        }
+        return i;
+    }
+
+    /**
+     * Find the NEW instruction of a constructor invocation
+     * @param rangeEnd index of the invoke instruction
+     * @return index of NEW instruction, -1 for not found
+     */
+    public int getConstructorStart(int rangeEnd) {
+        return newInstructions[rangeEnd];
+    }
+
+    private void build() {
+        Map<LabelNode, Integer> lastJumps = new HashMap<LabelNode, Integer>();
+        List<Integer> pendingNews = new ArrayList<Integer>();
+        int level = 0;
+        int line = 0;
+        int lastLabel = -1;
+        for (int i = 0; i < instructions.length; i++) {
+            AbstractInsnNode instruction = instructions[i];
+            previous[i] = i - 1;
+            if (instruction instanceof FrameNode) {
+                // code before frame could be skipped, continue from the jump instruction to it
+                int jump = lastLabel < 0 ? -1 : jumpsBeforeLabel[lastLabel];
+                previous[i] = jump;
+                if (jump >= 0) {
+                    level = levels[jump] - getStackLevelChange(instructions[jump]);
+                }
+            }
+            levels[i] = level;
+            lineNumbers[i] = line;
+            jumpsBeforeLabel[i] = -1;
+            newInstructions[i] = -1;
+            int lower = previous[i];
+            while (lower >= 0 && levels[lower] >= level) {
+                lower = lowerPrevious[lower];
+            }
+            lowerPrevious[i] = lower;
+
+            if (instruction instanceof LabelNode) {
+                Integer jump = lastJumps.get(instruction);
+                jumpsBeforeLabel[i] = (jump == null) ? -1 : jump;
+                lastLabel = i;
+            } else if (instruction instanceof LineNumberNode) {
+                line = ((LineNumberNode)instruction).line;
+            } else if (instruction instanceof JumpInsnNode) {
+                lastJumps.put(((JumpInsnNode)instruction).label, i);
+            } else if (instruction.getOpcode() == Opcodes.NEW) {
+                pendingNews.add(i);
+            } else if (instruction.getOpcode() == Opcodes.INVOKESPECIAL &&
+                CONSTRUCTOR.equals(((MethodInsnNode)instruction).name)) {
+                newInstructions[i] = matchNewInstruction(pendingNews, ((MethodInsnNode)instruction).owner);
+            }
+            level -= getStackLevelChange(instruction);
+        }
+    }
+
+    private int matchNewInstruction(List<Integer> pendingNews, String owner) {
+        for (int i = pendingNews.size() - 1; i >= 0; i--) {
+            int index = pendingNews.get(i);
+            if (((TypeInsnNode)instructions[index]).desc.equals(owner)) {
+                pendingNews.remove(i);
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int getInitialStackLevel(MethodInsnNode instruction) {
+        int stackLevel = MethodUtil.getParameterTypes((instruction).desc).size();
+        switch (instruction.getOpcode()) {
+            case Opcodes.INVOKESPECIAL:
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKEINTERFACE:
+                return stackLevel;
+            case Opcodes.INVOKESTATIC:
+            case Opcodes.INVOKEDYNAMIC:
+                return stackLevel - 1;
+            default:
+                return 0;
+        }
+    }
+
+    private int getStackLevelChange(AbstractInsnNode instruction) {
+        switch (instruction.getOpcode()) {
+            case Opcodes.INVOKESPECIAL:
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKEINTERFACE:
+                return stackEffectOfInvocation(((MethodInsnNode) instruction).desc) + 1;
+            case Opcodes.INVOKESTATIC:
+                return stackEffectOfInvocation(((MethodInsnNode) instruction).desc);
+            case Opcodes.INVOKEDYNAMIC:
+                return stackEffectOfInvocation(((InvokeDynamicInsnNode) instruction).desc);
+            case -1:
+                // either LabelNode, LineNumberNode or FrameNode
+                return 0;
+            default:
+                return -BytecodeUtil.stackEffect(instruction.getOpcode());
+        }
+    }
+
+    private int stackEffectOfInvocation(String desc) {
+        return MethodUtil.getParameterTypes(desc).size() - (MethodUtil.getReturnType(desc).equals(VOID_RES) ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.alibaba.testable.agent.tool;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of classes woven ahead of time, used to skip unchanged classes in the next weaving
+ * Text format: first line is the weaving environment, following each line is a class in
+ * "ClassName \t OutputRoot \t ModifiedTime \t Checksum \t Dependency,Dependency..." format
+ *
+ * @author flin
+ */
+public class WeaveIndex {
+
+    private static final String CHARSET = "UTF-8";
+    private static final String COLUMN_SEPARATOR = "\t";
+    private static final String DEPENDENCY_SEPARATOR = ",";
+    private static final int COLUMN_COUNT = 5;
+
+    private final String environment;
+    private final boolean environmentMatched;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private WeaveIndex(String environment, boolean environmentMatched) {
+        this.environment = environment;
+        this.environmentMatched = environmentMatched;
+    }
+
+    /**
+     * Load index from file
+     * @param file index file
+     * @param environment anything besides class files which affects weaving result
+     * @return loaded index, or empty index if file not exist or broken
+     */
+    public static WeaveIndex load(File file, String environment) {
+        if (!file.isFile()) {
+            return new WeaveIndex(environment, false);
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+            WeaveIndex index = new WeaveIndex(environment, environment.equals(reader.readLine()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split(COLUMN_SEPARATOR, -1);
+                if (columns.length != COLUMN_COUNT) {
+                    return new WeaveIndex(environment, false);
+                }
+                Set<String> dependencies = new HashSet<String>();
+                if (!columns[4].isEmpty()) {
+                    dependencies.addAll(Arrays.asList(columns[4].split(DEPENDENCY_SEPARATOR)));
+                }
+                index.entries.put(columns[0], new Entry(Integer.parseInt(columns[1]), Long.parseLong(columns[2]),
+                    Long.parseLong(columns[3]), dependencies));
+            }
+            return index;
+        } catch (IOException e) {
+            return new WeaveIndex(environment, false);
+        } catch (NumberFormatException e) {
+            return new WeaveIndex(environment, false);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Save index to file, classes are sorted by name
+     * @param file index file
+     * @throws IOException failed to write file
+     */
+    public void save(File file) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), CHARSET));
+        try {
+            writer.write(environment);
+            writer.write('\n');
+            for (Map.Entry<String, Entry> e : new TreeMap<String, Entry>(entries).entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(e.getKey() + COLUMN_SEPARATOR + entry.outputRoot + COLUMN_SEPARATOR +
+                    entry.modifiedTime + COLUMN_SEPARATOR + entry.checksum + COLUMN_SEPARATOR);
+                writer.write(join(new TreeSet<String>(entry.dependencies)));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Whether the index is produced in the same environment, otherwise all classes should be woven again
+     */
+    public boolean isEnvironmentMatched() {
+        return environmentMatched;
+    }
+
+    public Entry get(String className) {
+        return entries.get(className);
+    }
+
+    public void put(String className, Entry entry) {
+        entries.put(className, entry);
+    }
+
+    public void remove(String className) {
+        entries.remove(className);
+    }
+
+    /**
+     * @return slash-separated name of all indexed classes
+     */
+    public Set<String> getClassNames() {
+        return new HashSet<String>(entries.keySet());
+    }
+
+    private static String join(Collection<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) {
+                sb.append(DEPENDENCY_SEPARATOR);
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    public static class Entry {
+
+        /**
+         * Index of the output folder which class file is written to
+         */
+        public final int outputRoot;
+
+        /**
+         * Modified time of the original class file
+         */
+        public final long modifiedTime;
+
+        /**
+         * CRC32 of the original class file
+         */
+        public final long checksum;
+
+        /**
+         * Classes read when weaving (slash-separated)
+         */
+        public final Set<String> dependencies;
+
+        public Entry(int outputRoot, long modifiedTime, long checksum, Set<String> dependencies) {
+            this.outputRoot = outputRoot;
+            this.modifiedTime = modifiedTime;
+            this.checksum = checksum;
+            this.dependencies = dependencies;
+        }
+
+    }
+
+}
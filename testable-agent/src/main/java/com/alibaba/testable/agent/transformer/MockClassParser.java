@@ -7,10 +7,7 @@ import com.alibaba.testable.agent.util.*;
 import com.alibaba.testable.core.exception.TargetNotExistException;
 import com.alibaba.testable.core.util.LogUtil;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AnnotationNode;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.InnerClassNode;
-import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.*;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -24,6 +21,7 @@ import static com.alibaba.testable.agent.util.MockInvokeUtil.getTargetClassName;
 import static com.alibaba.testable.agent.util.MockInvokeUtil.hasTargetClassParameter;
 import static com.alibaba.testable.core.constant.ConstPool.CONSTRUCTOR;
 import static com.alibaba.testable.core.constant.ConstPool.MOCK_POSTFIX;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
 
 public class MockClassParser {
 
@@ -130,7 +128,7 @@ public class MockClassParser {
                     checkTargetConstructorExists(cn, mn);
                 }
                 methodInfos.add(new MethodInfo(ClassUtil.getSourceClassName(cn.name), CONSTRUCTOR, mn.desc, cn.name,
-                    mn.name, mn.desc, isStatic(mn)));
+                    mn.name, mn.desc, isStatic(mn), isUsingSourceMethod(mn)));
             } else if (fullClassName.equals(ConstPool.MOCK_INVOKE) && isValidMockMethod(mn, an)) {
                 if (GlobalConfig.checkMockTargetExistence) {
                     checkTargetMethodExists(cn, mn, an);
@@ -158,12 +156,13 @@ public class MockClassParser {
                 return null;
             }
             return new MethodInfo(methodDescPair.left, targetMethod, methodDescPair.right, cn.name, mn.name, mn.desc,
-                isStatic);
+                isStatic, isUsingSourceMethod(mn));
         } else {
             // "targetClass" found, use it as target class type
             String slashSeparatedName = ClassUtil.toSlashSeparatedName(targetTypeName);
             return new MethodInfo(slashSeparatedName, targetMethod, mn.desc, cn.name, mn.name,
-                MethodUtil.addParameterAtBegin(mn.desc, ClassUtil.toByteCodeClassName(slashSeparatedName)), isStatic);
+                MethodUtil.addParameterAtBegin(mn.desc, ClassUtil.toByteCodeClassName(slashSeparatedName)), isStatic,
+                isUsingSourceMethod(mn));
         }
     }
 
@@ -239,4 +238,19 @@ public class MockClassParser {
         return !firstParameter.isEmpty() && firstParameter.charAt(0) == TYPE_CLASS;
     }
 
+    /**
+     * Check whether mock method reads "TestableTool.SOURCE_METHOD" variable
+     * @param mn mock method
+     * @return used or not
+     */
+    private boolean isUsingSourceMethod(MethodNode mn) {
+        for (AbstractInsnNode node : mn.instructions) {
+            if (node.getOpcode() == GETSTATIC && CLASS_TESTABLE_TOOL.equals(((FieldInsnNode)node).owner) &&
+                FIELD_SOURCE_METHOD.equals(((FieldInsnNode)node).name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
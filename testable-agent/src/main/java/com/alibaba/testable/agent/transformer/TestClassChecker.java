@@ -21,6 +21,22 @@ public class TestClassChecker {
         new SpockFramework()
     };
 
+    private final Set<String> testAnnotations = new HashSet<String>();
+
+    public TestClassChecker() {
+        for (Framework i : frameworkClasses) {
+            testAnnotations.addAll(i.getTestMethodAnnotations());
+        }
+    }
+
+    /**
+     * Get test case annotations of all supported test frameworks
+     * @return set of annotation descriptor
+     */
+    public Set<String> getTestAnnotations() {
+        return testAnnotations;
+    }
+
     public Framework checkFramework(ClassNode cn) {
         Set<String> classAnnotationSet = new HashSet<String>();
         Set<String> methodAnnotationSet = new HashSet<String>();
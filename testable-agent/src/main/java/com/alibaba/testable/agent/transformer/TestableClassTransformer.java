@@ -1,27 +1,32 @@
 package com.alibaba.testable.agent.transformer;
 
+import com.alibaba.testable.agent.PreMain;
 import com.alibaba.testable.agent.constant.ConstPool;
 import com.alibaba.testable.agent.handler.*;
 import com.alibaba.testable.agent.handler.test.Framework;
 import com.alibaba.testable.agent.model.MethodInfo;
+import com.alibaba.testable.agent.tool.BytecodeCache;
+import com.alibaba.testable.agent.tool.ConstantPoolScanner;
+import com.alibaba.testable.agent.tool.MockIndex;
 import com.alibaba.testable.agent.util.*;
 import com.alibaba.testable.core.exception.TargetNotExistException;
 import com.alibaba.testable.core.model.ClassType;
 import com.alibaba.testable.core.util.LogUtil;
-import com.alibaba.testable.core.util.MockAssociationUtil;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InnerClassNode;
 
 import javax.lang.model.type.NullType;
+import java.io.File;
 import java.lang.instrument.ClassFileTransformer;
 import java.security.ProtectionDomain;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.alibaba.testable.agent.constant.ConstPool.*;
-import static com.alibaba.testable.core.constant.ConstPool.DOLLAR;
-import static com.alibaba.testable.core.constant.ConstPool.TEST_POSTFIX;
+import static com.alibaba.testable.core.constant.ConstPool.*;
 import static org.objectweb.asm.Opcodes.ACC_STATIC;
 
 /**
@@ -31,6 +36,7 @@ public class TestableClassTransformer implements ClassFileTransformer {
 
     private static final String FIELD_TREAT_AS = "treatAs";
     private static final String CLASS_JUNIT_5_NESTED = "org.junit.jupiter.api.Nested";
+    private static final String TESTABLE_ANNOTATION_PREFIX = "Lcom/alibaba/testable/core/annotation/";
 
     /**
      * Just avoid spend time to scan those surely non-user classes, should keep these lists as tiny as possible
@@ -40,72 +46,276 @@ public class TestableClassTransformer implements ClassFileTransformer {
 
     private final MockClassParser mockClassParser = new MockClassParser();
     private final TestClassChecker testClassChecker = new TestClassChecker();
+    private final BytecodeCache bytecodeCache = openBytecodeCache();
+    private final MockIndex mockIndex = loadMockIndex();
 
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
                             ProtectionDomain protectionDomain, byte[] classFileBuffer) {
         // className is in slash-separated format
-        if (isSystemClass(className)) {
+        if (isSystemClass(className) || !isAnyEnhancementEnabled()) {
             // Ignore system class and reloaded class
             return null;
         }
-        byte[] bytes = GlobalConfig.enhanceOmniConstructor ?
-            new OmniClassHandler().getBytes(classFileBuffer) : classFileBuffer;
-        bytes = GlobalConfig.enhanceFinal ? new FinalFieldClassHandler().getBytes(bytes) : bytes;
+        ConstantPoolScanner scanner = new ConstantPoolScanner(classFileBuffer);
+        if (PreWovenUtil.isPreWoven(scanner)) {
+            // already transformed ahead of time
+            PreWovenUtil.replay(classFileBuffer);
+            LogUtil.verbose("Skip pre-woven class %s", className);
+            return null;
+        }
         if (GlobalConfig.enhanceMock) {
-            ClassNode cn = ClassUtil.getClassNode(className);
-            if (cn != null) {
-                return transformMock(bytes, cn);
-            }
+            return transformMock(className, classFileBuffer, scanner);
         }
-        return bytes;
+        if (!isCommonEnhancementNeeded(scanner)) {
+            return null;
+        }
+        // parse class only once, all enabled handlers work on the same class node
+        ClassNode cn = BaseClassHandler.readClassNode(classFileBuffer);
+        return transformCommon(cn) ? BaseClassHandler.writeClassNode(cn) : null;
+    }
+
+    private boolean isAnyEnhancementEnabled() {
+        return isCommonEnhancementEnabled() || GlobalConfig.enhanceMock;
+    }
+
+    private boolean isCommonEnhancementEnabled() {
+        return GlobalConfig.enhanceOmniConstructor || GlobalConfig.enhanceFinal ||
+            GlobalConfig.isLazyThreadPoolEnhance();
+    }
+
+    /**
+     * Check whether any enhancement not related to mock could apply to the class
+     * @param scanner constant pool of the class
+     * @return false if surely no enhancement would apply
+     */
+    private boolean isCommonEnhancementNeeded(ConstantPoolScanner scanner) {
+        return GlobalConfig.enhanceOmniConstructor || GlobalConfig.enhanceFinal ||
+            (GlobalConfig.isLazyThreadPoolEnhance() &&
+                (!scanner.isValid() || scanner.hasAnyUtf8Of(ExecutorCallHandler.SUBMIT_METHODS)));
     }
 
-    private byte[] transformMock(byte[] bytes, ClassNode cn) {
+    /**
+     * Apply enhancements not related to mock
+     * @param cn class node to transform
+     * @return whether any enhancement applied
+     */
+    private boolean transformCommon(ClassNode cn) {
+        if (GlobalConfig.enhanceOmniConstructor) {
+            new OmniClassHandler().transform(cn);
+        }
+        if (GlobalConfig.enhanceFinal) {
+            new FinalFieldClassHandler().transform(cn);
+        }
+        boolean transformed = GlobalConfig.enhanceOmniConstructor || GlobalConfig.enhanceFinal;
+        if (GlobalConfig.isLazyThreadPoolEnhance()) {
+            ExecutorCallHandler executorCallHandler = new ExecutorCallHandler();
+            executorCallHandler.transform(cn);
+            transformed |= executorCallHandler.isTransformed();
+        }
+        return transformed;
+    }
+
+    private byte[] transformMock(String className, byte[] classFileBuffer, ConstantPoolScanner scanner) {
+        ClassNode cn = null;
         try {
-            if (mockClassParser.isMockClass(cn)) {
-                // it's a mock class
-                bytes = new MockClassHandler(cn.name).getBytes(bytes);
-                BytecodeUtil.dumpByte(cn, GlobalConfig.getDumpPath(), bytes);
-                return bytes;
+            BaseClassHandler mockHandler;
+            if (isMockOrTestClassCandidate(className, scanner)) {
+                cn = BaseClassHandler.readClassNode(classFileBuffer);
+                mockHandler = getMockHandler(cn);
+            } else {
+                // decide by constant pool only, class node is not needed unless it's a source class
+                mockHandler = getSourceClassHandler(className, scanner);
             }
-            String mockClass = foundMockForSourceClass(cn.name);
-            if (mockClass != null) {
-                // it's a source class with testable enabled
-                List<MethodInfo> injectMethods = mockClassParser.getTestableMockMethods(mockClass);
-                bytes = new SourceClassHandler(injectMethods, mockClass).getBytes(bytes);
-                BytecodeUtil.dumpByte(cn, GlobalConfig.getDumpPath(), bytes);
-                return bytes;
+            if (mockHandler != null && PreWovenUtil.isWeaving() && mockHandler.getCacheSignature() == null) {
+                // transform result relies on current JVM, e.g. id of mock class
+                PreWovenUtil.deferToRuntime();
+                return null;
             }
-            Framework framework = testClassChecker.checkFramework(cn);
-            if (framework != null) {
-                // it's a test class
-                bytes = new TestClassHandler(framework).getBytes(bytes);
-                BytecodeUtil.dumpByte(cn, GlobalConfig.getDumpPath(), bytes);
+            if (mockHandler != null) {
+                byte[] cacheKey = getCacheKey(mockHandler, classFileBuffer);
+                byte[] bytes = (cacheKey == null) ? null : bytecodeCache.get(cacheKey);
+                if (bytes == null) {
+                    if (cn == null) {
+                        cn = BaseClassHandler.readClassNode(classFileBuffer);
+                    }
+                    transformCommon(cn);
+                    mockHandler.transform(cn);
+                    bytes = BaseClassHandler.writeClassNode(cn);
+                    if (cacheKey != null) {
+                        bytecodeCache.put(cacheKey, bytes);
+                    }
+                } else {
+                    LogUtil.verbose("Loaded class %s from bytecode cache", className);
+                }
+                if (cn != null) {
+                    BytecodeUtil.dumpByte(cn, GlobalConfig.getDumpPath(), bytes);
+                } else if (GlobalConfig.getDumpPath() != null) {
+                    BytecodeUtil.dumpByte(className, GlobalConfig.getDumpPath(), bytes);
+                }
                 return bytes;
-            } else if (cn.name.endsWith(TEST_POSTFIX)) {
-                LogUtil.verbose("Failed to detect test framework for %s", cn.name);
             }
         } catch (TargetNotExistException e) {
             LogUtil.error("Invalid mock method %s::%s - %s", e.getClassName(), e.getMethodName(), e.getMessage());
             System.exit(0);
         } catch (Throwable t) {
-            LogUtil.warn("Failed to transform class " + cn.name);
+            LogUtil.warn("Failed to transform class " + className);
             LogUtil.warn(t.toString());
             LogUtil.warn(ThreadUtil.getFirstRelatedStackLine(t));
+            // class node may be partially modified, start over without mock enhancement
+            cn = null;
         } finally {
             LogUtil.resetLogLevel();
         }
-        BytecodeUtil.dumpByte(cn, null, bytes);
+        if (cn == null) {
+            if (!isCommonEnhancementNeeded(scanner)) {
+                return null;
+            }
+            cn = BaseClassHandler.readClassNode(classFileBuffer);
+        }
+        byte[] bytes = transformCommon(cn) ? BaseClassHandler.writeClassNode(cn) : null;
+        BytecodeUtil.dumpByte(cn, null, bytes == null ? classFileBuffer : bytes);
         return bytes;
     }
 
-    private String foundMockForSourceClass(String name) {
-        String className = (GlobalConfig.getMockPackageMapping() == null) ? name : mapPackage(name);
-        // handle @MockWith annotation on source class
-        String mockClass = lookForMockWithAnnotationAsSourceClass(className);
+    private byte[] getCacheKey(BaseClassHandler mockHandler, byte[] classFileBuffer) {
+        if (bytecodeCache == null) {
+            return null;
+        }
+        String signature = mockHandler.getCacheSignature();
+        return (signature == null) ? null : bytecodeCache.getKey(classFileBuffer, signature);
+    }
+
+    private BytecodeCache openBytecodeCache() {
+        if (!GlobalConfig.enableBytecodeCache) {
+            return null;
+        }
+        // agent jar of a snapshot version could be rebuilt, also take its modified time into account
+        String environment = String.format("%s|%d|%b|%b|%b", PreMain.class.getPackage().getImplementationVersion(),
+            getAgentJarModifiedTime(), GlobalConfig.enhanceOmniConstructor, GlobalConfig.enhanceFinal,
+            GlobalConfig.isLazyThreadPoolEnhance());
+        return BytecodeCache.open(GlobalConfig.getBytecodeCachePath(), environment);
+    }
+
+    private MockIndex loadMockIndex() {
+        if (!GlobalConfig.enableMockIndex) {
+            return null;
+        }
+        MockIndex index = MockIndex.load(ClassLoader.getSystemClassLoader());
+        if (index == null) {
+            LogUtil.warn("No mock index found, fallback to look for mock classes at runtime");
+        }
+        return index;
+    }
+
+    /**
+     * Get modified time of the agent jar file
+     * @return time in milliseconds, 0 if not available
+     */
+    public static long getAgentJarModifiedTime() {
+        try {
+            return new File(PreMain.class.getProtectionDomain().getCodeSource().getLocation().toURI()).lastModified();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Check whether a class could be mock class or test class, or has any testable annotation
+     * Note: a class can be mock class without any mock annotation only when its name ends with "Mock"
+     *
+     * @param className class to check
+     * @param scanner constant pool of the class
+     * @return false if surely neither mock class nor test class
+     */
+    private boolean isMockOrTestClassCandidate(String className, ConstantPoolScanner scanner) {
+        return !scanner.isValid() || className.endsWith(MOCK_POSTFIX) ||
+            scanner.hasUtf8StartsWith(TESTABLE_ANNOTATION_PREFIX) ||
+            scanner.hasAnyUtf8Of(testClassChecker.getTestAnnotations());
+    }
+
+    private BaseClassHandler getMockHandler(ClassNode cn) {
+        if (mockClassParser.isMockClass(cn)) {
+            // it's a mock class
+            return new MockClassHandler(cn.name);
+        }
+        String mockClass = foundMockForSourceClass(cn.name, null);
         if (mockClass != null) {
-            return mockClass;
+            // it's a source class with testable enabled
+            List<MethodInfo> injectMethods = mockClassParser.getTestableMockMethods(mockClass);
+            return new SourceClassHandler(injectMethods, mockClass);
+        }
+        Framework framework = testClassChecker.checkFramework(cn);
+        if (framework != null) {
+            // it's a test class
+            return new TestClassHandler(framework);
+        } else if (cn.name.endsWith(TEST_POSTFIX)) {
+            LogUtil.verbose("Failed to detect test framework for %s", cn.name);
+        }
+        return null;
+    }
+
+    private BaseClassHandler getSourceClassHandler(String className, ConstantPoolScanner scanner) {
+        String mockClass = foundMockForSourceClass(className, scanner);
+        if (mockClass != null) {
+            Set<String> targetOwners = (mockIndex == null) ? null : mockIndex.getTargetOwners(mockClass);
+            if (targetOwners != null && !isAnyClassReferred(targetOwners, scanner)) {
+                LogUtil.verbose("Skip source class %s, no mocked class referred", className);
+                return null;
+            }
+            List<MethodInfo> injectMethods = mockClassParser.getTestableMockMethods(mockClass);
+            if (targetOwners != null || isAnyMockTargetReferred(injectMethods, scanner)) {
+                // it's a source class with testable enabled
+                return new SourceClassHandler(injectMethods, mockClass);
+            }
+            LogUtil.verbose("Skip source class %s, no mocked class referred", className);
+        } else if (className.endsWith(TEST_POSTFIX)) {
+            LogUtil.verbose("Failed to detect test framework for %s", className);
+        }
+        return null;
+    }
+
+    /**
+     * Every invocation or construction which could be mocked has its owner class in constant pool
+     */
+    private boolean isAnyMockTargetReferred(List<MethodInfo> injectMethods, ConstantPoolScanner scanner) {
+        Set<String> targetClasses = new HashSet<String>();
+        for (MethodInfo mi : injectMethods) {
+            targetClasses.add(mi.getName().equals(CONSTRUCTOR) ?
+                ClassUtil.toSlashSeparateJavaStyleName(MethodUtil.getReturnType(mi.getDesc())) : mi.getClazz());
+        }
+        return isAnyClassReferred(targetClasses, scanner);
+    }
+
+    private boolean isAnyClassReferred(Set<String> targetClasses, ConstantPoolScanner scanner) {
+        for (String name : scanner.getClassNames()) {
+            if (targetClasses.contains(ClassUtil.fitCompanionClassName(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find mock class of source class
+     *
+     * @param name source class name
+     * @param scanner constant pool of the source class, null if not available
+     * @return name of mock class, null for not found
+     */
+    private String foundMockForSourceClass(String name, ConstantPoolScanner scanner) {
+        String className = (GlobalConfig.getMockPackageMapping() == null) ? name : mapPackage(name);
+        if (mockIndex != null) {
+            // answer from compile time index, without reading any class
+            return foundMockInIndex(className);
+        }
+        String mockClass;
+        if (mayHaveMockWithAnnotation(className, name, scanner)) {
+            // handle @MockWith annotation on source class
+            mockClass = lookForMockWithAnnotationAsSourceClass(className);
+            if (mockClass != null) {
+                return mockClass;
+            }
         }
         // look for [ThisClass]Test.Mock, [ThisClass]Mock and class with @MockContainer annotation
         mockClass = foundMockForStandardClass(className);
@@ -116,6 +326,33 @@ public class TestableClassTransformer implements ClassFileTransformer {
         return foundMockForInnerSourceClass(className);
     }
 
+    /**
+     * Class without any testable annotation in its constant pool needn't be parsed to look for @MockWith annotation
+     */
+    private boolean mayHaveMockWithAnnotation(String className, String name, ConstantPoolScanner scanner) {
+        return scanner == null || !scanner.isValid() || !className.equals(name) ||
+            scanner.hasUtf8StartsWith(TESTABLE_ANNOTATION_PREFIX);
+    }
+
+    private String foundMockInIndex(String className) {
+        MockIndex.Mapping mapping = mockIndex.getMapping(className, false, GlobalConfig.innerMockClassName);
+        if (mapping == null && className.contains(DOLLAR) && !className.endsWith(KOTLIN_POSTFIX_COMPANION)) {
+            mapping = mockIndex.getMapping(className.substring(0, className.indexOf(DOLLAR)), true,
+                GlobalConfig.innerMockClassName);
+        }
+        if (mapping == null) {
+            return null;
+        }
+        if (mapping.testClassName != null) {
+            PreWovenUtil.recordMockWith(ClassUtil.toDotSeparatedName(mapping.mockClassName),
+                ClassUtil.toDotSeparatedName(mapping.testClassName));
+        }
+        if (mapping.isMockWith()) {
+            DiagnoseUtil.setupByClass(ClassUtil.getClassNode(mapping.mockClassName));
+        }
+        return mapping.mockClassName;
+    }
+
     private String mapPackage(String name) {
         String dotSeparatedName = ClassUtil.toDotSeparatedName(name);
         for (String prefix : GlobalConfig.getMockPackageMapping().keySet()) {
@@ -133,7 +370,7 @@ public class TestableClassTransformer implements ClassFileTransformer {
     }
 
     private String foundMockForStandardClass(String className) {
-        ClassNode cn = adaptInnerClass(ClassUtil.getClassNode(ClassUtil.getTestClassName(className)));
+        ClassNode cn = adaptInnerClass(ClassUtil.getCompanionClassNode(ClassUtil.getTestClassName(className)));
         if (cn != null) {
             // handle @MockWith annotation on test class
             String mockClass = lookForMockWithAnnotationAsTestClass(cn);
@@ -159,7 +396,7 @@ public class TestableClassTransformer implements ClassFileTransformer {
 
     private String lookForOuterMockClass(String className) {
         String mockClassName = ClassUtil.getMockClassName(className);
-        if (mockClassParser.isMockClass(ClassUtil.getClassNode(mockClassName))) {
+        if (mockClassParser.isMockClass(ClassUtil.getCompanionClassNode(mockClassName))) {
             return mockClassName;
         }
         return null;
@@ -220,7 +457,7 @@ public class TestableClassTransformer implements ClassFileTransformer {
                 if ((ic.access & ACC_STATIC) == 0) {
                     LogUtil.warn("Mock class in \"%s\" is not declared as static", cn.name);
                 } else {
-                    ic.access = BytecodeUtil.toPublicAccess(ic.access);
+                    // class node is shared via cache and never written back, should not be modified here
                     return ic.name;
                 }
             }
@@ -237,7 +474,7 @@ public class TestableClassTransformer implements ClassFileTransformer {
     private String lookForMockWithAnnotationAsTestClass(ClassNode cn) {
         String mockClassName = parseMockWithAnnotation(cn, ClassType.TestClass);
         if (mockClassName != null) {
-            MockAssociationUtil.mockToTests.get(mockClassName).add(ClassUtil.toJavaStyleClassName(cn.name));
+            PreWovenUtil.recordMockWith(mockClassName, ClassUtil.toJavaStyleClassName(cn.name));
             return ClassUtil.toSlashSeparatedName(mockClassName);
         }
         return null;
@@ -235,9 +235,19 @@ public class BytecodeUtil {
                 return;
             }
         }
+        dumpByte(cn.name, dumpPath, bytes);
+    }
+
+    /**
+     * dump byte code to specified class file
+     * @param className name of class in slash-separated format
+     * @param dumpPath folder to store class file
+     * @param bytes original class bytes
+     */
+    public static void dumpByte(String className, String dumpPath, byte[] bytes) {
         try {
             String dumpFile = PathUtil.join(dumpPath,
-                cn.name.replace(SLASH, DOT).replace(DOLLAR, UNDERLINE) + POSTFIX_CLASS);
+                className.replace(SLASH, DOT).replace(DOLLAR, UNDERLINE) + POSTFIX_CLASS);
             LogUtil.verbose("Dump class: " + dumpFile);
             FileOutputStream stream = new FileOutputStream(dumpFile);
             stream.write(bytes);
@@ -291,7 +301,12 @@ public class BytecodeUtil {
             case 5:
                 return new InsnNode(ICONST_5);
             default:
-                return new IntInsnNode(BIPUSH, num);
+                if (num <= Byte.MAX_VALUE) {
+                    return new IntInsnNode(BIPUSH, num);
+                } else if (num <= Short.MAX_VALUE) {
+                    return new IntInsnNode(SIPUSH, num);
+                }
+                return new LdcInsnNode(num);
         }
     }
 
@@ -1,8 +1,8 @@
 package com.alibaba.testable.agent.util;
 
 import com.alibaba.testable.agent.constant.ConstPool;
+import com.alibaba.testable.agent.tool.ClassNodeCache;
 import com.alibaba.testable.agent.tool.ImmutablePair;
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
@@ -42,6 +42,7 @@ public class ClassUtil {
     private static final Map<Byte, ImmutablePair<String, String>> WRAPPER_METHOD_MAPPING =
         new HashMap<Byte, ImmutablePair<String, String>>();
     private static final Map<String, Integer> RETURN_OP_CODE_MAPPING = new HashMap<String, Integer>();
+    private static final ClassNodeCache CLASS_NODE_CACHE = new ClassNodeCache();
 
     static {
         TYPE_MAPPING.put(TYPE_BYTE, CLASS_BYTE);
@@ -219,19 +220,49 @@ public class ClassUtil {
 
     /**
      * Read class from current context
+     * Note: the returned class node is cached and shared, should not be modified
      * @param className class name
      * @return loaded class
      */
     public static ClassNode getClassNode(String className) {
-        ClassNode cn = new ClassNode();
-        try {
-            new ClassReader(className).accept(cn, 0);
-        } catch (Throwable e) {
-            // Could be IOException, ClassCircularityError or NullPointerException
-            // Ignore all of them
-            return null;
+        return getClassNode(null, className);
+    }
+
+    /**
+     * Read class from specified class loader
+     * Note: the returned class node is cached and shared, should not be modified
+     * @param loader class loader to read from, null for system class loader
+     * @param className class name
+     * @return loaded class
+     */
+    public static ClassNode getClassNode(ClassLoader loader, String className) {
+        String slashSeparatedName = toSlashSeparatedName(className);
+        if (PreWovenUtil.isWeaving()) {
+            PreWovenUtil.recordDependency(slashSeparatedName);
+        }
+        return CLASS_NODE_CACHE.get(loader, slashSeparatedName);
+    }
+
+    /**
+     * Read test class or mock class of a source class from current context, which usually not exist
+     * Note: the returned class node is cached and shared, should not be modified
+     * @param className class name
+     * @return loaded class, null if not exist
+     */
+    public static ClassNode getCompanionClassNode(String className) {
+        String slashSeparatedName = toSlashSeparatedName(className);
+        if (PreWovenUtil.isWeaving()) {
+            PreWovenUtil.recordDependency(slashSeparatedName);
         }
-        return cn;
+        return CLASS_NODE_CACHE.getCompanion(null, slashSeparatedName);
+    }
+
+    /**
+     * Get the cache used by class node reading
+     * @return class node cache
+     */
+    public static ClassNodeCache getClassNodeCache() {
+        return CLASS_NODE_CACHE;
     }
 
     /**
@@ -1,8 +1,11 @@
 package com.alibaba.testable.agent.util;
 
+import com.alibaba.testable.core.model.InvokeRecord;
 import com.alibaba.testable.core.model.LogLevel;
 import com.alibaba.testable.core.model.MockScope;
+import com.alibaba.testable.core.util.ContextPropagationUtil;
 import com.alibaba.testable.core.util.LogUtil;
+import com.alibaba.testable.core.util.MockContextUtil;
 
 import java.io.File;
 import java.net.URL;
@@ -25,18 +28,29 @@ public class GlobalConfig {
     private static final String TESTABLE_AGENT_LOG = "testable-agent.log";
     private static final String DEFAULT_MAVEN_OUTPUT_FOLDER = "target";
     private static final String DEFAULT_GRADLE_OUTPUT_FOLDER = "gradle";
+    private static final String DEFAULT_BYTECODE_CACHE_FOLDER = "testable-cache";
+    private static final String THREAD_POOL_ENHANCE_FULL = "full";
+    private static final String THREAD_POOL_ENHANCE_LAZY = "lazy";
+    private static final String MOCK_CONTEXT_INHERIT = "inherit";
+    private static final String MOCK_CONTEXT_GLOBAL = "global";
 
     private static String logFile = null;
     private static String dumpPath = null;
+    private static String bytecodeCachePath = null;
     private static String[] pkgPrefixWhiteList = null;
     private static String[] pkgPrefixBlackList = null;
     private static Map<String, String> mockPkgMapping = null;
+    private static String defaultRecordMode = InvokeRecord.MODE_ALL;
     public static MockScope defaultMockScope = MockScope.GLOBAL;
     public static boolean enhanceFinal = false;
     public static boolean enhanceMock = true;
     public static boolean enhanceOmniConstructor = false;
     public static boolean enhanceThreadLocal = false;
+    private static boolean lazyThreadPoolEnhance = false;
+    public static boolean enableBytecodeCache = false;
     public static boolean checkMockTargetExistence = false;
+    public static boolean enableMockIndex = false;
+    public static boolean enableClassPathIndex = false;
     public static String innerMockClassName = "Mock";
 
     public static void setLogLevel(String level) {
@@ -64,6 +78,61 @@ public class GlobalConfig {
         }
     }
 
+    public static String getBytecodeCachePath() {
+        if (bytecodeCachePath == null) {
+            return PathUtil.join(getBuildOutputFolder(), DEFAULT_BYTECODE_CACHE_FOLDER);
+        }
+        return bytecodeCachePath;
+    }
+
+    public static void setBytecodeCachePath(String path) {
+        bytecodeCachePath = PathUtil.isAbsolutePath(path) ? path :
+            PathUtil.join(System.getProperty(PROPERTY_USER_DIR), path);
+    }
+
+    public static String getDefaultRecordMode() {
+        return defaultRecordMode;
+    }
+
+    public static void setDefaultRecordMode(String mode) {
+        if (InvokeRecord.isValidMode(mode)) {
+            defaultRecordMode = mode;
+        } else {
+            LogUtil.warn("Invalid mock record mode \"%s\", should be none, count-only, last-N or all", mode);
+        }
+    }
+
+    public static void setThreadPoolEnhanceMode(String mode) {
+        if (THREAD_POOL_ENHANCE_FULL.equals(mode) || THREAD_POOL_ENHANCE_LAZY.equals(mode)) {
+            lazyThreadPoolEnhance = THREAD_POOL_ENHANCE_LAZY.equals(mode);
+        } else {
+            LogUtil.warn("Invalid thread pool enhance mode \"%s\", should be full or lazy", mode);
+        }
+    }
+
+    /**
+     * Whether only propagate mock context via wrapping task submissions, instead of using TtlAgent
+     */
+    public static boolean isLazyThreadPoolEnhance() {
+        return enhanceThreadLocal && lazyThreadPoolEnhance;
+    }
+
+    public static void setMockContextMode(String mode) {
+        if (MOCK_CONTEXT_INHERIT.equals(mode) || MOCK_CONTEXT_GLOBAL.equals(mode)) {
+            MockContextUtil.setGlobalContextMode(MOCK_CONTEXT_GLOBAL.equals(mode));
+        } else {
+            LogUtil.warn("Invalid mock context mode \"%s\", should be inherit or global", mode);
+        }
+    }
+
+    public static void setThreadPoolPkgPrefixWhiteList(String prefixes) {
+        List<String> whiteList = new ArrayList<String>();
+        for (String p : prefixes.split(COMMA)) {
+            whiteList.add(p.endsWith(DOT) ? p : p + DOT);
+        }
+        ContextPropagationUtil.setExecutorPkgPrefixes(whiteList.toArray(new String[0]));
+    }
+
     public static String[] getPkgPrefixWhiteList() {
         return pkgPrefixWhiteList;
     }
@@ -0,0 +1,151 @@
+package com.alibaba.testable.agent.util;
+
+import com.alibaba.testable.agent.model.WeaveRecord;
+import com.alibaba.testable.agent.tool.ConstantPoolScanner;
+import com.alibaba.testable.core.util.MockAssociationUtil;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Support classes transformed ahead of time (e.g. by "testable:instrument" maven goal)
+ * Woven classes carry a class-level marker annotation which is invisible at runtime, agent will skip them
+ * and only replay the side effects recorded in the marker.
+ *
+ * @author flin
+ */
+public class PreWovenUtil {
+
+    /**
+     * Descriptor of the marker annotation, no such class is needed since the annotation is invisible
+     */
+    public static final String MARKER_DESC = "Lcom/alibaba/testable/agent/PreWoven;";
+
+    private static final List<String> MARKER_UTF8 = Collections.singletonList(MARKER_DESC);
+    private static final String FIELD_MOCK_WITH = "mockWith";
+    private static final String ASSOCIATION_SEPARATOR = "=";
+
+    /**
+     * Only true in the offline weaver process, keep the runtime overhead of agent to a volatile read
+     */
+    private static volatile boolean weaving = false;
+
+    private static final ThreadLocal<WeaveRecord> currentRecord = new ThreadLocal<WeaveRecord>();
+
+    public static void setWeaving(boolean isWeaving) {
+        weaving = isWeaving;
+    }
+
+    public static boolean isWeaving() {
+        return weaving;
+    }
+
+    /**
+     * Start collecting information of the class to weave in current thread
+     */
+    public static void beginRecord() {
+        currentRecord.set(new WeaveRecord());
+    }
+
+    /**
+     * Finish collecting information of the class to weave in current thread
+     * @return information collected since beginRecord()
+     */
+    public static WeaveRecord endRecord() {
+        WeaveRecord record = currentRecord.get();
+        currentRecord.remove();
+        return record;
+    }
+
+    /**
+     * Record association of @MockWith annotation, and keep it in the marker when weaving
+     * @param mockClassName dot-separated mock class name
+     * @param testClassName dot-separated test class name
+     */
+    public static void recordMockWith(String mockClassName, String testClassName) {
+        MockAssociationUtil.recordMockWith(mockClassName, testClassName);
+        WeaveRecord record = getRecord();
+        if (record != null) {
+            record.mockWithAssociations.add(mockClassName + ASSOCIATION_SEPARATOR + testClassName);
+        }
+    }
+
+    /**
+     * Record a class read during transformation
+     * @param className slash-separated class name
+     */
+    public static void recordDependency(String className) {
+        WeaveRecord record = getRecord();
+        if (record != null) {
+            record.dependencies.add(className);
+        }
+    }
+
+    /**
+     * Mark current class as not suitable for weaving ahead of time
+     */
+    public static void deferToRuntime() {
+        WeaveRecord record = getRecord();
+        if (record != null) {
+            record.deferred = true;
+        }
+    }
+
+    /**
+     * Check whether a class is already woven
+     * @param scanner constant pool of the class
+     * @return true if marker annotation exists
+     */
+    public static boolean isPreWoven(ConstantPoolScanner scanner) {
+        return scanner.isValid() && scanner.hasAnyUtf8Of(MARKER_UTF8);
+    }
+
+    /**
+     * Add marker annotation to the woven class
+     * @param cn class node to mark
+     * @param record information collected when weaving the class
+     */
+    public static void addMarker(ClassNode cn, WeaveRecord record) {
+        AnnotationNode an = new AnnotationNode(MARKER_DESC);
+        if (!record.mockWithAssociations.isEmpty()) {
+            an.visit(FIELD_MOCK_WITH, new ArrayList<String>(record.mockWithAssociations));
+        }
+        if (cn.invisibleAnnotations == null) {
+            cn.invisibleAnnotations = new ArrayList<AnnotationNode>();
+        }
+        cn.invisibleAnnotations.add(an);
+    }
+
+    /**
+     * Replay side effects recorded in marker annotation of a woven class
+     * @param classFileBuffer bytes of the woven class
+     */
+    public static void replay(byte[] classFileBuffer) {
+        ClassNode cn = new ClassNode();
+        new ClassReader(classFileBuffer).accept(cn,
+            ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        if (cn.invisibleAnnotations == null) {
+            return;
+        }
+        for (AnnotationNode an : cn.invisibleAnnotations) {
+            if (MARKER_DESC.equals(an.desc)) {
+                List<?> associations = AnnotationUtil.getAnnotationParameter(an, FIELD_MOCK_WITH, null, List.class);
+                if (associations != null) {
+                    for (Object association : associations) {
+                        String[] names = ((String)association).split(ASSOCIATION_SEPARATOR);
+                        MockAssociationUtil.recordMockWith(names[0], names[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static WeaveRecord getRecord() {
+        return weaving ? currentRecord.get() : null;
+    }
+
+}
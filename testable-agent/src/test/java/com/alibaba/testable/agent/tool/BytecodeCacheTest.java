@@ -0,0 +1,42 @@
+package com.alibaba.testable.agent.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BytecodeCacheTest {
+
+    private final String folder = System.getProperty("java.io.tmpdir") + File.separator +
+        "testable-cache-" + System.nanoTime();
+
+    @Test
+    void should_share_cache_between_instances() {
+        BytecodeCache cache = BytecodeCache.open(folder, "v1");
+        assertNotNull(cache);
+        byte[] key = cache.getKey(new byte[] {1, 2, 3}, "signature");
+        assertNull(cache.get(key));
+        cache.put(key, new byte[] {4, 5, 6});
+        assertArrayEquals(new byte[] {4, 5, 6}, cache.get(key));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        BytecodeCache anotherCache = BytecodeCache.open(folder, "v1");
+        assertNotNull(anotherCache);
+        assertArrayEquals(new byte[] {4, 5, 6}, anotherCache.get(anotherCache.getKey(new byte[] {1, 2, 3}, "signature")));
+    }
+
+    @Test
+    void should_distinguish_environment_and_signature() {
+        BytecodeCache cache = BytecodeCache.open(folder, "v1");
+        BytecodeCache newVersionCache = BytecodeCache.open(folder, "v2");
+        assertNotNull(cache);
+        assertNotNull(newVersionCache);
+        byte[] classBytes = new byte[] {1, 2, 3};
+        cache.put(cache.getKey(classBytes, "signature"), new byte[] {4});
+        assertNull(cache.get(cache.getKey(classBytes, "other")));
+        assertNull(newVersionCache.get(newVersionCache.getKey(classBytes, "signature")));
+    }
+
+}
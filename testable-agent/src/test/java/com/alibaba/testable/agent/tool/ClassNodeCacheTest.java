@@ -0,0 +1,56 @@
+package com.alibaba.testable.agent.tool;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassNodeCacheTest {
+
+    @Test
+    void should_cache_existing_class() {
+        ClassNodeCache cache = new ClassNodeCache();
+        ClassNode cn = cache.get(null, "java/lang/String");
+        assertNotNull(cn);
+        assertEquals("java/lang/String", cn.name);
+        assertSame(cn, cache.get(null, "java/lang/String"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void should_cache_non_exist_class() {
+        ClassNodeCache cache = new ClassNodeCache();
+        assertNull(cache.get(null, "com/alibaba/testable/NotExistClass"));
+        assertNull(cache.get(null, "com/alibaba/testable/NotExistClass"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void should_separate_class_loaders() {
+        ClassNodeCache cache = new ClassNodeCache();
+        ClassLoader loader = ClassNodeCacheTest.class.getClassLoader();
+        assertNotNull(cache.get(loader, "com/alibaba/testable/agent/tool/ClassNodeCacheTest"));
+        assertNotNull(cache.get(null, "com/alibaba/testable/agent/tool/ClassNodeCacheTest"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void should_only_skip_missing_companion_class_via_index() throws IOException {
+        // package split between class path and JDK
+        File folder = new File(System.getProperty("java.io.tmpdir"), "testable-split-" + System.nanoTime());
+        File classFile = new File(folder, "org/w3c/dom/Extra.class");
+        assertTrue(classFile.getParentFile().mkdirs());
+        assertTrue(classFile.createNewFile());
+        ClassNodeCache cache = new ClassNodeCache();
+        cache.setClassPathIndex(ClassPathIndex.build(folder.getPath()));
+        assertNull(cache.getCompanion(null, "org/w3c/dom/NodeMock"));
+        assertNotNull(cache.get(null, "org/w3c/dom/Node"));
+        assertNotNull(cache.getCompanion(null, "java/lang/String"));
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.alibaba.testable.agent.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassPathIndexTest {
+
+    private final File root = new File(System.getProperty("java.io.tmpdir"), "testable-classpath-" + System.nanoTime());
+
+    @Test
+    void should_index_classes_in_jar_and_folder() throws IOException {
+        File folder = new File(root, "test-classes");
+        writeFile(new File(folder, "com/demo/FooTest.class"), "test");
+        writeFile(new File(folder, "com/demo/Foo.class"), "folder");
+        File jar = new File(root, "lib/demo.jar");
+        writeJar(jar, null, "com/demo/Foo.class", "com/demo/BarMock.class");
+        // manifest-only jar refers to other class path locations with relative urls
+        File booter = new File(root, "booter.jar");
+        writeJar(booter, "test-classes/ lib/demo.jar", "Main.class");
+
+        ClassPathIndex index = ClassPathIndex.build(booter.getPath());
+        assertFalse(index.isMissing("com/demo/FooTest"));
+        assertFalse(index.isMissing("com/demo/BarMock"));
+        assertFalse(index.isMissing("Main"));
+        assertTrue(index.isMissing("com/demo/BarTest"));
+        assertTrue(index.isMissing("com/demo/FooMock"));
+        assertTrue(index.isMissing("Other"));
+        assertFalse(index.isMissing("java/lang/StringMock"));
+
+        assertEquals("test", read(index.open("com/demo/FooTest")));
+        assertEquals("com/demo/BarMock.class", read(index.open("com/demo/BarMock")));
+        // first location on class path wins
+        assertEquals("folder", read(index.open("com/demo/Foo")));
+        assertNull(index.open("com/demo/FooMock"));
+        assertNull(index.open("java/lang/String"));
+    }
+
+    private void writeFile(File file, String content) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeJar(File file, String classPath, String... entries) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null) {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        }
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file), manifest);
+        try {
+            for (String entry : entries) {
+                ZipEntry zipEntry = new JarEntry(entry);
+                out.putNextEntry(zipEntry);
+                out.write(entry.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private String read(InputStream in) throws IOException {
+        assertNotNull(in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+}
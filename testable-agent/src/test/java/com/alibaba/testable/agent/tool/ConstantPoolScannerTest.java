@@ -0,0 +1,53 @@
+package com.alibaba.testable.agent.tool;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantPoolScannerTest {
+
+    @Test
+    void should_find_referred_classes_and_annotations() {
+        ConstantPoolScanner scanner = new ConstantPoolScanner(buildClass());
+        assertTrue(scanner.isValid());
+        assertTrue(scanner.getClassNames().contains("com/demo/Foo"));
+        assertTrue(scanner.getClassNames().contains("com/demo/Bar"));
+        assertTrue(scanner.getClassNames().contains("java/lang/Object"));
+        assertFalse(scanner.getClassNames().contains("java/lang/String"));
+        assertTrue(scanner.hasUtf8StartsWith("Lcom/alibaba/testable/core/annotation/"));
+        assertFalse(scanner.hasUtf8StartsWith("Lorg/junit/"));
+        assertTrue(scanner.hasAnyUtf8Of(Arrays.asList("Lorg/junit/Test;",
+            "Lcom/alibaba/testable/core/annotation/MockInvoke;")));
+        assertFalse(scanner.hasAnyUtf8Of(Collections.singletonList("Lcom/alibaba/testable/core/annotation/Mock")));
+    }
+
+    @Test
+    void should_reject_malformed_class() {
+        assertFalse(new ConstantPoolScanner(new byte[] {1, 2, 3}).isValid());
+        byte[] bytes = buildClass();
+        assertFalse(new ConstantPoolScanner(Arrays.copyOf(bytes, 20)).isValid());
+    }
+
+    private byte[] buildClass() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "com/demo/Foo", null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "run", "()J", null, null);
+        mv.visitAnnotation("Lcom/alibaba/testable/core/annotation/MockInvoke;", true).visitEnd();
+        mv.visitCode();
+        // long constant takes two slots in constant pool
+        mv.visitLdcInsn(123456789012L);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, "com/demo/Bar", "apply", "(J)J", false);
+        mv.visitInsn(Opcodes.LRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.alibaba.testable.agent.tool;
+
+import com.alibaba.testable.agent.model.MethodInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MockMethodIndexTest {
+
+    private final MethodInfo memberMock = new MethodInfo("com/demo/Foo", "run", "(I)Ljava/lang/String;",
+        "com/demo/FooMock", "run", "(Lcom/demo/Foo;I)Ljava/lang/String;", false);
+    private final MethodInfo newMock = new MethodInfo("com/demo/Demo", "<init>", "(Ljava/lang/String;)Lcom/demo/Foo;",
+        "com/demo/FooMock", "createFoo", "(Ljava/lang/String;)Lcom/demo/Foo;", false);
+    private final MockMethodIndex index = new MockMethodIndex(Arrays.asList(memberMock, newMock));
+
+    @Test
+    void should_find_member_method() {
+        assertSame(memberMock, index.getMemberMethod("com/demo/Foo", "run", "(I)Ljava/lang/String;"));
+        assertNull(index.getMemberMethod("com/demo/Foo", "run", "(J)Ljava/lang/String;"));
+        assertNull(index.getMemberMethod("com/demo/Bar", "run", "(I)Ljava/lang/String;"));
+        assertEquals(1, index.getMemberMethods().size());
+    }
+
+    @Test
+    void should_find_kotlin_companion_and_accessor_method() {
+        assertSame(memberMock, index.getMemberMethod("com/demo/Foo$Companion", "run", "(I)Ljava/lang/String;"));
+        assertSame(memberMock, index.getMemberMethod("com/demo/Foo", "access$run",
+            "(Lcom/demo/Foo;I)Ljava/lang/String;"));
+    }
+
+    @Test
+    void should_find_new_operator_method() {
+        assertSame(newMock, index.getNewOperatorMethod("com/demo/Foo", "(Ljava/lang/String;)V"));
+        assertNull(index.getNewOperatorMethod("com/demo/Foo", "()V"));
+        assertNull(index.getNewOperatorMethod("com/demo/Demo", "(Ljava/lang/String;)V"));
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.alibaba.testable.agent.tool;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+class StackLevelMapTest {
+
+    @Test
+    void should_get_member_method_start() {
+        AbstractInsnNode[] instructions = new AbstractInsnNode[]{
+            new LineNumberNode(10, new LabelNode()),
+            new VarInsnNode(ALOAD, 1),
+            new VarInsnNode(ALOAD, 2),
+            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/String", "trim", "()Ljava/lang/String;", false),
+            new InsnNode(ICONST_1),
+            new MethodInsnNode(INVOKESTATIC, "com/demo/Util", "get", "(Ljava/lang/String;I)I", false),
+            new MethodInsnNode(INVOKEVIRTUAL, "com/demo/Foo", "run", "(I)V", false)
+        };
+        StackLevelMap map = new StackLevelMap(instructions);
+        assertEquals(2, map.getMemberMethodStart(3));
+        assertEquals(2, map.getMemberMethodStart(5));
+        assertEquals(1, map.getMemberMethodStart(6));
+        assertEquals(0, map.getLineNum(0));
+        assertEquals(10, map.getLineNum(6));
+    }
+
+    @Test
+    void should_get_member_method_start_of_chained_invocations() {
+        AbstractInsnNode[] instructions = new AbstractInsnNode[]{
+            new VarInsnNode(ALOAD, 2),
+            new VarInsnNode(ALOAD, 0),
+            new VarInsnNode(ALOAD, 2),
+            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/String", "trim", "()Ljava/lang/String;", false),
+            new InsnNode(ICONST_1),
+            new InsnNode(ICONST_2),
+            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/String", "substring", "(II)Ljava/lang/String;", false),
+            new MethodInsnNode(INVOKESPECIAL, "com/alibaba/testable/demo/DemoTest", "blackBox", "(Ljava/lang/String;)Lcom/alibaba/testable/demo/BlackBox;", false),
+            new MethodInsnNode(INVOKEVIRTUAL, "com/alibaba/testable/demo/BlackBox", "callMe", "()Ljava/lang/String;", false),
+            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/String", "startsWith", "(Ljava/lang/String;)Z", false)
+        };
+        StackLevelMap map = new StackLevelMap(instructions);
+        assertEquals(2, map.getMemberMethodStart(3));
+        assertEquals(2, map.getMemberMethodStart(6));
+        assertEquals(0, map.getMemberMethodStart(9));
+    }
+
+    @Test
+    void should_skip_branch_via_jump_instruction() {
+        LabelNode elseLabel = new LabelNode();
+        LabelNode endLabel = new LabelNode();
+        AbstractInsnNode[] instructions = new AbstractInsnNode[]{
+            new VarInsnNode(ALOAD, 0),
+            new VarInsnNode(ILOAD, 1),
+            new JumpInsnNode(IFEQ, elseLabel),
+            new InsnNode(ICONST_1),
+            new JumpInsnNode(GOTO, endLabel),
+            elseLabel,
+            new FrameNode(F_SAME1, 0, null, 1, new Object[] {"com/demo/Foo"}),
+            new InsnNode(ICONST_2),
+            endLabel,
+            new FrameNode(F_FULL, 0, null, 2, new Object[] {"com/demo/Foo", INTEGER}),
+            new MethodInsnNode(INVOKEVIRTUAL, "com/demo/Foo", "run", "(I)V", false)
+        };
+        assertEquals(0, new StackLevelMap(instructions).getMemberMethodStart(10));
+    }
+
+    @Test
+    void should_match_nested_constructor() {
+        AbstractInsnNode[] instructions = new AbstractInsnNode[]{
+            new TypeInsnNode(NEW, "com/demo/Foo"),
+            new InsnNode(DUP),
+            new TypeInsnNode(NEW, "com/demo/Foo"),
+            new InsnNode(DUP),
+            new MethodInsnNode(INVOKESPECIAL, "com/demo/Foo", "<init>", "()V", false),
+            new MethodInsnNode(INVOKESPECIAL, "com/demo/Foo", "<init>", "(Lcom/demo/Foo;)V", false),
+            new MethodInsnNode(INVOKESPECIAL, "com/demo/Bar", "<init>", "()V", false)
+        };
+        StackLevelMap map = new StackLevelMap(instructions);
+        assertEquals(2, map.getConstructorStart(4));
+        assertEquals(0, map.getConstructorStart(5));
+        assertEquals(-1, map.getConstructorStart(6));
+    }
+
+}
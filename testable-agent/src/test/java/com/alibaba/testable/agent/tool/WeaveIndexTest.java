@@ -0,0 +1,43 @@
+package com.alibaba.testable.agent.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeaveIndexTest {
+
+    private final File file = new File(System.getProperty("java.io.tmpdir"),
+        "testable-weave-" + System.nanoTime() + ".idx");
+
+    @Test
+    void should_load_saved_index() throws IOException {
+        WeaveIndex index = WeaveIndex.load(file, "v1");
+        assertFalse(index.isEnvironmentMatched());
+        assertTrue(index.getClassNames().isEmpty());
+        index.put("com/demo/Foo", new WeaveIndex.Entry(1, 100L, 200L,
+            new HashSet<String>(Arrays.asList("com/demo/FooMock", "com/demo/FooTest"))));
+        index.put("com/demo/Bar", new WeaveIndex.Entry(0, 300L, 400L, new HashSet<String>()));
+        index.save(file);
+
+        WeaveIndex loaded = WeaveIndex.load(file, "v1");
+        assertTrue(loaded.isEnvironmentMatched());
+        assertEquals(new HashSet<String>(Arrays.asList("com/demo/Foo", "com/demo/Bar")), loaded.getClassNames());
+        WeaveIndex.Entry entry = loaded.get("com/demo/Foo");
+        assertEquals(1, entry.outputRoot);
+        assertEquals(100L, entry.modifiedTime);
+        assertEquals(200L, entry.checksum);
+        assertEquals(new HashSet<String>(Arrays.asList("com/demo/FooMock", "com/demo/FooTest")), entry.dependencies);
+        assertTrue(loaded.get("com/demo/Bar").dependencies.isEmpty());
+
+        WeaveIndex otherEnvironment = WeaveIndex.load(file, "v2");
+        assertFalse(otherEnvironment.isEnvironmentMatched());
+        assertEquals(2, otherEnvironment.getClassNames().size());
+        assertTrue(file.delete());
+    }
+
+}
@@ -20,4 +20,10 @@ public @interface MockNew {
      */
     MockScope scope() default MockScope.GLOBAL;
 
+    /**
+     * specify how invocations of the mock method are recorded, use global default when not set
+     * @return "none", "count-only", "last-N" (N is a positive number) or "all"
+     */
+    String recordMode() default "";
+
 }
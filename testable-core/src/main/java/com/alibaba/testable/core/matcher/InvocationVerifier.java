@@ -1,8 +1,9 @@
 package com.alibaba.testable.core.matcher;
 
 import com.alibaba.testable.core.error.VerifyFailedError;
+import com.alibaba.testable.core.model.InvokeRecord;
 import com.alibaba.testable.core.model.Verification;
-import com.alibaba.testable.core.util.MockContextUtil;
+import com.alibaba.testable.core.util.InvokeRecordUtil;
 import com.alibaba.testable.core.util.TestableUtil;
 
 import java.security.InvalidParameterException;
@@ -13,10 +14,12 @@ import java.util.List;
  */
 public class InvocationVerifier {
 
-    private final List<Object[]> records;
+    private final String mockMethodName;
+    private final InvokeRecord records;
     private Verification lastVerification = null;
 
-    private InvocationVerifier(List<Object[]> records) {
+    private InvocationVerifier(String mockMethodName, InvokeRecord records) {
+        this.mockMethodName = mockMethodName;
         this.records = records;
     }
 
@@ -26,7 +29,7 @@ public class InvocationVerifier {
      * @return the verifier object
      */
     public static InvocationVerifier verifyInvoked(String mockMethodName) {
-        return new InvocationVerifier(MockContextUtil.context.get().invokeRecord.get(mockMethodName));
+        return new InvocationVerifier(mockMethodName, InvokeRecordUtil.getInvokeRecord(mockMethodName));
     }
 
     /**
@@ -35,19 +38,12 @@ public class InvocationVerifier {
      * @return the verifier object
      */
     public InvocationVerifier with(Object... args) {
-        boolean found = false;
-        for (int i = 0; i < records.size(); i++) {
-            try {
-                withInternal(args, i);
-                found = true;
-                break;
-            } catch (AssertionError e) {
-                // continue
-            }
-        }
-        if (!found) {
-            throw new VerifyFailedError("has not invoke with " + desc(args));
+        checkArgumentRetained();
+        int index = findMatchedRecord(args, true);
+        if (index < 0) {
+            throw new VerifyFailedError("has not invoke with " + desc(args) + droppedDesc());
         }
+        records.consume(index);
         lastVerification = new Verification(args, false);
         return this;
     }
@@ -58,7 +54,19 @@ public class InvocationVerifier {
      * @return the verifier object
      */
     public InvocationVerifier withInOrder(Object... args) {
-        withInternal(args, 0);
+        checkArgumentRetained();
+        if (records.getDroppedCount() > 0) {
+            throw new VerifyFailedError("could not verify invocation in order" + droppedDesc());
+        }
+        int index = records.nextIndex(0);
+        if (index < 0) {
+            throw new VerifyFailedError("has not more invoke");
+        }
+        Object[] record = records.get(index);
+        if (!isMatched(args, record, true)) {
+            throw mismatchError(args, record);
+        }
+        records.consume(index);
         lastVerification = new Verification(args, true);
         return this;
     }
@@ -69,18 +77,13 @@ public class InvocationVerifier {
      * @return the verifier object
      */
     public InvocationVerifier without(Object... args) {
-        for (Object[] r : records) {
-            if (r.length == args.length) {
-                for (int i = 0; i < r.length; i++) {
-                    if (!matches(args[i], r[i])) {
-                        break;
-                    }
-                    if (i == r.length - 1) {
-                        // all arguments are equal
-                        throw new VerifyFailedError("was invoked with " + desc(args));
-                    }
-                }
-            }
+        checkArgumentRetained();
+        if (findMatchedRecord(args, false) >= 0) {
+            throw new VerifyFailedError("was invoked with " + desc(args));
+        }
+        if (records.getDroppedCount() > 0) {
+            throw new VerifyFailedError("could not confirm mock method never invoked with " + desc(args) +
+                droppedDesc());
         }
         return this;
     }
@@ -91,6 +94,10 @@ public class InvocationVerifier {
      * @return the verifier object
      */
     public InvocationVerifier withTimes(int expectedCount) {
+        if (!records.isCounting()) {
+            throw new VerifyFailedError("invocations of mock method \"" + mockMethodName +
+                "\" were not recorded, as its record mode is \"" + records.getMode() + "\"");
+        }
         if (expectedCount != records.size()) {
             throw new VerifyFailedError("times: " + expectedCount, "times: " + records.size());
         }
@@ -124,30 +131,93 @@ public class InvocationVerifier {
         return this;
     }
 
-    private void withInternal(Object[] args, int order) {
-        if (records.isEmpty()) {
-            throw new VerifyFailedError("has not more invoke");
+    /**
+     * Find the earliest not yet verified invocation matching specified parameters
+     * @param args parameters to compare
+     * @param strictType whether type of parameters should be exactly the same
+     * @return index of the invocation record, -1 for not found
+     */
+    private int findMatchedRecord(Object[] args, boolean strictType) {
+        // parameters of other than hashable types (including null and matchers) are compared one by one
+        List<Integer> indexes = records.getIndexesWithEqualArguments(args);
+        if (indexes != null) {
+            for (int index : indexes) {
+                if (records.nextIndex(index) == index && isMatched(args, records.get(index), strictType)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+        for (int index = records.nextIndex(0); index >= 0; index = records.nextIndex(index + 1)) {
+            if (isMatched(args, records.get(index), strictType)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isMatched(Object[] args, Object[] record, boolean strictType) {
+        if (record.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (strictType && !isTypeMatched(args[i], record[i])) {
+                return false;
+            }
+            if (!matches(args[i], record[i])) {
+                return false;
+            }
         }
-        Object[] record = records.get(order);
+        return true;
+    }
+
+    /**
+     * Build failure message only after mismatch confirmed
+     */
+    private VerifyFailedError mismatchError(Object[] args, Object[] record) {
         if (record.length != args.length) {
-            throw new VerifyFailedError(desc(args), desc(record));
+            return new VerifyFailedError(desc(args), desc(record));
         }
         for (int i = 0; i < args.length; i++) {
-            if (!(args[i] instanceof InvocationMatcher || args[i].getClass().equals(record[i].getClass()))) {
-                throw new VerifyFailedError("parameter " + (i + 1) + " type mismatch",
-                    ": " + args[i].getClass(), ": " + record[i].getClass());
+            if (!isTypeMatched(args[i], record[i])) {
+                return new VerifyFailedError("parameter " + (i + 1) + " type mismatch",
+                    ": " + typeOf(args[i]), ": " + typeOf(record[i]));
             }
             if (!matches(args[i], record[i])) {
-                throw new VerifyFailedError("parameter " + (i + 1) + " mismatched", desc(args), desc(record));
+                return new VerifyFailedError("parameter " + (i + 1) + " mismatched", desc(args), desc(record));
             }
         }
-        records.remove(order);
+        return new VerifyFailedError(desc(args), desc(record));
+    }
+
+    private boolean isTypeMatched(Object expectValue, Object realValue) {
+        return expectValue instanceof InvocationMatcher || typeOf(expectValue) == typeOf(realValue);
+    }
+
+    private Class<?> typeOf(Object value) {
+        return value == null ? null : value.getClass();
+    }
+
+    private void checkArgumentRetained() {
+        if (!records.isArgumentRetained()) {
+            throw new VerifyFailedError("arguments of mock method \"" + mockMethodName +
+                "\" were not retained, as its record mode is \"" + records.getMode() + "\"");
+        }
+    }
+
+    private String droppedDesc() {
+        if (records.getDroppedCount() == 0) {
+            return "";
+        }
+        return "\n(arguments of the earliest " + records.getDroppedCount() + " invocations were not retained, " +
+            "as record mode of mock method \"" + mockMethodName + "\" is \"" + records.getMode() + "\")";
     }
 
     private boolean matches(Object expectValue, Object realValue) {
-        return expectValue instanceof InvocationMatcher ?
-                ((InvocationMatcher) expectValue).matchFunction.check(realValue) :
-                expectValue.equals(realValue);
+        if (expectValue instanceof InvocationMatcher) {
+            return ((InvocationMatcher) expectValue).matchFunction.check(realValue);
+        }
+        return expectValue == null ? realValue == null : expectValue.equals(realValue);
     }
 
     private String desc(Object[] args) {
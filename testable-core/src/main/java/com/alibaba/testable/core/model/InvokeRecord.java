@@ -0,0 +1,421 @@
+package com.alibaba.testable.core.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Invocation records of a mock method, arguments are retained according to the record mode:
+ * "none" (record nothing), "count-only" (only count invocations),
+ * "last-N" (keep arguments of the last N invocations) or "all" (keep arguments of all invocations)
+ *
+ * @author flin
+ */
+public class InvokeRecord {
+
+    public static final String MODE_NONE = "none";
+    public static final String MODE_COUNT_ONLY = "count-only";
+    public static final String MODE_LAST_PREFIX = "last-";
+    public static final String MODE_ALL = "all";
+
+    private static final int UNLIMITED = -1;
+    private static final int MIN_INDEXED_SIZE = 32;
+
+    /**
+     * Types which are immutable and whose hashCode() is consistent with equals()
+     */
+    private static final Set<Class<?>> HASHABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+        Float.class, Double.class, Class.class));
+
+    /**
+     * Record mode in text form
+     */
+    private final String mode;
+
+    /**
+     * Whether invocations are counted
+     */
+    private final boolean counting;
+
+    /**
+     * Max number of invocations whose arguments are retained, -1 for unlimited
+     */
+    private final int capacity;
+
+    /**
+     * Number of recorded invocations, excluding those consumed by verifier
+     */
+    private final AtomicInteger invokedCount = new AtomicInteger();
+
+    /**
+     * Arguments appended by invoking threads without locking, oldest first
+     * Each element is either an argument array, or primitive arguments which are boxed when moved to retained list
+     */
+    private final Queue<Object> appended = new ConcurrentLinkedQueue<Object>();
+    private final AtomicInteger appendedCount = new AtomicInteger();
+
+    /**
+     * Arguments moved from appended queue when verifying, only accessed with lock of this object
+     */
+    private final List<Object[]> retained = new ArrayList<Object[]>();
+
+    /**
+     * Retained invocations which are already consumed by verifier
+     */
+    private BitSet consumed = new BitSet();
+    private int consumedCount = 0;
+
+    /**
+     * All retained invocations before cursor are consumed
+     */
+    private int cursor = 0;
+
+    /**
+     * Hash index of retained invocations by argument values, built at the first lookup
+     * Only invocations with all arguments of hashable types are indexed, since an argument of other types
+     * could never equal to a hashable value
+     * Arguments → Index of invocations with such arguments
+     */
+    private Map<List<Object>, List<Integer>> argumentIndex = null;
+    private int indexedSize = 0;
+
+    private InvokeRecord(String mode, boolean counting, int capacity) {
+        this.mode = mode;
+        this.counting = counting;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create record container of specified mode
+     * @param mode record mode, invalid value is treated as "all"
+     * @return the record container
+     */
+    public static InvokeRecord of(String mode) {
+        if (MODE_NONE.equals(mode)) {
+            return new InvokeRecord(mode, false, 0);
+        } else if (MODE_COUNT_ONLY.equals(mode)) {
+            return new InvokeRecord(mode, true, 0);
+        } else if (getLastCount(mode) > 0) {
+            return new InvokeRecord(mode, true, getLastCount(mode));
+        }
+        return new InvokeRecord(MODE_ALL, true, UNLIMITED);
+    }
+
+    /**
+     * Check whether specified text is a valid record mode
+     * @param mode text to check
+     * @return true if valid
+     */
+    public static boolean isValidMode(String mode) {
+        return MODE_NONE.equals(mode) || MODE_COUNT_ONLY.equals(mode) || MODE_ALL.equals(mode) ||
+            getLastCount(mode) > 0;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Whether invocations are counted
+     */
+    public boolean isCounting() {
+        return counting;
+    }
+
+    /**
+     * Whether arguments of invocations are retained
+     */
+    public boolean isArgumentRetained() {
+        return capacity != 0;
+    }
+
+    /**
+     * Record an invocation, could be invoked from multiple threads concurrently without locking
+     * @param args invocation arguments, ignored when argument is not retained
+     */
+    public void add(Object[] args) {
+        if (count()) {
+            append(args);
+        }
+    }
+
+    /**
+     * Record an invocation with single int argument, without boxing
+     * @param arg invocation argument, ignored when argument is not retained
+     */
+    public void add(int arg) {
+        if (count()) {
+            append(new IntArgument(arg));
+        }
+    }
+
+    /**
+     * Record an invocation with single long argument, without boxing
+     * @param arg invocation argument, ignored when argument is not retained
+     */
+    public void add(long arg) {
+        if (count()) {
+            append(new LongArgument(arg));
+        }
+    }
+
+    /**
+     * Record an invocation with two int arguments, without boxing
+     * @param arg1 first invocation argument, ignored when argument is not retained
+     * @param arg2 second invocation argument, ignored when argument is not retained
+     */
+    public void add(int arg1, int arg2) {
+        if (count()) {
+            append(new IntPairArgument(arg1, arg2));
+        }
+    }
+
+    /**
+     * Record an invocation with two long arguments, without boxing
+     * @param arg1 first invocation argument, ignored when argument is not retained
+     * @param arg2 second invocation argument, ignored when argument is not retained
+     */
+    public void add(long arg1, long arg2) {
+        if (count()) {
+            append(new LongPairArgument(arg1, arg2));
+        }
+    }
+
+    /**
+     * Count an invocation
+     * @return whether arguments of the invocation should be retained
+     */
+    private boolean count() {
+        if (!counting) {
+            return false;
+        }
+        invokedCount.incrementAndGet();
+        return capacity != 0;
+    }
+
+    private void append(Object args) {
+        appended.offer(args);
+        int count = appendedCount.incrementAndGet();
+        // for last-N mode, allow queue grows to 2N before trimming, to avoid polling on every invocation
+        if (capacity != UNLIMITED && count - capacity > capacity) {
+            while (appendedCount.get() > capacity && appended.poll() != null) {
+                appendedCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of recorded invocations
+     */
+    public int size() {
+        return invokedCount.get();
+    }
+
+    /**
+     * @return number of invocations whose arguments are retained and not yet consumed
+     */
+    public synchronized int getRetainedCount() {
+        drain();
+        return retained.size() - consumedCount;
+    }
+
+    /**
+     * @return number of invocations whose arguments are dropped
+     */
+    public synchronized int getDroppedCount() {
+        drain();
+        return invokedCount.get() - (retained.size() - consumedCount);
+    }
+
+    /**
+     * Find the next retained invocation which is not yet consumed
+     * @param fromIndex index to start with (inclusive)
+     * @return index of the invocation, -1 for no more
+     */
+    public synchronized int nextIndex(int fromIndex) {
+        drain();
+        int index = consumed.nextClearBit(Math.max(fromIndex, cursor));
+        return index < retained.size() ? index : -1;
+    }
+
+    /**
+     * Get arguments of retained invocation
+     * @param index index of the invocation, from nextIndex() or getIndexesWithEqualArguments()
+     * @return invocation arguments
+     */
+    public synchronized Object[] get(int index) {
+        return retained.get(index);
+    }
+
+    /**
+     * Mark a retained invocation as consumed, which is already verified
+     * @param index index of the invocation, from nextIndex() or getIndexesWithEqualArguments()
+     */
+    public synchronized void consume(int index) {
+        if (consumed.get(index)) {
+            return;
+        }
+        consumed.set(index);
+        consumedCount++;
+        invokedCount.decrementAndGet();
+        if (index == cursor) {
+            cursor = consumed.nextClearBit(cursor);
+        }
+    }
+
+    /**
+     * Look up not yet consumed invocations whose arguments equal to specified values, via a hash index
+     * @param args argument values
+     * @return index of invocations with equal arguments in ascending order (may contain consumed ones),
+     *         null if there are too few invocations or arguments are not of hashable types
+     */
+    public synchronized List<Integer> getIndexesWithEqualArguments(Object[] args) {
+        drain();
+        if (retained.size() < MIN_INDEXED_SIZE || !isHashable(args)) {
+            return null;
+        }
+        updateArgumentIndex();
+        List<Integer> indexes = argumentIndex.get(Arrays.asList(args));
+        if (indexes == null) {
+            return Collections.emptyList();
+        }
+        // remove consumed ones at the head, which are usually consumed by previous verification
+        int consumedHead = 0;
+        while (consumedHead < indexes.size() && consumed.get(indexes.get(consumedHead))) {
+            consumedHead++;
+        }
+        indexes.subList(0, consumedHead).clear();
+        return indexes;
+    }
+
+    /**
+     * Add newly retained invocations to argument index
+     */
+    private void updateArgumentIndex() {
+        if (argumentIndex == null) {
+            argumentIndex = new HashMap<List<Object>, List<Integer>>();
+            indexedSize = 0;
+        }
+        for (; indexedSize < retained.size(); indexedSize++) {
+            Object[] args = retained.get(indexedSize);
+            if (consumed.get(indexedSize) || !isHashable(args)) {
+                continue;
+            }
+            List<Object> key = Arrays.asList(args);
+            List<Integer> indexes = argumentIndex.get(key);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                argumentIndex.put(key, indexes);
+            }
+            indexes.add(indexedSize);
+        }
+    }
+
+    /**
+     * Arguments of other types may not override hashCode() together with equals(), or be mutated after recorded
+     */
+    private static boolean isHashable(Object[] args) {
+        for (Object arg : args) {
+            if (arg == null || !(arg instanceof Enum || HASHABLE_TYPES.contains(arg.getClass()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move appended arguments to retained list, and drop the oldest ones exceeding capacity
+     */
+    private void drain() {
+        Object args;
+        while ((args = appended.poll()) != null) {
+            appendedCount.decrementAndGet();
+            retained.add(args instanceof PrimitiveArgument ? ((PrimitiveArgument)args).toArray() : (Object[])args);
+        }
+        if (capacity != UNLIMITED && retained.size() > capacity) {
+            int dropped = retained.size() - capacity;
+            consumedCount -= consumed.get(0, dropped).cardinality();
+            consumed = consumed.get(dropped, Math.max(dropped, consumed.length()));
+            cursor = consumed.nextClearBit(0);
+            retained.subList(0, dropped).clear();
+            // index of invocations changed, rebuild argument index when needed
+            argumentIndex = null;
+        }
+    }
+
+    /**
+     * Arguments of primitive types, boxed only when verifying
+     */
+    private interface PrimitiveArgument {
+        Object[] toArray();
+    }
+
+    private static class IntArgument implements PrimitiveArgument {
+        private final int value;
+
+        IntArgument(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return new Object[] {value};
+        }
+    }
+
+    private static class LongArgument implements PrimitiveArgument {
+        private final long value;
+
+        LongArgument(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return new Object[] {value};
+        }
+    }
+
+    private static class IntPairArgument implements PrimitiveArgument {
+        private final int first;
+        private final int second;
+
+        IntPairArgument(int first, int second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return new Object[] {first, second};
+        }
+    }
+
+    private static class LongPairArgument implements PrimitiveArgument {
+        private final long first;
+        private final long second;
+
+        LongPairArgument(long first, long second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return new Object[] {first, second};
+        }
+    }
+
+    private static int getLastCount(String mode) {
+        if (mode == null || !mode.startsWith(MODE_LAST_PREFIX)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(mode.substring(MODE_LAST_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
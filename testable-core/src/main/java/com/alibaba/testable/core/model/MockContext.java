@@ -1,20 +1,22 @@
 package com.alibaba.testable.core.model;
 
-import com.alibaba.testable.core.util.UnnullableMap;
-
-import java.util.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class MockContext {
 
     /**
      * current test class (dot separated) name
      */
-    public final String testClassName;
+    public volatile String testClassName;
 
     /**
      * current test case name
      */
-    public final String testCaseName;
+    public volatile String testCaseName;
 
     /**
      * store of MOCK_CONTEXT.get() and MOCK_CONTEXT.set()
@@ -24,12 +26,45 @@ public class MockContext {
     /**
      * invocation record of mock method and arguments
      */
-    public final Map<String, List<Object[]>> invokeRecord;
+    public final ConcurrentMap<String, InvokeRecord> invokeRecord;
+
+    /**
+     * cached association state of mock classes (indexed by mock class id) with current test class
+     */
+    public volatile byte[] mockAssociations = new byte[0];
+
+    /**
+     * version of association relationship when the cache was built
+     */
+    public volatile int mockAssociationVersion = -1;
+
+    /**
+     * whether the context was passed to any other thread, which may still use it after current test case finished
+     */
+    public volatile boolean captured = false;
 
     public MockContext(String testClassName, String testCaseName) {
         this.testClassName = testClassName;
         this.testCaseName = testCaseName;
-        this.parameters = new HashMap<String, Object>();
-        this.invokeRecord = UnnullableMap.of(new ArrayList<Object[]>());
+        this.parameters = Collections.synchronizedMap(new HashMap<String, Object>());
+        this.invokeRecord = new ConcurrentHashMap<String, InvokeRecord>();
+    }
+
+    /**
+     * Clear the context to reuse it for another test case
+     * note that context already captured by other threads should not be reused
+     * @param testClassName new test class (dot separated) name
+     * @param testCaseName new test case name
+     */
+    public void reset(String testClassName, String testCaseName) {
+        if (!testClassName.equals(this.testClassName)) {
+            // association cache is only valid for the same test class
+            this.mockAssociations = new byte[0];
+            this.mockAssociationVersion = -1;
+        }
+        this.parameters.clear();
+        this.invokeRecord.clear();
+        this.testClassName = testClassName;
+        this.testCaseName = testCaseName;
     }
 }
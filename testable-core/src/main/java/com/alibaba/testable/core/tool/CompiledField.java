@@ -0,0 +1,86 @@
+package com.alibaba.testable.core.tool;
+
+import com.alibaba.testable.core.exception.MemberAccessException;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reusable handle of a resolved private field, created by PrivateAccessor.compileField()
+ * It goes through method handle instead of reflection when running on Java 8 or later
+ *
+ * @author flin
+ */
+public class CompiledField<T> {
+
+    private static final String METHOD_HANDLE_FIELD_ACCESSOR =
+        "com.alibaba.testable.core.tool.MethodHandleFieldAccessor";
+
+    private final Field field;
+
+    /**
+     * Null if method handle is not available
+     */
+    private final Accessor accessor;
+
+    CompiledField(Field field) {
+        field.setAccessible(true);
+        this.field = field;
+        this.accessor = createAccessor(field);
+    }
+
+    /**
+     * 读取目标字段
+     * @param ref 目标对象（静态字段可为null）
+     */
+    public T get(Object ref) {
+        try {
+            return (T)(accessor == null ? field.get(ref) : accessor.get(ref));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new MemberAccessException("Failed to access private field \"" + field.getName() + "\"", e);
+        }
+    }
+
+    /**
+     * 修改目标字段
+     * @param ref   目标对象（静态字段可为null）
+     * @param value 目标值
+     */
+    public void set(Object ref, T value) {
+        try {
+            if (accessor == null) {
+                field.set(ref, value);
+            } else {
+                accessor.set(ref, value);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new MemberAccessException("Failed to access private field \"" + field.getName() + "\"", e);
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    private static Accessor createAccessor(Field field) {
+        try {
+            return (Accessor)Class.forName(METHOD_HANDLE_FIELD_ACCESSOR).getDeclaredConstructor(Field.class)
+                .newInstance(field);
+        } catch (Throwable e) {
+            // running on Java 7 or earlier, or method handle could not be created, use reflection instead
+            return null;
+        }
+    }
+
+    /**
+     * Read and write field, implemented via method handle which needs Java 8
+     */
+    interface Accessor {
+        Object get(Object ref) throws Throwable;
+        void set(Object ref, Object value) throws Throwable;
+    }
+
+}
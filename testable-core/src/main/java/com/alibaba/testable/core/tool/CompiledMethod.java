@@ -0,0 +1,90 @@
+package com.alibaba.testable.core.tool;
+
+import com.alibaba.testable.core.exception.MemberAccessException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reusable handle of a resolved private method, created by PrivateAccessor.compile()
+ * Invoking it skips member lookup and argument type inference, and goes through method handle instead of
+ * reflection when running on Java 8 or later
+ *
+ * @author flin
+ */
+public class CompiledMethod<T> {
+
+    private static final String METHOD_HANDLE_INVOKER = "com.alibaba.testable.core.tool.MethodHandleInvoker";
+
+    private final Method method;
+
+    /**
+     * Null if method handle is not available
+     */
+    private final Invoker invoker;
+
+    CompiledMethod(Method method) {
+        method.setAccessible(true);
+        this.method = method;
+        this.invoker = createInvoker(method);
+    }
+
+    /**
+     * 调用目标方法
+     * @param ref  目标对象（静态方法可为null）
+     * @param args 方法参数
+     */
+    public T invoke(Object ref, Object... args) {
+        if (invoker != null) {
+            try {
+                return (T)invoker.invoke(ref, args);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new MemberAccessException("Invoke private method \"" + method.getName() +
+                    "\" failed with exception", e);
+            }
+        }
+        try {
+            return (T)method.invoke(ref, args);
+        } catch (IllegalAccessException e) {
+            throw new MemberAccessException("Failed to access private method \"" + method.getName() + "\"", e);
+        } catch (InvocationTargetException e) {
+            if (e.getTargetException() instanceof RuntimeException) {
+                throw (RuntimeException)e.getTargetException();
+            }
+            throw new MemberAccessException("Invoke private method \"" + method.getName() +
+                "\" failed with exception", e);
+        }
+    }
+
+    /**
+     * 调用目标静态方法
+     * @param args 方法参数
+     */
+    public T invokeStatic(Object... args) {
+        return invoke(null, args);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    private static Invoker createInvoker(Method method) {
+        try {
+            return (Invoker)Class.forName(METHOD_HANDLE_INVOKER).getDeclaredConstructor(Method.class)
+                .newInstance(method);
+        } catch (Throwable e) {
+            // running on Java 7 or earlier, or method handle could not be created, use reflection instead
+            return null;
+        }
+    }
+
+    /**
+     * Invoke method with all parameters in an array, implemented via method handle which needs Java 8
+     */
+    interface Invoker {
+        Object invoke(Object ref, Object[] args) throws Throwable;
+    }
+
+}
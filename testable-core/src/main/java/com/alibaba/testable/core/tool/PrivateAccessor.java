@@ -4,6 +4,9 @@ import com.alibaba.testable.core.exception.MemberAccessException;
 import com.alibaba.testable.core.util.TypeUtil;
 
 import java.lang.reflect.*;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author flin
@@ -11,6 +14,18 @@ import java.lang.reflect.*;
 public class PrivateAccessor {
 
     private static final String KOTLIN_COMPANION_FIELD = "Companion";
+    private static final String KIND_FIELD = "field";
+    private static final String KIND_CONSTRUCTOR = "constructor";
+    private static final String KIND_METHOD = "method";
+    private static final String KIND_STATIC_METHOD = "static-method";
+    private static final Object NOT_FOUND = new Object();
+    private static final Object NOT_EXIST = new Object();
+
+    /**
+     * Resolved members, already set accessible
+     * MemberKey → Field / Constructor / ResolvedMethod (or NOT_FOUND / NOT_EXIST)
+     */
+    private static final ConcurrentMap<MemberKey, Object> resolvedMembers = new ConcurrentHashMap<MemberKey, Object>();
 
     private PrivateAccessor() {}
 
@@ -79,11 +94,20 @@ public class PrivateAccessor {
      */
     public static <T> T construct(Class<?> clazz, Object... args) {
         try {
-            Constructor<?> constructor = TypeUtil.getConstructorByParameterTypes(clazz,
-                TypeUtil.getClassesFromObjects(args));
-            if (constructor != null) {
-                constructor.setAccessible(true);
-                return (T)constructor.newInstance(args);
+            Class<?>[] cls = TypeUtil.getClassesFromObjects(args);
+            MemberKey key = new MemberKey(KIND_CONSTRUCTOR, clazz, "", cls);
+            Object constructor = resolvedMembers.get(key);
+            if (constructor == null) {
+                constructor = TypeUtil.getConstructorByParameterTypes(clazz, cls);
+                if (constructor == null) {
+                    constructor = NOT_FOUND;
+                } else {
+                    ((Constructor<?>)constructor).setAccessible(true);
+                }
+                resolvedMembers.put(key, constructor);
+            }
+            if (constructor != NOT_FOUND) {
+                return (T)((Constructor<?>)constructor).newInstance(args);
             }
         } catch (IllegalAccessException e) {
             throw new MemberAccessException("Failed to access private constructor of \"" +
@@ -100,6 +124,29 @@ public class PrivateAccessor {
         throw new MemberAccessException("Private constructor of \"" + clazz.getSimpleName() + "\" not exist");
     }
 
+    /**
+     * 预先解析任意类的私有方法，用于反复调用的场景
+     * @param clazz          目标类型
+     * @param method         目标方法名
+     * @param parameterTypes 方法参数类型
+     */
+    public static <T> CompiledMethod<T> compile(Class<?> clazz, String method, Class<?>... parameterTypes) {
+        Method declaredMethod = TypeUtil.getMethodByNameAndExactParameterTypes(clazz, method, parameterTypes);
+        if (declaredMethod == null) {
+            throw new MemberAccessException("Private method \"" + method + "\" not exist");
+        }
+        return new CompiledMethod<T>(declaredMethod);
+    }
+
+    /**
+     * 预先解析任意类的私有字段，用于反复读写的场景
+     * @param clazz     目标类型
+     * @param fieldName 目标字段名
+     */
+    public static <T> CompiledField<T> compileField(Class<?> clazz, String fieldName) {
+        return new CompiledField<T>(getField(clazz, fieldName));
+    }
+
     /**
      * 获取所有类型的公共父类
      */
@@ -136,12 +183,7 @@ public class PrivateAccessor {
 
     private static <T> T get(Object ref, Class<?> clazz, String fieldName) {
         try {
-            Field field = TypeUtil.getFieldByName(clazz, fieldName);
-            if (field == null) {
-                throw new MemberAccessException("Private field \"" + fieldName + "\" not exist");
-            }
-            field.setAccessible(true);
-            return (T)field.get(ref);
+            return (T)getField(clazz, fieldName).get(ref);
         } catch (IllegalAccessException e) {
             throw new MemberAccessException("Failed to access private field \"" + fieldName + "\"", e);
         }
@@ -149,53 +191,151 @@ public class PrivateAccessor {
 
     private static <T> void set(Object ref, Class<?> clazz, String fieldName, T value) {
         try {
-            Field field = TypeUtil.getFieldByName(clazz, fieldName);
-            if (field == null) {
-                throw new MemberAccessException("Private field \"" + fieldName + "\" not exist");
-            }
-            field.setAccessible(true);
-            field.set(ref, value);
+            getField(clazz, fieldName).set(ref, value);
         } catch (IllegalAccessException e) {
             throw new MemberAccessException("Failed to access private field \"" + fieldName + "\"", e);
         }
     }
 
     private static <T> T invoke(Object ref, Class<?> clazz, String method, Object... args) {
+        Object resolved = getMethod(ref == null, clazz, method, TypeUtil.getClassesFromObjects(args));
+        if (resolved == NOT_EXIST) {
+            throw new MemberAccessException("Private method \"" + method + "\" not exist");
+        } else if (resolved == NOT_FOUND) {
+            throw new MemberAccessException("Private method \"" + method + "\" not found");
+        }
+        ResolvedMethod resolvedMethod = (ResolvedMethod)resolved;
         try {
-            Class<?>[] cls = TypeUtil.getClassesFromObjects(args);
-            Class<?> commonClass = getCommonParentClass(cls);
-            Method declaredMethod = TypeUtil.getMethodByNameAndParameterTypes(clazz, method, cls);
-            if (declaredMethod != null) {
-                declaredMethod.setAccessible(true);
-                return (T)declaredMethod.invoke(ref, args);
-            } else if (commonClass != null) {
-                Class<?> arrayType = Array.newInstance(commonClass, 0).getClass();
-                declaredMethod = TypeUtil.getMethodByNameAndParameterTypes(clazz, method, new Class[] {arrayType});
-                if (declaredMethod != null) {
-                    declaredMethod.setAccessible(true);
-                    return (T)declaredMethod.invoke(ref, new Object[] {args});
-                }
-            }
-            if (ref == null) {
-                // fit kotlin companion object, will throw 'NoSuchFieldException' otherwise
-                Field companionClassField = clazz.getDeclaredField(KOTLIN_COMPANION_FIELD);
-                declaredMethod = TypeUtil.getMethodByNameAndParameterTypes(companionClassField.getType(), method, cls);
+            if (resolvedMethod.isCompanion) {
                 Object companionInstance = getStatic(clazz, KOTLIN_COMPANION_FIELD);
-                if (declaredMethod != null && companionInstance != null) {
-                    declaredMethod.setAccessible(true);
-                    return (T)declaredMethod.invoke(companionInstance, args);
+                if (companionInstance == null) {
+                    throw new MemberAccessException("Private method \"" + method + "\" not found");
                 }
+                return (T)resolvedMethod.method.invoke(companionInstance, args);
             }
+            return (T)resolvedMethod.method.invoke(ref, resolvedMethod.isVarargs ? new Object[] {args} : args);
         } catch (IllegalAccessException e) {
             throw new MemberAccessException("Failed to access private method \"" + method + "\"", e);
-        } catch (NoSuchFieldException e) {
-            throw new MemberAccessException("Private method \"" + method + "\" not exist", e);
         } catch (InvocationTargetException e) {
             if (e.getTargetException() instanceof RuntimeException) {
                 throw (RuntimeException)e.getTargetException();
             }
             throw new MemberAccessException("Invoke private method \"" + method + "\" failed with exception", e);
         }
-        throw new MemberAccessException("Private method \"" + method + "\" not found");
+    }
+
+    /**
+     * Find field by name, resolved field is cached
+     */
+    private static Field getField(Class<?> clazz, String fieldName) {
+        MemberKey key = new MemberKey(KIND_FIELD, clazz, fieldName, null);
+        Object field = resolvedMembers.get(key);
+        if (field == null) {
+            field = TypeUtil.getFieldByName(clazz, fieldName);
+            if (field == null) {
+                field = NOT_FOUND;
+            } else {
+                ((Field)field).setAccessible(true);
+            }
+            resolvedMembers.put(key, field);
+        }
+        if (field == NOT_FOUND) {
+            throw new MemberAccessException("Private field \"" + fieldName + "\" not exist");
+        }
+        return (Field)field;
+    }
+
+    /**
+     * Find method by name and types of arguments, resolved method is cached
+     * @return ResolvedMethod, or NOT_FOUND / NOT_EXIST
+     */
+    private static Object getMethod(boolean isStatic, Class<?> clazz, String method, Class<?>[] cls) {
+        MemberKey key = new MemberKey(isStatic ? KIND_STATIC_METHOD : KIND_METHOD, clazz, method, cls);
+        Object resolved = resolvedMembers.get(key);
+        if (resolved == null) {
+            resolved = resolveMethod(isStatic, clazz, method, cls);
+            resolvedMembers.put(key, resolved);
+        }
+        return resolved;
+    }
+
+    private static Object resolveMethod(boolean isStatic, Class<?> clazz, String method, Class<?>[] cls) {
+        Method declaredMethod = TypeUtil.getMethodByNameAndParameterTypes(clazz, method, cls);
+        if (declaredMethod != null) {
+            return new ResolvedMethod(declaredMethod, false, false);
+        }
+        Class<?> commonClass = getCommonParentClass(cls);
+        if (commonClass != null) {
+            Class<?> arrayType = Array.newInstance(commonClass, 0).getClass();
+            declaredMethod = TypeUtil.getMethodByNameAndParameterTypes(clazz, method, new Class[] {arrayType});
+            if (declaredMethod != null) {
+                return new ResolvedMethod(declaredMethod, true, false);
+            }
+        }
+        if (isStatic) {
+            // fit kotlin companion object
+            Field companionClassField;
+            try {
+                companionClassField = clazz.getDeclaredField(KOTLIN_COMPANION_FIELD);
+            } catch (NoSuchFieldException e) {
+                return NOT_EXIST;
+            }
+            declaredMethod = TypeUtil.getMethodByNameAndParameterTypes(companionClassField.getType(), method, cls);
+            if (declaredMethod != null) {
+                return new ResolvedMethod(declaredMethod, false, true);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private static class ResolvedMethod {
+        private final Method method;
+        /**
+         * whether arguments should be passed as an array
+         */
+        private final boolean isVarargs;
+        /**
+         * whether it's a method of kotlin companion object
+         */
+        private final boolean isCompanion;
+
+        ResolvedMethod(Method method, boolean isVarargs, boolean isCompanion) {
+            method.setAccessible(true);
+            this.method = method;
+            this.isVarargs = isVarargs;
+            this.isCompanion = isCompanion;
+        }
+    }
+
+    private static class MemberKey {
+        private final String kind;
+        private final Class<?> clazz;
+        private final String name;
+        private final Class<?>[] parameterTypes;
+
+        MemberKey(String kind, Class<?> clazz, String name, Class<?>[] parameterTypes) {
+            this.kind = kind;
+            this.clazz = clazz;
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof MemberKey)) { return false; }
+            MemberKey that = (MemberKey)o;
+            return kind.equals(that.kind) && clazz.equals(that.clazz) && name.equals(that.name) &&
+                Arrays.equals(parameterTypes, that.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = clazz.hashCode();
+            result = 31 * result + name.hashCode();
+            result = 31 * result + kind.hashCode();
+            result = 31 * result + Arrays.hashCode(parameterTypes);
+            return result;
+        }
     }
 }
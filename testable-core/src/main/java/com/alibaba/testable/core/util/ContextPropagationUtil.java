@@ -0,0 +1,146 @@
+package com.alibaba.testable.core.util;
+
+import com.alibaba.testable.core.model.MockContext;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Propagate mock context to tasks submitted to thread pools, only when it's needed
+ * Invoked by submission points rewritten by agent, as a lightweight alternative of the TtlAgent
+ *
+ * @author flin
+ */
+public class ContextPropagationUtil {
+
+    /**
+     * Package prefixes (dot separated) of executor classes whose tasks should carry mock context, null for any
+     */
+    private static String[] executorPkgPrefixes = null;
+
+    /**
+     * Executor class name → whether in package prefix list
+     */
+    private static final ConcurrentMap<String, Boolean> executorChecked = new ConcurrentHashMap<String, Boolean>();
+
+    private static final AtomicLong capturedCount = new AtomicLong();
+    private static final AtomicLong skippedCount = new AtomicLong();
+
+    public static void setExecutorPkgPrefixes(String[] prefixes) {
+        executorPkgPrefixes = prefixes;
+        executorChecked.clear();
+    }
+
+    /**
+     * Capture current mock context into the task
+     * @param task task to submit
+     * @param executor the executor which task is submitted to
+     * @return the wrapped task, or original task if no mock context to propagate
+     */
+    public static Runnable wrap(final Runnable task, Object executor) {
+        final MockContext mockContext = capture(task, executor);
+        if (mockContext == null) {
+            return task;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                MockContext previous = replay(mockContext);
+                try {
+                    task.run();
+                } finally {
+                    restore(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Capture current mock context into the task
+     * @param task task to submit
+     * @param executor the executor which task is submitted to
+     * @return the wrapped task, or original task if no mock context to propagate
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task, Object executor) {
+        final MockContext mockContext = capture(task, executor);
+        if (mockContext == null) {
+            return task;
+        }
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                MockContext previous = replay(mockContext);
+                try {
+                    return task.call();
+                } finally {
+                    restore(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return number of submissions carried mock context
+     */
+    public static long getCapturedCount() {
+        return capturedCount.get();
+    }
+
+    /**
+     * @return number of submissions without mock context, or submitted to non-executor object or executor
+     *         not in package prefix list
+     */
+    public static long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    private static MockContext capture(Object task, Object executor) {
+        MockContext mockContext = MockContextUtil.context.get();
+        // methods with same name of non-executor type should not receive a wrapped task
+        if (mockContext == null || task == null || !(executor instanceof Executor) ||
+            !isExecutorIncluded(executor.getClass())) {
+            skippedCount.incrementAndGet();
+            return null;
+        }
+        capturedCount.incrementAndGet();
+        return MockContextUtil.markCaptured(mockContext);
+    }
+
+    private static MockContext replay(MockContext mockContext) {
+        MockContext previous = MockContextUtil.context.get();
+        MockContextUtil.context.set(mockContext);
+        return previous;
+    }
+
+    private static void restore(MockContext previous) {
+        if (previous == null) {
+            MockContextUtil.context.remove();
+        } else {
+            MockContextUtil.context.set(previous);
+        }
+    }
+
+    private static boolean isExecutorIncluded(Class<?> executorClass) {
+        String[] prefixes = executorPkgPrefixes;
+        if (prefixes == null) {
+            return true;
+        }
+        String className = executorClass.getName();
+        Boolean included = executorChecked.get(className);
+        if (included == null) {
+            included = false;
+            for (String prefix : prefixes) {
+                if (className.startsWith(prefix)) {
+                    included = true;
+                    break;
+                }
+            }
+            executorChecked.put(className, included);
+        }
+        return included;
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.alibaba.testable.core.util;
 
+import com.alibaba.testable.core.model.InvokeRecord;
 import com.alibaba.testable.core.model.MockContext;
 import com.alibaba.testable.core.tool.CollectionTool;
 
@@ -13,6 +14,8 @@ public class InvokeRecordUtil {
      */
     public static final int INDEX_OF_TEST_CLASS = 2;
 
+    private static final Object[] NO_ARGS = new Object[0];
+
     /**
      * Record mock method invoke event
      * @param args invocation parameters
@@ -20,21 +23,108 @@ public class InvokeRecordUtil {
      */
     public static void recordMockInvoke(Object[] args, boolean isConstructor) {
         StackTraceElement mockMethodTraceElement = Thread.currentThread().getStackTrace()[INDEX_OF_TEST_CLASS];
-        String mockMethodName = mockMethodTraceElement.getMethodName();
-        MockContext mockContext = MockContextUtil.context.get();
+        recordMockInvoke(isConstructor ? args : CollectionTool.slice(args, 1), isConstructor,
+            mockMethodTraceElement.getMethodName(), InvokeRecord.MODE_ALL);
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Record mock method invoke event, with mock method name and record mode provided at transform time
+     * @param args invocation parameters, not including the target object of mocked method
+     * @param isConstructor whether mocked method is constructor
+     * @param mockMethodName name of the mock method
+     * @param recordMode how invocations of the mock method should be recorded
+     */
+    public static void recordMockInvoke(Object[] args, boolean isConstructor, String mockMethodName,
+                                        String recordMode) {
+        InvokeRecord record = getInvokeRecord(isConstructor, mockMethodName, recordMode);
+        if (record != null) {
+            record.add(args);
+        }
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Record invoke event of mock method without parameter, or whose parameters are not retained
+     */
+    public static void recordMockInvoke(boolean isConstructor, String mockMethodName, String recordMode) {
+        recordMockInvoke(NO_ARGS, isConstructor, mockMethodName, recordMode);
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Record invoke event of mock method with single int parameter, arguments are not boxed until verifying
+     */
+    public static void recordMockInvoke(int arg, boolean isConstructor, String mockMethodName, String recordMode) {
+        InvokeRecord record = getInvokeRecord(isConstructor, mockMethodName, recordMode);
+        if (record != null) {
+            record.add(arg);
+        }
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Record invoke event of mock method with single long parameter, arguments are not boxed until verifying
+     */
+    public static void recordMockInvoke(long arg, boolean isConstructor, String mockMethodName, String recordMode) {
+        InvokeRecord record = getInvokeRecord(isConstructor, mockMethodName, recordMode);
+        if (record != null) {
+            record.add(arg);
+        }
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Record invoke event of mock method with two int parameters, arguments are not boxed until verifying
+     */
+    public static void recordMockInvoke(int arg1, int arg2, boolean isConstructor, String mockMethodName,
+                                        String recordMode) {
+        InvokeRecord record = getInvokeRecord(isConstructor, mockMethodName, recordMode);
+        if (record != null) {
+            record.add(arg1, arg2);
+        }
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Record invoke event of mock method with two long parameters, arguments are not boxed until verifying
+     */
+    public static void recordMockInvoke(long arg1, long arg2, boolean isConstructor, String mockMethodName,
+                                        String recordMode) {
+        InvokeRecord record = getInvokeRecord(isConstructor, mockMethodName, recordMode);
+        if (record != null) {
+            record.add(arg1, arg2);
+        }
+    }
+
+    /**
+     * Get invocation record of specified mock method in current test case
+     * @param mockMethodName name of the mock method
+     * @return the record, or an empty record if mock method has not been invoked
+     */
+    public static InvokeRecord getInvokeRecord(String mockMethodName) {
+        MockContext mockContext = MockContextUtil.current();
+        InvokeRecord record = (mockContext == null) ? null : mockContext.invokeRecord.get(mockMethodName);
+        return (record == null) ? InvokeRecord.of(InvokeRecord.MODE_ALL) : record;
+    }
+
+    private static InvokeRecord getInvokeRecord(boolean isConstructor, String mockMethodName, String recordMode) {
+        MockContext mockContext = MockContextUtil.current();
         if (mockContext == null) {
             // mock method not invoked from test case, e.g. in static block
-            return;
+            return null;
+        }
+        InvokeRecord record = mockContext.invokeRecord.get(mockMethodName);
+        if (record == null) {
+            // mock method could be invoked from multiple threads at the same time
+            mockContext.invokeRecord.putIfAbsent(mockMethodName, InvokeRecord.of(recordMode));
+            record = mockContext.invokeRecord.get(mockMethodName);
         }
-        String testClass = mockContext.testClassName;
-        String testCaseName = mockContext.testCaseName;
-        if (isConstructor) {
-            mockContext.invokeRecord.get(mockMethodName).add(args);
-            LogUtil.verbose("   Mock constructor \"%s\" invoked in %s::%s", mockMethodName, testClass, testCaseName);
-        } else {
-            mockContext.invokeRecord.get(mockMethodName).add(CollectionTool.slice(args, 1));
-            LogUtil.verbose("   Mock method \"%s\" invoked in %s::%s\"", mockMethodName, testClass, testCaseName);
+        if (LogUtil.isVerboseEnabled()) {
+            LogUtil.verbose("   Mock %s \"%s\" invoked in %s::%s", isConstructor ? "constructor" : "method",
+                mockMethodName, mockContext.testClassName, mockContext.testCaseName);
         }
+        return record;
     }
 
 }
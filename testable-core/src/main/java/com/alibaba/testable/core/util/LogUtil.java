@@ -2,10 +2,12 @@ package com.alibaba.testable.core.util;
 
 import com.alibaba.testable.core.model.LogLevel;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author flin
@@ -14,7 +16,20 @@ public class LogUtil {
 
     private static LogLevel defaultLogLevel = LogLevel.DEFAULT;
     private static LogLevel currentLogLevel = LogLevel.DEFAULT;
-    private static FileOutputStream logFileStream = null;
+    private static final int LOG_BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long WRITER_STOP_TIMEOUT_MILLIS = 1000;
+
+    private static volatile OutputStream logFileStream = null;
+    /**
+     * Log lines waiting to be written to log file, appended without locking
+     */
+    private static final Queue<PendingLog> pendingLogs = new ConcurrentLinkedQueue<PendingLog>();
+    /**
+     * Background thread writing pending logs to file in batch
+     */
+    private static volatile Thread logWriter = null;
+    private static volatile boolean logWriterStopped = false;
 
     public static void verbose(String msg, Object... args) {
         verbose(0, msg, args);
@@ -29,22 +44,26 @@ public class LogUtil {
             String text = String.format(space(indent) + msg + "\n", args);
             System.out.print("[VERBOSE] ");
             System.out.print(text);
-            write("[TIP] ");
-            write(text);
+            write("[TIP] " + text);
         }
     }
 
     public static void diagnose(int indent, String msg, Object... args) {
-        String text = String.format(space(indent) + msg + "\n", args);
         if (currentLogLevel.level >= LogLevel.ENABLE.level) {
+            String text = String.format(space(indent) + msg + "\n", args);
             System.out.print("[DIAGNOSE] ");
             System.out.print(text);
+            write("[INFO] " + text);
+        } else {
+            // only written to log file, leave formatting to log writer thread
+            writeLazily("[INFO] ", indent, msg, args);
         }
-        write("[INFO] ");
-        write(text);
     }
 
     public static void info(String msg, Object... args) {
+        if (currentLogLevel.level < LogLevel.DEFAULT.level && logFileStream == null) {
+            return;
+        }
         String text = String.format("[INFO] " + msg + "\n", args);
         if (currentLogLevel.level >= LogLevel.DEFAULT.level) {
             System.out.print(text);
@@ -53,6 +72,9 @@ public class LogUtil {
     }
 
     public static void warn(String msg, Object... args) {
+        if (currentLogLevel.level < LogLevel.DEFAULT.level && logFileStream == null) {
+            return;
+        }
         String text = String.format("[WARN] " + msg + "\n", args);
         if (currentLogLevel.level >= LogLevel.DEFAULT.level) {
             System.err.print(text);
@@ -89,7 +111,8 @@ public class LogUtil {
     public static void setGlobalLogPath(String logFilePath) {
         try {
             if (PathUtil.createFolder(PathUtil.getFolder(logFilePath))) {
-                logFileStream = new FileOutputStream(logFilePath);
+                logFileStream = new BufferedOutputStream(new FileOutputStream(logFilePath), LOG_BUFFER_SIZE);
+                startLogWriter();
                 diagnose("Start at %s", new Date().toString());
             }
         } catch (FileNotFoundException e) {
@@ -97,16 +120,23 @@ public class LogUtil {
         }
     }
 
+    /**
+     * Write all pending logs and close log file
+     * should be invoked before JVM exits
+     */
     public static void cleanup() {
+        if (logFileStream == null) {
+            return;
+        }
+        diagnose("Completed at %s", new Date().toString());
+        stopLogWriter();
         try {
-            if (logFileStream != null) {
-                diagnose("Completed at %s", new Date().toString());
-                logFileStream.flush();
-                logFileStream.close();
-            }
+            writePendingLogs();
+            logFileStream.close();
         } catch (IOException e) {
             warn("Log file is not closed properly");
         }
+        logFileStream = null;
     }
 
     private static String space(int indent) {
@@ -114,12 +144,112 @@ public class LogUtil {
     }
 
     private static void write(String text) {
+        if (logFileStream != null) {
+            pendingLogs.offer(new PendingLog(text, 0, null, null));
+        }
+    }
+
+    private static void writeLazily(String prefix, int indent, String msg, Object[] args) {
+        if (logFileStream != null) {
+            PendingLog log = new PendingLog(prefix, indent, msg, args);
+            // mutable argument may have changed when formatted by log writer thread
+            pendingLogs.offer(isImmutable(args) ? log : new PendingLog(log.format(), 0, null, null));
+        }
+    }
+
+    private static boolean isImmutable(Object[] args) {
+        for (Object arg : args) {
+            if (arg != null && !(arg instanceof String || arg instanceof Number || arg instanceof Boolean ||
+                arg instanceof Character || arg instanceof Enum || arg instanceof Class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void startLogWriter() {
+        if (logWriter != null) {
+            return;
+        }
+        logWriterStopped = false;
+        logWriter = new Thread("testable-log-writer") {
+            @Override
+            public void run() {
+                while (!logWriterStopped) {
+                    try {
+                        writePendingLogs();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                    LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+                }
+            }
+        };
+        logWriter.setDaemon(true);
+        logWriter.start();
+    }
+
+    private static void stopLogWriter() {
+        Thread writer = logWriter;
+        if (writer == null) {
+            return;
+        }
+        logWriterStopped = true;
+        LockSupport.unpark(writer);
         try {
-            if (logFileStream != null) {
-                logFileStream.write(text.getBytes());
+            writer.join(WRITER_STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logWriter = null;
+    }
+
+    /**
+     * Write pending logs in batch, and flush once after all written
+     */
+    private static synchronized void writePendingLogs() throws IOException {
+        OutputStream stream = logFileStream;
+        if (stream == null) {
+            return;
+        }
+        boolean written = false;
+        PendingLog log;
+        while ((log = pendingLogs.poll()) != null) {
+            stream.write(log.format().getBytes());
+            written = true;
+        }
+        if (written) {
+            stream.flush();
+        }
+    }
+
+    /**
+     * A log line to write, either formatted text or message template with arguments to format later
+     */
+    private static class PendingLog {
+        private final String prefix;
+        private final int indent;
+        private final String msg;
+        private final Object[] args;
+
+        PendingLog(String prefix, int indent, String msg, Object[] args) {
+            this.prefix = prefix;
+            this.indent = indent;
+            this.msg = msg;
+            this.args = args;
+        }
+
+        String format() {
+            if (msg == null) {
+                return prefix;
+            }
+            try {
+                return prefix + space(indent) + String.format(msg, args) + "\n";
+            } catch (RuntimeException e) {
+                // malformed message should not break the log writer
+                return prefix + space(indent) + msg + "\n";
             }
-        } catch (IOException e) {
-            // ignore
         }
     }
+
 }
@@ -4,9 +4,12 @@ import com.alibaba.testable.core.exception.MemberAccessException;
 import com.alibaba.testable.core.model.MockContext;
 import com.alibaba.testable.core.tool.CollectionTool;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.alibaba.testable.core.constant.ConstPool.*;
 import static com.alibaba.testable.core.tool.PrivateAccessor.*;
@@ -22,13 +25,38 @@ public class MockAssociationUtil {
      * Sub-class of specified mock class
      * SuperMockClassName (dot-separated) → Set of [SubMockClassName (dot-separated)]
      */
-    public static Map<String, Set<String>> subMockContainers = UnnullableMap.of(new HashSet<String>());
+    public static Map<String, Set<String>> subMockContainers = new ConcurrentHashMap<String, Set<String>>();
 
     /**
      * Mock class referred by @MockWith annotation to list of its test classes
      * MockClassName (dot-separated) → Set of associated [TestClassNames (dot-separated)]
      */
-    public static Map<String, Set<String>> mockToTests = UnnullableMap.of(new HashSet<String>());
+    public static Map<String, Set<String>> mockToTests = new ConcurrentHashMap<String, Set<String>>();
+
+    private static final byte ASSOCIATION_UNKNOWN = 0;
+    private static final byte ASSOCIATED = 1;
+    private static final byte NOT_ASSOCIATED = 2;
+
+    /**
+     * Id of each mock class, assigned when the mock class is transformed
+     * MockClassName (dot-separated) → MockClassId
+     */
+    private static final ConcurrentMap<String, Integer> mockClassIds = new ConcurrentHashMap<String, Integer>();
+    private static final List<String> mockClassNames = new CopyOnWriteArrayList<String>();
+
+    /**
+     * Increased whenever association relationship changed, to invalidate association cache in mock context
+     */
+    private static final AtomicInteger associationVersion = new AtomicInteger();
+
+    private static final Object NOT_FOUND = new Object();
+
+    /**
+     * Resolved original members invoked by mock methods
+     * OriginClass → MemberName → ParameterDesc → Method / Constructor (or NOT_FOUND)
+     */
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, ConcurrentMap<String, Object>>> originMembers =
+        new ConcurrentHashMap<Class<?>, ConcurrentMap<String, ConcurrentMap<String, Object>>>();
 
     /**
      * Note: this method will be invoked in transformed byte code
@@ -36,25 +64,78 @@ public class MockAssociationUtil {
      * should be invoked in mock method
      */
     public static boolean isAssociated() {
-        MockContext mockContext = MockContextUtil.context.get();
+        if (MockContextUtil.current() == null) {
+            // invoked from test case not transformed by testable
+            return false;
+        }
+        return isAssociated(Thread.currentThread().getStackTrace()[INDEX_OF_MOCK_CLASS].getClassName());
+    }
+
+    /**
+     * Check whether mock method of specified mock class is invoked from its associated test class
+     * @param mockClassName dot-separated name of the mock class
+     */
+    public static boolean isAssociated(String mockClassName) {
+        return isAssociated(getMockClassId(mockClassName));
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Check whether mock method of specified mock class is invoked from its associated test class,
+     * result of each mock class is calculated once and cached in mock context
+     * @param mockClassId id of the mock class, provided at transform time
+     */
+    public static boolean isAssociated(int mockClassId) {
+        MockContext mockContext = MockContextUtil.current();
         if (mockContext == null) {
             // invoked from test case not transformed by testable
             return false;
         }
-        String testClassName = mockContext.testClassName;
-        String mockClassName = Thread.currentThread().getStackTrace()[INDEX_OF_MOCK_CLASS].getClassName();
-        return recursiveAssociationCheck(testClassName, mockClassName);
+        byte[] associations = mockContext.mockAssociations;
+        int version = associationVersion.get();
+        if (mockContext.mockAssociationVersion != version || mockClassId >= associations.length) {
+            associations = new byte[mockClassNames.size()];
+            mockContext.mockAssociations = associations;
+            mockContext.mockAssociationVersion = version;
+        }
+        if (associations[mockClassId] == ASSOCIATION_UNKNOWN) {
+            associations[mockClassId] = recursiveAssociationCheck(mockContext.testClassName,
+                mockClassNames.get(mockClassId)) ? ASSOCIATED : NOT_ASSOCIATED;
+        }
+        return associations[mockClassId] == ASSOCIATED;
+    }
+
+    /**
+     * Get id of mock class, assign a new one if not exist
+     * @param mockClassName dot-separated name of the mock class
+     * @return id of the mock class
+     */
+    public static int getMockClassId(String mockClassName) {
+        Integer id = mockClassIds.get(mockClassName);
+        if (id == null) {
+            synchronized (mockClassNames) {
+                id = mockClassIds.get(mockClassName);
+                if (id == null) {
+                    id = mockClassNames.size();
+                    mockClassNames.add(mockClassName);
+                    mockClassIds.put(mockClassName, id);
+                }
+            }
+        }
+        return id;
     }
 
     private static boolean recursiveAssociationCheck(String testClassName, String mockClassName) {
         return isAssociatedByInnerMockClass(testClassName, mockClassName) ||
             isAssociatedByOuterMockClass(testClassName, mockClassName) ||
             isAssociatedByMockWithAnnotation(testClassName, mockClassName) ||
-            (subMockContainers.containsKey(mockClassName) &&
-                recursiveAssociationCheck(testClassName, subMockContainers.get(mockClassName)));
+            recursiveAssociationCheck(testClassName, subMockContainers.get(mockClassName));
     }
 
     private static boolean recursiveAssociationCheck(String testClassName, Set<String> mockClassNames) {
+        if (mockClassNames == null) {
+            return false;
+        }
         for (String name : mockClassNames) {
             if (recursiveAssociationCheck(testClassName, name)) {
                 return true;
@@ -64,15 +145,70 @@ public class MockAssociationUtil {
     }
 
     /**
-     * Note: this method will be invoked in transformed byte code
      * Invoke original method when mock class is not associated with current test case
+     * Only kept for classes transformed by earlier version of testable agent
      */
     public static Object invokeOrigin(Class<?> originClass, String originMethod, Object... args) {
         if (originMethod.equals(CONSTRUCTOR)) {
             return construct(originClass, args);
-        } else if (args[0] == null) {
+        }
+        return invokeOriginByArguments(originClass, originMethod, args[0], CollectionTool.slice(args, 1));
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Invoke original constructor when mock class is not associated with current test case
+     * @param parameterDesc bytecode style descriptor of constructor parameters
+     * @param args invocation parameters
+     */
+    public static Object invokeOriginConstructor(Class<?> originClass, String parameterDesc, Object[] args) {
+        Object member = getOriginMember(originClass, CONSTRUCTOR, parameterDesc);
+        if (member == NOT_FOUND) {
+            return construct(originClass, args);
+        }
+        try {
+            return ((Constructor<?>)member).newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw toOriginException(e, "constructor of \"" + originClass.getSimpleName() + "\"");
+        } catch (InstantiationException e) {
+            throw new MemberAccessException("Failed to instantiate object of \"" + originClass.getSimpleName() + "\"", e);
+        } catch (IllegalAccessException e) {
+            throw new MemberAccessException("Failed to access constructor of \"" + originClass.getSimpleName() + "\"", e);
+        }
+    }
+
+    /**
+     * Note: this method will be invoked in transformed byte code
+     * Invoke original member or static method when mock class is not associated with current test case
+     * @param parameterDesc bytecode style descriptor of method parameters
+     * @param target the invoked object, null for static method
+     * @param args invocation parameters, not including the target object
+     */
+    public static Object invokeOriginMethod(Class<?> originClass, String originMethod, String parameterDesc,
+                                            Object target, Object[] args) {
+        Object member = getOriginMember(originClass, originMethod, parameterDesc);
+        if (member == NOT_FOUND) {
+            // e.g. method of kotlin companion object
+            return invokeOriginByArguments(originClass, originMethod, target, args);
+        }
+        Method method = (Method)member;
+        if (target == null && !Modifier.isStatic(method.getModifiers())) {
+            throw new NullPointerException("Invoking method \"" + originMethod + "\" of null object");
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw toOriginException(e, "method \"" + originMethod + "\"");
+        } catch (IllegalAccessException e) {
+            throw new MemberAccessException("Failed to access method \"" + originMethod + "\"", e);
+        }
+    }
+
+    private static Object invokeOriginByArguments(Class<?> originClass, String originMethod, Object target,
+                                                  Object[] args) {
+        if (target == null) {
             try {
-                return invokeStatic(originClass, originMethod, CollectionTool.slice(args, 1));
+                return invokeStatic(originClass, originMethod, args);
             } catch (RuntimeException e) {
                 if (e instanceof MemberAccessException && e.getCause() instanceof NoSuchFieldException) {
                     throw new NullPointerException("Invoking method \"" + originMethod + "\" of null object");
@@ -80,12 +216,91 @@ public class MockAssociationUtil {
                 throw e;
             }
         } else {
-            return invoke(args[0], originMethod, CollectionTool.slice(args, 1));
+            return invoke(target, originMethod, args);
+        }
+    }
+
+    /**
+     * Get resolved original method or constructor, resolve it at the first time
+     * @return the method or constructor, or NOT_FOUND if it could not be resolved by descriptor
+     */
+    private static Object getOriginMember(Class<?> originClass, String memberName, String parameterDesc) {
+        ConcurrentMap<String, ConcurrentMap<String, Object>> membersOfClass = originMembers.get(originClass);
+        if (membersOfClass == null) {
+            originMembers.putIfAbsent(originClass, new ConcurrentHashMap<String, ConcurrentMap<String, Object>>());
+            membersOfClass = originMembers.get(originClass);
+        }
+        ConcurrentMap<String, Object> membersOfName = membersOfClass.get(memberName);
+        if (membersOfName == null) {
+            membersOfClass.putIfAbsent(memberName, new ConcurrentHashMap<String, Object>());
+            membersOfName = membersOfClass.get(memberName);
+        }
+        Object member = membersOfName.get(parameterDesc);
+        if (member == null) {
+            member = resolveOriginMember(originClass, memberName, parameterDesc);
+            membersOfName.put(parameterDesc, member);
+        }
+        return member;
+    }
+
+    private static Object resolveOriginMember(Class<?> originClass, String memberName, String parameterDesc) {
+        try {
+            Class<?>[] parameterTypes = TypeUtil.getClassesFromDescriptor(parameterDesc, originClass.getClassLoader());
+            AccessibleObject member = memberName.equals(CONSTRUCTOR) ?
+                originClass.getDeclaredConstructor(parameterTypes) :
+                TypeUtil.getMethodByNameAndExactParameterTypes(originClass, memberName, parameterTypes);
+            if (member != null) {
+                member.setAccessible(true);
+                return member;
+            }
+        } catch (ClassNotFoundException e) {
+            // fall through
+        } catch (NoSuchMethodException e) {
+            // fall through
+        } catch (SecurityException e) {
+            // fall through
         }
+        return NOT_FOUND;
+    }
+
+    private static RuntimeException toOriginException(InvocationTargetException e, String memberDesc) {
+        if (e.getTargetException() instanceof RuntimeException) {
+            return (RuntimeException)e.getTargetException();
+        } else if (e.getTargetException() instanceof Error) {
+            throw (Error)e.getTargetException();
+        }
+        return new MemberAccessException("Invoke " + memberDesc + " failed with exception", e);
     }
 
     public static void recordSubMockContainer(String superClassName, String subClassName) {
-        subMockContainers.get(superClassName).add(subClassName);
+        addToSet(subMockContainers, superClassName, subClassName);
+    }
+
+    public static void recordMockWith(String mockClassName, String testClassName) {
+        addToSet(mockToTests, mockClassName, testClassName);
+    }
+
+    private static void addToSet(Map<String, Set<String>> map, String key, String value) {
+        Set<String> values = map.get(key);
+        if (values == null) {
+            Set<String> newValues = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            if (map instanceof ConcurrentMap) {
+                values = ((ConcurrentMap<String, Set<String>>)map).putIfAbsent(key, newValues);
+            } else {
+                // field was replaced with a non-concurrent map from outside
+                synchronized (map) {
+                    values = map.get(key);
+                    if (values == null) {
+                        map.put(key, newValues);
+                    }
+                }
+            }
+            if (values == null) {
+                values = newValues;
+            }
+        }
+        values.add(value);
+        associationVersion.incrementAndGet();
     }
 
     private static boolean isAssociatedByInnerMockClass(String testClassName, String mockClassName) {
@@ -98,7 +313,8 @@ public class MockAssociationUtil {
     }
 
     private static boolean isAssociatedByMockWithAnnotation(String testClassName, String mockClassName) {
-        return mockToTests.get(mockClassName).contains(testClassName);
+        Set<String> testClassNames = mockToTests.get(mockClassName);
+        return testClassNames != null && testClassNames.contains(testClassName);
     }
 
 }
@@ -10,7 +10,33 @@ public class MockContextUtil {
     /**
      * Container to store context information of each test case
      */
-    public static InheritableThreadLocal<MockContext> context = new TransmittableThreadLocal<MockContext>();
+    public static InheritableThreadLocal<MockContext> context = new TransmittableThreadLocal<MockContext>() {
+        @Override
+        public MockContext copy(MockContext parentValue) {
+            return markCaptured(parentValue);
+        }
+
+        @Override
+        protected MockContext childValue(MockContext parentValue) {
+            return markCaptured(parentValue);
+        }
+    };
+
+    /**
+     * Context object of each thread, kept after clean up to be reused by next test case,
+     * unless it was captured by other threads
+     */
+    private static final ThreadLocal<MockContext> reusableContext = new ThreadLocal<MockContext>();
+
+    /**
+     * Whether use a single context visible from all threads, instead of storing it in thread local
+     */
+    private static boolean globalContextMode = false;
+
+    /**
+     * Context of the running test case, only used in global context mode
+     */
+    private static volatile MockContext globalContext = null;
 
     /**
      * [0]Thread → [1]MockContextUtil → [2]TestClass
@@ -22,9 +48,30 @@ public class MockContextUtil {
      * should be invoked at the beginning of each test case method
      */
     public static void init() {
-        String testClassName = Thread.currentThread().getStackTrace()[INDEX_OF_TEST_CLASS].getClassName();
-        String testCaseName = Thread.currentThread().getStackTrace()[INDEX_OF_TEST_CLASS].getMethodName();
-        context.set(new MockContext(testClassName, testCaseName));
+        StackTraceElement testCase = Thread.currentThread().getStackTrace()[INDEX_OF_TEST_CLASS];
+        init(testCase.getClassName(), testCase.getMethodName());
+    }
+
+    /**
+     * Initialize mock context with known test case
+     * should be invoked at the beginning of each test case method
+     * @param testClassName name of test class (dot separated)
+     * @param testCaseName name of test case method
+     */
+    public static void init(String testClassName, String testCaseName) {
+        MockContext mockContext = reusableContext.get();
+        if (mockContext == null || mockContext.captured) {
+            // context captured by other threads may still be used by them after current test case finished
+            mockContext = new MockContext(testClassName, testCaseName);
+            reusableContext.set(mockContext);
+        } else {
+            mockContext.reset(testClassName, testCaseName);
+        }
+        if (globalContextMode) {
+            globalContext = mockContext;
+        } else {
+            context.set(mockContext);
+        }
     }
 
     /**
@@ -33,10 +80,41 @@ public class MockContextUtil {
      */
     public static void clean() {
         context.remove();
+        globalContext = null;
+    }
+
+    /**
+     * Get context of current test case
+     * @return mock context, null if no test case running
+     */
+    public static MockContext current() {
+        MockContext mockContext = context.get();
+        return mockContext == null ? globalContext : mockContext;
+    }
+
+    /**
+     * Use a single context visible from all threads, so that threads (e.g. large amount of virtual threads)
+     * needn't inherit context from their parent, only available when test cases are not executed in parallel
+     * @param enabled use global context or not
+     */
+    public static void setGlobalContextMode(boolean enabled) {
+        globalContextMode = enabled;
+    }
+
+    /**
+     * Mark context as passed to another thread, so that it won't be reused by next test case
+     * @param mockContext context to pass
+     * @return the same context
+     */
+    public static MockContext markCaptured(MockContext mockContext) {
+        if (mockContext != null && !mockContext.captured) {
+            mockContext.captured = true;
+        }
+        return mockContext;
     }
 
     public static Map<String, Object> parameters() {
-        MockContext mockContext = MockContextUtil.context.get();
+        MockContext mockContext = current();
         return mockContext == null ? new HashMap<String, Object>() : mockContext.parameters;
     }
 
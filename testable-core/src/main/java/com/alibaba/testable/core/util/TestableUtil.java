@@ -15,6 +15,11 @@ public class TestableUtil {
      */
     private static final int INDEX_OF_CALLER_METHOD = 3;
 
+    /**
+     * Name of the source method which is invoking mock method in current thread
+     */
+    private static final ThreadLocal<String> sourceMethodName = new ThreadLocal<String>();
+
     /**
      * Get the last visit method in source file
      * @return method name
@@ -23,6 +28,39 @@ public class TestableUtil {
         return Thread.currentThread().getStackTrace()[INDEX_OF_SOURCE_METHOD].getMethodName();
     }
 
+    /**
+     * Record name of the source method, invoked right before calling mock method
+     * @param methodName name of the source method
+     * @return previously recorded name, should be restored after calling mock method
+     */
+    public static String setSourceMethodName(String methodName) {
+        String previous = sourceMethodName.get();
+        sourceMethodName.set(methodName);
+        return previous;
+    }
+
+    /**
+     * Restore recorded name of source method, invoked right after calling mock method
+     * @param previous value returned by setSourceMethodName()
+     */
+    public static void resetSourceMethodName(String previous) {
+        sourceMethodName.set(previous);
+    }
+
+    /**
+     * Get the source method which invoked current mock method, without walking through the stack
+     * @return method name
+     */
+    public static String sourceMethodName() {
+        String methodName = sourceMethodName.get();
+        if (methodName == null) {
+            // mock method not invoked from source class, e.g. invoked by test case directly
+            // [0]Thread.getStackTrace() → [1]sourceMethodName() → [2]MockMethod → [3]SourceMethod
+            return Thread.currentThread().getStackTrace()[INDEX_OF_SOURCE_METHOD].getMethodName();
+        }
+        return methodName;
+    }
+
     /**
      * Get file name and line number of where current method was called
      * @return in "filename:linenumber" format
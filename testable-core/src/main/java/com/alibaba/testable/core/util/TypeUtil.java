@@ -100,6 +100,65 @@ public class TypeUtil {
         }
     }
 
+    /**
+     * get method by name and exact parameter types, from class, its parents or its interfaces
+     * @param clazz class contains methods
+     * @param methodName method to look for
+     * @param parameterTypes exact parameter types
+     * @return method which match the name and types, null if not found
+     */
+    public static Method getMethodByNameAndExactParameterTypes(Class<?> clazz, String methodName,
+                                                               Class<?>[] parameterTypes) {
+        try {
+            return clazz.getDeclaredMethod(methodName, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            // continue with parents
+        }
+        List<Class<?>> parents = new ArrayList<Class<?>>(Arrays.asList(clazz.getInterfaces()));
+        if (clazz.getSuperclass() != null) {
+            parents.add(0, clazz.getSuperclass());
+        }
+        for (Class<?> parent : parents) {
+            Method method = getMethodByNameAndExactParameterTypes(parent, methodName, parameterTypes);
+            if (method != null) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get classes of parameters in bytecode style descriptor
+     * @param parameterDesc parameter descriptor without parentheses, e.g. "ILjava/lang/String;"
+     * @param classLoader class loader to load parameter classes
+     * @return classes of parameters
+     * @throws ClassNotFoundException if any parameter class not found
+     */
+    public static Class<?>[] getClassesFromDescriptor(String parameterDesc, ClassLoader classLoader)
+        throws ClassNotFoundException {
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        int i = 0;
+        while (i < parameterDesc.length()) {
+            int start = i;
+            while (parameterDesc.charAt(i) == '[') {
+                i++;
+            }
+            if (parameterDesc.charAt(i) == 'L') {
+                i = parameterDesc.indexOf(';', i);
+            }
+            i++;
+            String type = parameterDesc.substring(start, i);
+            if (type.length() == 1) {
+                classes.add(getPrimitiveClass(type.charAt(0)));
+            } else if (type.charAt(0) == 'L') {
+                classes.add(Class.forName(type.substring(1, type.length() - 1).replace('/', '.'), false, classLoader));
+            } else {
+                classes.add(Class.forName(type.replace('/', '.'), false, classLoader));
+            }
+        }
+        return classes.toArray(new Class<?>[0]);
+    }
+
     /**
      * whether class is a system basic type
      * @param clazz type to check
@@ -185,4 +244,18 @@ public class TypeUtil {
             (factTypes.equals(double.class) && userTypes.equals(Double.class));
     }
 
+    private static Class<?> getPrimitiveClass(char type) throws ClassNotFoundException {
+        switch (type) {
+            case 'Z': return boolean.class;
+            case 'B': return byte.class;
+            case 'C': return char.class;
+            case 'S': return short.class;
+            case 'I': return int.class;
+            case 'J': return long.class;
+            case 'F': return float.class;
+            case 'D': return double.class;
+            default: throw new ClassNotFoundException("Unknown primary type " + type);
+        }
+    }
+
 }
@@ -0,0 +1,58 @@
+package com.alibaba.testable.core.tool;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Read and write private field via method handle, without access checking of reflection
+ * Compiled for Java 8, loaded by CompiledField only when runtime supports it
+ *
+ * @author flin
+ */
+class MethodHandleFieldAccessor implements CompiledField.Accessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final MethodHandle getter;
+
+    /**
+     * Null if field could not be written via method handle, e.g. static final field
+     */
+    private final MethodHandle setter;
+
+    MethodHandleFieldAccessor(Field field) throws IllegalAccessException {
+        this.field = field;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        MethodHandle mh = lookup.unreflectGetter(field);
+        getter = (isStatic ? MethodHandles.dropArguments(mh, 0, Object.class) : mh).asType(GETTER_TYPE);
+        MethodHandle setterHandle;
+        try {
+            setterHandle = lookup.unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            setterHandle = null;
+        }
+        setter = (setterHandle == null) ? null :
+            (isStatic ? MethodHandles.dropArguments(setterHandle, 0, Object.class) : setterHandle).asType(SETTER_TYPE);
+    }
+
+    @Override
+    public Object get(Object ref) throws Throwable {
+        return getter.invokeExact(ref);
+    }
+
+    @Override
+    public void set(Object ref, Object value) throws Throwable {
+        if (setter == null) {
+            field.set(ref, value);
+        } else {
+            setter.invokeExact(ref, value);
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.alibaba.testable.core.tool;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invoke private method via method handle, without access checking and exception wrapping of reflection
+ * Compiled for Java 8, loaded by CompiledMethod only when runtime supports it
+ *
+ * @author flin
+ */
+class MethodHandleInvoker implements CompiledMethod.Invoker {
+
+    private static final MethodType GENERIC_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    /**
+     * Method handle in (Object ref, Object[] args)Object type
+     */
+    private final MethodHandle handle;
+
+    MethodHandleInvoker(Method method) throws IllegalAccessException {
+        // method is already accessible, so the handle skips access checking
+        MethodHandle mh = MethodHandles.lookup().unreflect(method).asFixedArity();
+        if (Modifier.isStatic(method.getModifiers())) {
+            mh = MethodHandles.dropArguments(mh, 0, Object.class);
+        }
+        handle = mh.asSpreader(Object[].class, method.getParameterTypes().length).asType(GENERIC_TYPE);
+    }
+
+    @Override
+    public Object invoke(Object ref, Object[] args) throws Throwable {
+        return handle.invokeExact(ref, args);
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.alibaba.testable.core.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvokeRecordTest {
+
+    @Test
+    void should_parse_record_mode() {
+        assertTrue(InvokeRecord.isValidMode("none"));
+        assertTrue(InvokeRecord.isValidMode("count-only"));
+        assertTrue(InvokeRecord.isValidMode("last-3"));
+        assertTrue(InvokeRecord.isValidMode("all"));
+        assertFalse(InvokeRecord.isValidMode("last-0"));
+        assertFalse(InvokeRecord.isValidMode("last-n"));
+        assertFalse(InvokeRecord.isValidMode(""));
+        assertEquals("all", InvokeRecord.of("unknown").getMode());
+    }
+
+    @Test
+    void should_record_nothing_in_none_mode() {
+        InvokeRecord record = InvokeRecord.of("none");
+        record.add(new Object[] {1});
+        assertFalse(record.isCounting());
+        assertFalse(record.isArgumentRetained());
+        assertEquals(0, record.size());
+    }
+
+    @Test
+    void should_only_count_in_count_only_mode() {
+        InvokeRecord record = InvokeRecord.of("count-only");
+        record.add(new Object[] {1});
+        record.add(new Object[] {2});
+        assertEquals(2, record.size());
+        assertEquals(0, record.getRetainedCount());
+        assertEquals(2, record.getDroppedCount());
+    }
+
+    @Test
+    void should_keep_last_invocations_in_last_n_mode() {
+        InvokeRecord record = InvokeRecord.of("last-2");
+        for (int i = 1; i <= 5; i++) {
+            record.add(new Object[] {i});
+        }
+        assertEquals(5, record.size());
+        assertEquals(2, record.getRetainedCount());
+        assertEquals(4, record.get(0)[0]);
+        assertEquals(5, record.get(1)[0]);
+        record.consume(0);
+        assertEquals(4, record.size());
+        assertEquals(1, record.nextIndex(0));
+        record.add(new Object[] {6});
+        assertEquals(0, record.nextIndex(0));
+        assertEquals(5, record.get(0)[0]);
+        assertEquals(6, record.get(1)[0]);
+        assertEquals(2, record.getRetainedCount());
+    }
+
+    @Test
+    void should_keep_all_invocations_in_all_mode() {
+        InvokeRecord record = InvokeRecord.of("all");
+        for (int i = 0; i < 20; i++) {
+            record.add(new Object[] {i});
+        }
+        record.consume(3);
+        assertEquals(19, record.size());
+        assertEquals(0, record.getDroppedCount());
+        assertEquals(2, record.nextIndex(2));
+        assertEquals(4, record.nextIndex(3));
+        assertEquals(4, record.get(4)[0]);
+        assertEquals(-1, record.nextIndex(20));
+    }
+
+    @Test
+    void should_box_primitive_arguments_when_verifying() {
+        InvokeRecord record = InvokeRecord.of("all");
+        record.add(1);
+        record.add(2L);
+        record.add(new Object[] {"value"});
+        record.add(3, 4);
+        record.add(5L, 6L);
+        assertEquals(5, record.getRetainedCount());
+        assertArrayEquals(new Object[] {1}, record.get(0));
+        assertArrayEquals(new Object[] {2L}, record.get(1));
+        assertArrayEquals(new Object[] {"value"}, record.get(2));
+        assertArrayEquals(new Object[] {3, 4}, record.get(3));
+        assertArrayEquals(new Object[] {5L, 6L}, record.get(4));
+        InvokeRecord countOnly = InvokeRecord.of("count-only");
+        countOnly.add(1);
+        countOnly.add(2L, 3L);
+        assertEquals(2, countOnly.size());
+        assertEquals(0, countOnly.getRetainedCount());
+    }
+
+    @Test
+    void should_look_up_invocations_via_argument_index() {
+        InvokeRecord record = InvokeRecord.of("all");
+        for (int i = 0; i < 100; i++) {
+            record.add(new Object[] {"value", i % 10});
+        }
+        assertNull(InvokeRecord.of("all").getIndexesWithEqualArguments(new Object[] {"value", 1}));
+        List<Integer> indexes = record.getIndexesWithEqualArguments(new Object[] {"value", 3});
+        assertEquals(10, indexes.size());
+        assertEquals(3, indexes.get(0));
+        record.consume(3);
+        record.consume(13);
+        indexes = record.getIndexesWithEqualArguments(new Object[] {"value", 3});
+        assertEquals(8, indexes.size());
+        assertEquals(23, indexes.get(0));
+        assertTrue(record.getIndexesWithEqualArguments(new Object[] {"value", 10}).isEmpty());
+        record.add(new Object[] {"value", 10});
+        assertEquals(1, record.getIndexesWithEqualArguments(new Object[] {"value", 10}).size());
+    }
+
+    @Test
+    void should_not_look_up_arguments_of_unhashable_types_via_index() {
+        InvokeRecord record = InvokeRecord.of("all");
+        List<String> mutable = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            record.add(new Object[] {new EqualsOnly(i)});
+        }
+        record.add(new Object[] {mutable});
+        mutable.add("changed");
+        assertNull(record.getIndexesWithEqualArguments(new Object[] {new EqualsOnly(3)}));
+        assertNull(record.getIndexesWithEqualArguments(new Object[] {Collections.singletonList("changed")}));
+        assertTrue(record.getIndexesWithEqualArguments(new Object[] {3}).isEmpty());
+    }
+
+    @Test
+    void should_record_from_multiple_threads() throws InterruptedException {
+        final InvokeRecord allRecord = InvokeRecord.of("all");
+        final InvokeRecord lastRecord = InvokeRecord.of("last-5");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        allRecord.add(new Object[] {i});
+                        lastRecord.add(new Object[] {i});
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, allRecord.size());
+        assertEquals(40000, allRecord.getRetainedCount());
+        assertEquals(40000, lastRecord.size());
+        assertEquals(5, lastRecord.getRetainedCount());
+        assertEquals(39995, lastRecord.getDroppedCount());
+    }
+
+    private static class EqualsOnly {
+
+        private final int value;
+
+        EqualsOnly(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualsOnly && ((EqualsOnly)o).value == value;
+        }
+
+    }
+
+}
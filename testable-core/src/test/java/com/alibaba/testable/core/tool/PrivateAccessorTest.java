@@ -1,6 +1,8 @@
 package com.alibaba.testable.core.tool;
 
+import com.alibaba.testable.core.exception.MemberAccessException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
 
 import java.lang.reflect.Method;
 
@@ -14,6 +16,18 @@ class PrivateAccessorTest {
     static class ABC extends AB {}
     static class B {}
 
+    static class Target {
+        private int count = 0;
+        private Target() {}
+        private int add(int value) { count += value; return count; }
+        private String join(Object... parts) { return String.valueOf(parts.length); }
+        private static String echo(String text) { return text; }
+        private static int total = 0;
+        private void reset() { count = 0; }
+        private void fail(String message) throws Exception { throw new Exception(message); }
+        private void crash(String message) { throw new IllegalStateException(message); }
+    }
+
     @Test
     void should_get_common_type() throws Exception {
         Method getCommonClassOf = PrivateAccessor.class.getDeclaredMethod("getCommonClassOf", Class.class, Class.class);
@@ -25,4 +39,99 @@ class PrivateAccessorTest {
         assertEquals(A.class, getCommonClassOf.invoke(null, ABC.class, AC.class));
     }
 
+    @Test
+    void should_access_cached_members_repeatedly() {
+        Target target = PrivateAccessor.construct(Target.class);
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(i, (Integer)PrivateAccessor.invoke(target, "add", 1));
+            assertEquals(i, (Integer)PrivateAccessor.get(target, "count"));
+            assertEquals("2", PrivateAccessor.invoke(target, "join", "a", "b"));
+            assertEquals("echo", PrivateAccessor.invokeStatic(Target.class, "echo", "echo"));
+        }
+        PrivateAccessor.set(target, "count", 10);
+        assertEquals(11, (Integer)PrivateAccessor.invoke(target, "add", 1));
+    }
+
+    @Test
+    void should_access_members_via_compiled_handle() {
+        Target target = PrivateAccessor.construct(Target.class);
+        CompiledMethod<Integer> add = PrivateAccessor.compile(Target.class, "add", int.class);
+        CompiledField<Integer> count = PrivateAccessor.compileField(Target.class, "count");
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(i, add.invoke(target, 1));
+            assertEquals(i, count.get(target));
+        }
+        count.set(target, 10);
+        assertEquals(11, add.invoke(target, 1));
+        CompiledMethod<String> echo = PrivateAccessor.compile(Target.class, "echo", String.class);
+        assertEquals("echo", echo.invokeStatic("echo"));
+        assertThrows(MemberAccessException.class, new Executable() {
+            @Override
+            public void execute() {
+                PrivateAccessor.compile(Target.class, "add", long.class);
+            }
+        });
+    }
+
+    @Test
+    void should_invoke_any_kind_of_member_via_compiled_handle() {
+        final Target target = PrivateAccessor.construct(Target.class);
+        CompiledMethod<Object> reset = PrivateAccessor.compile(Target.class, "reset");
+        CompiledField<Integer> count = PrivateAccessor.compileField(Target.class, "count");
+        count.set(target, 5);
+        assertNull(reset.invoke(target));
+        assertEquals(0, count.get(target));
+        CompiledMethod<String> join = PrivateAccessor.compile(Target.class, "join", Object[].class);
+        assertEquals("2", join.invoke(target, (Object)new Object[] {"a", "b"}));
+        CompiledField<Integer> total = PrivateAccessor.compileField(Target.class, "total");
+        total.set(null, 3);
+        assertEquals(3, total.get(null));
+        final CompiledMethod<Object> fail = PrivateAccessor.compile(Target.class, "fail", String.class);
+        MemberAccessException e = assertThrows(MemberAccessException.class, new Executable() {
+            @Override
+            public void execute() {
+                fail.invoke(target, "checked");
+            }
+        });
+        assertEquals("checked", e.getCause().getMessage());
+        final CompiledMethod<Object> crash = PrivateAccessor.compile(Target.class, "crash", String.class);
+        assertThrows(IllegalStateException.class, new Executable() {
+            @Override
+            public void execute() {
+                crash.invoke(target, "unchecked");
+            }
+        });
+    }
+
+    @Test
+    void should_report_missing_members_repeatedly() {
+        final Target target = PrivateAccessor.construct(Target.class);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(MemberAccessException.class, new Executable() {
+                @Override
+                public void execute() {
+                    PrivateAccessor.get(target, "missing");
+                }
+            });
+            assertThrows(MemberAccessException.class, new Executable() {
+                @Override
+                public void execute() {
+                    PrivateAccessor.invoke(target, "add", "1");
+                }
+            });
+            assertThrows(MemberAccessException.class, new Executable() {
+                @Override
+                public void execute() {
+                    PrivateAccessor.invokeStatic(Target.class, "missing");
+                }
+            });
+            assertThrows(MemberAccessException.class, new Executable() {
+                @Override
+                public void execute() {
+                    PrivateAccessor.construct(Target.class, 1);
+                }
+            });
+        }
+    }
+
 }
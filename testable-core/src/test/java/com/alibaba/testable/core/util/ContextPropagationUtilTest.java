@@ -0,0 +1,49 @@
+package com.alibaba.testable.core.util;
+
+import com.alibaba.testable.core.model.MockContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextPropagationUtilTest {
+
+    @Test
+    void should_propagate_mock_context_only_when_active() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Callable<MockContext> task = new Callable<MockContext>() {
+            @Override
+            public MockContext call() {
+                return MockContextUtil.context.get();
+            }
+        };
+        try {
+            // start worker thread before mock context initialized, to avoid context inherited
+            assertNull(executor.submit(task).get());
+            long skipped = ContextPropagationUtil.getSkippedCount();
+            assertSame(task, ContextPropagationUtil.wrap(task, executor));
+            assertEquals(skipped + 1, ContextPropagationUtil.getSkippedCount());
+
+            MockContextUtil.init("com.alibaba.testable.DemoTest", "test");
+            MockContext mockContext = MockContextUtil.context.get();
+            long captured = ContextPropagationUtil.getCapturedCount();
+            assertSame(mockContext, executor.submit(ContextPropagationUtil.wrap(task, executor)).get());
+            assertEquals(captured + 1, ContextPropagationUtil.getCapturedCount());
+            // worker thread is restored after task finished
+            MockContextUtil.clean();
+            assertNull(executor.submit(task).get());
+
+            MockContextUtil.init("com.alibaba.testable.DemoTest", "test");
+            // receiver of submission method is not an executor
+            assertSame(task, ContextPropagationUtil.wrap(task, new Object()));
+            ContextPropagationUtil.setExecutorPkgPrefixes(new String[] {"com.demo."});
+            assertSame(task, ContextPropagationUtil.wrap(task, executor));
+        } finally {
+            ContextPropagationUtil.setExecutorPkgPrefixes(null);
+            MockContextUtil.clean();
+            executor.shutdown();
+        }
+    }
+
+}
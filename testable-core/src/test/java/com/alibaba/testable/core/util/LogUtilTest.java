@@ -0,0 +1,59 @@
+package com.alibaba.testable.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogUtilTest {
+
+    @Test
+    void should_write_all_logs_to_file_at_cleanup() throws IOException {
+        File logFile = new File(System.getProperty("java.io.tmpdir"), "testable-log-" + System.nanoTime() + ".log");
+        LogUtil.setGlobalLogPath(logFile.getAbsolutePath());
+        for (int i = 0; i < 1000; i++) {
+            LogUtil.diagnose(2, "line %d", i);
+        }
+        LogUtil.warn("done");
+        LogUtil.cleanup();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile)));
+        try {
+            assertTrue(reader.readLine().startsWith("[INFO] Start at "));
+            assertEquals("[INFO]   line 0", reader.readLine());
+            String line;
+            String lastLine = null;
+            int count = 1;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("[INFO]   line ")) {
+                    count++;
+                }
+                lastLine = line;
+            }
+            assertEquals(1000, count);
+            assertTrue(lastLine.startsWith("[INFO] Completed at "));
+        } finally {
+            reader.close();
+            logFile.delete();
+        }
+    }
+
+    @Test
+    void should_log_mutable_argument_with_state_when_logging() throws IOException {
+        File logFile = new File(System.getProperty("java.io.tmpdir"), "testable-log-" + System.nanoTime() + ".log");
+        LogUtil.setGlobalLogPath(logFile.getAbsolutePath());
+        StringBuilder value = new StringBuilder("before");
+        LogUtil.diagnose("value %s", value);
+        value.replace(0, value.length(), "after");
+        LogUtil.cleanup();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile)));
+        try {
+            reader.readLine();
+            assertEquals("[INFO] value before", reader.readLine());
+        } finally {
+            reader.close();
+            logFile.delete();
+        }
+    }
+
+}
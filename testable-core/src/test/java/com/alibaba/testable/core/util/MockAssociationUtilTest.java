@@ -1,10 +1,14 @@
 package com.alibaba.testable.core.util;
 
+import com.alibaba.testable.core.model.MockContext;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.Collections;
+import java.util.List;
 
 import static com.alibaba.testable.core.tool.PrivateAccessor.invokeStatic;
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class MockAssociationUtilTest {
 
@@ -24,4 +28,59 @@ class MockAssociationUtilTest {
             "com.alibaba.testable.DemoTester", "com.alibaba.testable.DemoMock"));
     }
 
+    @Test
+    void should_check_association_of_given_mock_class() {
+        assertFalse(MockAssociationUtil.isAssociated("com.alibaba.testable.DemoMock"));
+        MockContextUtil.context.set(new MockContext("com.alibaba.testable.DemoTest", "test"));
+        try {
+            assertTrue(MockAssociationUtil.isAssociated("com.alibaba.testable.DemoMock"));
+            assertTrue(MockAssociationUtil.isAssociated("com.alibaba.testable.DemoTest$Mock"));
+            assertFalse(MockAssociationUtil.isAssociated("com.alibaba.testable.OtherMock"));
+        } finally {
+            MockContextUtil.clean();
+        }
+    }
+
+    @Test
+    void should_invoke_origin_member_by_descriptor() {
+        assertEquals('b', MockAssociationUtil.invokeOriginMethod(String.class, "charAt", "I", "abc",
+            new Object[] {1}));
+        assertEquals(5, MockAssociationUtil.invokeOriginMethod(Math.class, "abs", "I", null, new Object[] {-5}));
+        assertEquals(1, MockAssociationUtil.invokeOriginMethod(List.class, "size", "",
+            Collections.singletonList("a"), new Object[0]));
+        assertEquals("x", MockAssociationUtil.invokeOriginConstructor(StringBuilder.class, "Ljava/lang/String;",
+            new Object[] {"x"}).toString());
+        assertThrows(NullPointerException.class, new Executable() {
+            @Override
+            public void execute() {
+                MockAssociationUtil.invokeOriginMethod(String.class, "trim", "", null, new Object[0]);
+            }
+        });
+        assertThrows(NumberFormatException.class, new Executable() {
+            @Override
+            public void execute() {
+                MockAssociationUtil.invokeOriginMethod(Integer.class, "parseInt", "Ljava/lang/String;", null,
+                    new Object[] {"z"});
+            }
+        });
+    }
+
+    @Test
+    void should_refresh_cached_association_when_relationship_changed() {
+        MockContextUtil.context.set(new MockContext("com.alibaba.testable.CacheTest", "test"));
+        try {
+            int mockClassId = MockAssociationUtil.getMockClassId("com.alibaba.testable.SharedMock");
+            assertEquals(mockClassId, MockAssociationUtil.getMockClassId("com.alibaba.testable.SharedMock"));
+            assertFalse(MockAssociationUtil.isAssociated(mockClassId));
+            MockAssociationUtil.recordSubMockContainer("com.alibaba.testable.SharedMock",
+                "com.alibaba.testable.CacheTest$Mock");
+            assertTrue(MockAssociationUtil.isAssociated(mockClassId));
+            assertFalse(MockAssociationUtil.isAssociated("com.alibaba.testable.OtherSharedMock"));
+            MockAssociationUtil.recordMockWith("com.alibaba.testable.OtherSharedMock", "com.alibaba.testable.CacheTest");
+            assertTrue(MockAssociationUtil.isAssociated("com.alibaba.testable.OtherSharedMock"));
+        } finally {
+            MockContextUtil.clean();
+        }
+    }
+
 }
@@ -0,0 +1,96 @@
+package com.alibaba.testable.core.util;
+
+import com.alibaba.testable.core.model.MockContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MockContextUtilTest {
+
+    @Test
+    void should_reuse_mock_context_in_same_thread() {
+        MockContextUtil.init("com.alibaba.testable.DemoTest", "caseOne");
+        MockContext mockContext = MockContextUtil.context.get();
+        MockContextUtil.parameters().put("key", "value");
+        mockContext.mockAssociations = new byte[] {1};
+        MockContextUtil.clean();
+        assertNull(MockContextUtil.context.get());
+
+        MockContextUtil.init("com.alibaba.testable.DemoTest", "caseTwo");
+        assertSame(mockContext, MockContextUtil.context.get());
+        assertEquals("caseTwo", mockContext.testCaseName);
+        assertTrue(MockContextUtil.parameters().isEmpty());
+        assertEquals(1, mockContext.mockAssociations.length);
+
+        MockContextUtil.init("com.alibaba.testable.OtherTest", "caseOne");
+        assertEquals("com.alibaba.testable.OtherTest", mockContext.testClassName);
+        assertEquals(0, mockContext.mockAssociations.length);
+        MockContextUtil.clean();
+    }
+
+    @Test
+    void should_not_reuse_mock_context_captured_by_other_thread() throws InterruptedException {
+        MockContextUtil.init("com.alibaba.testable.DemoTest", "caseOne");
+        MockContext mockContext = MockContextUtil.context.get();
+        final MockContext[] contextInThread = new MockContext[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                contextInThread[0] = MockContextUtil.context.get();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertSame(mockContext, contextInThread[0]);
+        MockContextUtil.clean();
+
+        MockContextUtil.init("com.alibaba.testable.DemoTest", "caseTwo");
+        assertNotSame(mockContext, MockContextUtil.context.get());
+        assertEquals("caseOne", mockContext.testCaseName);
+        MockContext secondContext = MockContextUtil.context.get();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+            }
+        };
+        ContextPropagationUtil.wrap(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, executor);
+        MockContextUtil.clean();
+
+        MockContextUtil.init("com.alibaba.testable.DemoTest", "caseThree");
+        assertNotSame(secondContext, MockContextUtil.context.get());
+        assertEquals("caseTwo", secondContext.testCaseName);
+        MockContextUtil.clean();
+    }
+
+    @Test
+    void should_share_mock_context_in_global_mode() throws InterruptedException {
+        MockContextUtil.setGlobalContextMode(true);
+        try {
+            MockContextUtil.init("com.alibaba.testable.DemoTest", "caseOne");
+            final MockContext[] contextInThread = new MockContext[2];
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    contextInThread[0] = MockContextUtil.context.get();
+                    contextInThread[1] = MockContextUtil.current();
+                }
+            });
+            thread.start();
+            thread.join();
+            assertNull(contextInThread[0]);
+            assertNotNull(contextInThread[1]);
+            assertSame(MockContextUtil.current(), contextInThread[1]);
+            MockContextUtil.clean();
+            assertNull(MockContextUtil.current());
+        } finally {
+            MockContextUtil.setGlobalContextMode(false);
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.alibaba.testable.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestableUtilTest {
+
+    @Test
+    void should_restore_source_method_name() {
+        assertEquals("should_restore_source_method_name", mockMethod());
+        // source method invokes mock method, which then invokes another source method
+        String outerPrevious = TestableUtil.setSourceMethodName("outer");
+        assertEquals("outer", mockMethod());
+        String innerPrevious = TestableUtil.setSourceMethodName("inner");
+        assertEquals("inner", mockMethod());
+        TestableUtil.resetSourceMethodName(innerPrevious);
+        assertEquals("outer", mockMethod());
+        TestableUtil.resetSourceMethodName(outerPrevious);
+        // mock method invoked by test case directly
+        assertEquals("should_restore_source_method_name", mockMethod());
+    }
+
+    private String mockMethod() {
+        return TestableUtil.sourceMethodName();
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.alibaba.testable;
+
+import com.google.common.base.Strings;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.util.Map;
+
+/**
+ * Common parameters of goals using testable agent.
+ *
+ * @author flin
+ */
+public abstract class AbstractTestableMojo extends AbstractMojo
+{
+    /**
+     * Maven project.
+     */
+    @Parameter(property = "project", required = true, readonly = true)
+    protected MavenProject project;
+
+    /**
+     * Map of plugin artifacts.
+     */
+    @Parameter(property = "plugin.artifactMap", required = true, readonly = true)
+    private Map<String, Artifact> pluginArtifactMap;
+
+    /**
+     * Location of local maven repository
+     */
+    @Parameter(defaultValue = "${localRepository}", readonly = true, required = true)
+    private ArtifactRepository localRepository;
+
+    /**
+     * JavaAgent log level (mute/debug/verbose)
+     */
+    @Parameter
+    private String logLevel;
+
+    /**
+     * Path to dump transformed class file
+     */
+    @Parameter
+    private String dumpPath;
+
+    /**
+     * Package prefixes of class need to be mocked (comma split)
+     */
+    @Parameter
+    private String pkgPrefix;
+
+    /**
+     * Name of the Testable Agent artifact.
+     */
+    private static final String AGENT_ARTIFACT_NAME = "com.alibaba.testable:testable-agent";
+    /**
+     * Testable agent jar path in local repository
+     */
+    private static final String AGENT_LOCAL_REPOSITORY_PATH =
+            "/com/alibaba/testable/testable-agent/${testable.version}/testable-agent-${testable.version}.jar";
+
+    /**
+     * Get path of testable agent jar
+     * @return absolute path, or null if not found
+     */
+    protected String getAgentJarPath() {
+        final Artifact testableAgentArtifact = pluginArtifactMap.get(AGENT_ARTIFACT_NAME);
+        if (testableAgentArtifact == null) {
+            getLog().error("failed to find testable agent jar");
+            return null;
+        }
+        String agentJarPath = testableAgentArtifact.getFile().getAbsolutePath();
+        if (agentJarPath.endsWith("target/classes")) {
+            // Just for testcases within testable project itself
+            agentJarPath = localRepository.getBasedir() + AGENT_LOCAL_REPOSITORY_PATH;
+        }
+        return agentJarPath;
+    }
+
+    /**
+     * Get arguments passed to testable agent
+     * @return arguments joined with "&amp;", empty if none configured
+     */
+    protected String getAgentOptions() {
+        String extraArgs = "";
+        if (!Strings.isNullOrEmpty(logLevel)) {
+            extraArgs += "&logLevel=" + logLevel;
+        }
+        if (!Strings.isNullOrEmpty(dumpPath)) {
+            extraArgs += "&dumpPath=" + dumpPath;
+        }
+        if (!Strings.isNullOrEmpty(pkgPrefix)) {
+            extraArgs += "&pkgPrefix=" + pkgPrefix;
+        }
+        return extraArgs.isEmpty() ? extraArgs : extraArgs.substring(1);
+    }
+}
@@ -0,0 +1,120 @@
+package com.alibaba.testable;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Goal which transforms compiled classes ahead of time, classes woven by this goal will be skipped by testable agent.
+ *
+ * @author flin
+ */
+@Mojo(name = "instrument", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES,
+    requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
+public class InstrumentMojo extends AbstractTestableMojo
+{
+    /**
+     * Folder to write woven classes, main classes and test classes are put into its "classes" and "test-classes"
+     * sub-folder respectively
+     */
+    @Parameter(defaultValue = "${project.build.directory}/testable", property = "testable.instrument.outputDirectory")
+    private File outputDirectory;
+
+    /**
+     * Number of threads to weave classes, 0 for number of available processors
+     */
+    @Parameter(defaultValue = "0", property = "testable.instrument.threads")
+    private int threads;
+
+    /**
+     * Skip weaving classes
+     */
+    @Parameter(defaultValue = "false", property = "testable.instrument.skip")
+    private boolean skip;
+
+    /**
+     * Entry class of the offline weaver in testable agent
+     */
+    private static final String WEAVER_CLASS = "com.alibaba.testable.agent.OfflineWeaver";
+    /**
+     * File recording woven classes, for incremental weaving
+     */
+    private static final String INDEX_FILE = "woven.idx";
+    private static final String MAIN_CLASSES_FOLDER = "classes";
+    private static final String TEST_CLASSES_FOLDER = "test-classes";
+
+    @Override
+    public void execute() throws MojoExecutionException
+    {
+        if (skip) {
+            getLog().info("skip weaving classes");
+            return;
+        }
+        final String agentJarPath = getAgentJarPath();
+        if (agentJarPath == null) {
+            throw new MojoExecutionException("failed to find testable agent jar");
+        }
+        final File indexFile = new File(outputDirectory, INDEX_FILE);
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(agentJarPath + File.pathSeparator + getTestClasspath());
+        command.add(WEAVER_CLASS);
+        command.add(indexFile.getAbsolutePath());
+        command.add(String.valueOf(threads));
+        command.add(getAgentOptions());
+        command.add(project.getBuild().getOutputDirectory());
+        command.add(new File(outputDirectory, MAIN_CLASSES_FOLDER).getAbsolutePath());
+        command.add(project.getBuild().getTestOutputDirectory());
+        command.add(new File(outputDirectory, TEST_CLASSES_FOLDER).getAbsolutePath());
+        int exitCode = runWeaver(command);
+        // weaver may exit directly when mock method is invalid, without writing the index file
+        if (exitCode != 0 || !indexFile.isFile()) {
+            throw new MojoExecutionException("failed to weave classes, exit code " + exitCode);
+        }
+    }
+
+    private String getTestClasspath() throws MojoExecutionException {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (String element : project.getTestClasspathElements()) {
+                if (sb.length() > 0) {
+                    sb.append(File.pathSeparator);
+                }
+                sb.append(element);
+            }
+            return sb.toString();
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("failed to resolve test classpath", e);
+        }
+    }
+
+    private int runWeaver(List<String> command) throws MojoExecutionException {
+        try {
+            // run in a separated process, so that static states of agent would not leak into maven
+            Process process = new ProcessBuilder(command).directory(project.getBasedir())
+                .redirectErrorStream(true).start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                getLog().info(line);
+            }
+            return process.waitFor();
+        } catch (IOException e) {
+            throw new MojoExecutionException("failed to start weaver process", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("interrupted while weaving classes", e);
+        }
+    }
+}
@@ -56,6 +56,8 @@ public class EnablePrivateAccessProcessor extends AbstractProcessor {
         if (cx.names == null) {
             return true;
         }
+        // elements of previous round may be stale
+        cx.memberRecords.clear();
         Set<? extends Element> elements = roundEnv.getElementsAnnotatedWith(EnablePrivateAccess.class);
         for (Element element : elements) {
             if (element.getKind().isClass()) {
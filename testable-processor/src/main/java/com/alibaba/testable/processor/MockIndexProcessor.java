@@ -0,0 +1,395 @@
+package com.alibaba.testable.processor;
+
+import com.alibaba.testable.processor.util.DescriptorUtil;
+import com.alibaba.testable.processor.util.TestableLogger;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.util.*;
+
+import static com.alibaba.testable.processor.constant.ConstPool.*;
+
+/**
+ * Record relationship between source classes and mock classes at compile time, so that agent needn't guess
+ * the location of mock class by reading classes from classpath
+ * Index lines are in "source SourceClass Kind MockClass [TestClass]", "mock MockClass" or
+ * "target MockClass OwnerClass MethodName MethodDesc" format, with slash-separated class names
+ * Lines of classes not in current compilation are kept from existing index file, to support partial recompiling
+ *
+ * @author flin
+ */
+@SupportedAnnotationTypes({MOCK_INVOKE, MOCK_NEW, MOCK_CONTAINER, MOCK_WITH})
+public class MockIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_FILE = "META-INF/testable/mock-index";
+
+    /**
+     * Kinds of source-mock relationship, in the same priority order as agent looking for mock class
+     */
+    public static final String KIND_MOCK_WITH_ON_SOURCE = "mockWithOnSource";
+    public static final String KIND_MOCK_WITH_ON_TEST = "mockWithOnTest";
+    public static final String KIND_INNER_MOCK = "innerMock";
+    public static final String KIND_INNER_CONTAINER = "innerContainer";
+    public static final String KIND_OUTER_MOCK = "outerMock";
+
+    private static final String LINE_SOURCE = "source";
+    private static final String LINE_MOCK = "mock";
+    private static final String LINE_TARGET = "target";
+    private static final String CONSTRUCTOR = "<init>";
+    private static final String FIELD_VALUE = "value";
+    private static final String FIELD_TREAT_AS = "treatAs";
+    private static final String FIELD_INHERITS = "inherits";
+    private static final String FIELD_TARGET_METHOD = "targetMethod";
+    private static final String FIELD_TARGET_CLASS = "targetClass";
+    private static final String FIELD_TARGET_CLASS_NAME = "targetClassName";
+    private static final String TREAT_AS_SOURCE = "SourceClass";
+    private static final String TREAT_AS_TEST = "TestClass";
+    private static final String TREAT_AS_GUESS = "GuessByName";
+    private static final String CHARSET = "UTF-8";
+    private static final String SEPARATOR = " ";
+
+    private TestableLogger logger;
+    private DescriptorUtil descriptorUtil;
+
+    /**
+     * Index lines in discovery order
+     */
+    private final Set<String> lines = new LinkedHashSet<String>();
+
+    /**
+     * Slash-separated name of top level classes in current compilation
+     */
+    private final Set<String> compiledClasses = new HashSet<String>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        logger = new TestableLogger(processingEnv.getMessager());
+        descriptorUtil = new DescriptorUtil(processingEnv.getElementUtils(), processingEnv.getTypeUtils());
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            compiledClasses.add(descriptorUtil.getInternalName(type));
+            processType(type);
+        }
+        if (roundEnv.processingOver()) {
+            List<String> existingLines = readIndex();
+            if (!lines.isEmpty() || !existingLines.isEmpty()) {
+                writeIndex(existingLines);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        // always return the latest version
+        return SourceVersion.values()[SourceVersion.values().length - 1];
+    }
+
+    private void processType(TypeElement type) {
+        AnnotationMirror mockWith = getAnnotation(type, MOCK_WITH);
+        if (mockWith != null) {
+            processMockWith(type, mockWith);
+        }
+        if (isMockClass(type)) {
+            processMockClass(type);
+        }
+        for (TypeElement innerType : ElementFilter.typesIn(type.getEnclosedElements())) {
+            processType(innerType);
+        }
+    }
+
+    private void processMockWith(TypeElement type, AnnotationMirror mockWith) {
+        TypeElement mockClass = getTypeParameter(mockWith, FIELD_VALUE);
+        if (mockClass == null) {
+            return;
+        }
+        String mockClassName = descriptorUtil.getInternalName(mockClass);
+        String className = descriptorUtil.getInternalName(type);
+        String treatAs = getParameter(mockWith, FIELD_TREAT_AS);
+        boolean guessByName = (treatAs == null) || treatAs.equals(TREAT_AS_GUESS);
+        if (guessByName ? className.endsWith(TEST_POSTFIX) : treatAs.equals(TREAT_AS_TEST)) {
+            for (String sourceClassName : getSourceClassNames(type)) {
+                addSourceLine(sourceClassName, KIND_MOCK_WITH_ON_TEST, mockClassName, className);
+            }
+        } else if (guessByName || treatAs.equals(TREAT_AS_SOURCE)) {
+            addSourceLine(className, KIND_MOCK_WITH_ON_SOURCE, mockClassName, null);
+        }
+    }
+
+    private void processMockClass(TypeElement mockClass) {
+        String mockClassName = descriptorUtil.getInternalName(mockClass);
+        lines.add(LINE_MOCK + " " + mockClassName);
+        if (mockClass.getNestingKind() == NestingKind.MEMBER &&
+            mockClass.getEnclosingElement().getKind().isClass()) {
+            if (mockClass.getModifiers().contains(Modifier.STATIC)) {
+                String kind = getAnnotation(mockClass, MOCK_CONTAINER) == null ? KIND_INNER_MOCK : KIND_INNER_CONTAINER;
+                for (String sourceClassName : getSourceClassNames((TypeElement)mockClass.getEnclosingElement())) {
+                    addSourceLine(sourceClassName, kind, mockClassName, null);
+                }
+            }
+        }
+        if (mockClassName.endsWith(MOCK_POSTFIX) && !mockClassName.endsWith("$" + MOCK_POSTFIX)) {
+            addSourceLine(mockClassName.substring(0, mockClassName.length() - MOCK_POSTFIX.length()),
+                KIND_OUTER_MOCK, mockClassName, null);
+        }
+        for (ExecutableElement method : getAllMethods(mockClass)) {
+            addTargetLine(mockClassName, method);
+        }
+        AnnotationMirror mockContainer = getAnnotation(mockClass, MOCK_CONTAINER);
+        if (mockContainer != null) {
+            for (TypeElement inheritedClass : getTypeListParameter(mockContainer, FIELD_INHERITS)) {
+                for (ExecutableElement method : getAllMethods(inheritedClass)) {
+                    addTargetLine(mockClassName, method);
+                }
+            }
+        }
+    }
+
+    private void addSourceLine(String sourceClassName, String kind, String mockClassName, String testClassName) {
+        lines.add(LINE_SOURCE + " " + sourceClassName + " " + kind + " " + mockClassName +
+            (testClassName == null ? "" : " " + testClassName));
+    }
+
+    private void addTargetLine(String mockClassName, ExecutableElement method) {
+        if (getAnnotation(method, MOCK_NEW) != null) {
+            TypeMirror returnType = method.getReturnType();
+            String desc = descriptorUtil.getMethodDescriptor(method, 0);
+            if (returnType.getKind() == TypeKind.DECLARED && desc != null) {
+                addTargetLine(mockClassName, getInternalName(returnType), CONSTRUCTOR, desc);
+            }
+            return;
+        }
+        AnnotationMirror mockInvoke = getAnnotation(method, MOCK_INVOKE);
+        if (mockInvoke == null) {
+            return;
+        }
+        String targetMethod = getParameter(mockInvoke, FIELD_TARGET_METHOD);
+        String methodName = (targetMethod == null) ? method.getSimpleName().toString() : targetMethod;
+        TypeElement targetClass = getTypeParameter(mockInvoke, FIELD_TARGET_CLASS);
+        String targetClassName = getParameter(mockInvoke, FIELD_TARGET_CLASS_NAME);
+        if (targetClass != null || targetClassName != null) {
+            String ownerName = (targetClass != null) ? descriptorUtil.getInternalName(targetClass) :
+                targetClassName.replace('.', '/');
+            String desc = descriptorUtil.getMethodDescriptor(method, 0);
+            if (desc != null) {
+                addTargetLine(mockClassName, ownerName, methodName, desc);
+            }
+        } else if (!method.getParameters().isEmpty()) {
+            TypeMirror ownerType = processingEnv.getTypeUtils().erasure(method.getParameters().get(0).asType());
+            String desc = descriptorUtil.getMethodDescriptor(method, 1);
+            if (ownerType.getKind() == TypeKind.DECLARED && desc != null) {
+                addTargetLine(mockClassName, getInternalName(ownerType), methodName, desc);
+            }
+        }
+    }
+
+    private void addTargetLine(String mockClassName, String ownerName, String methodName, String desc) {
+        lines.add(LINE_TARGET + " " + mockClassName + " " + ownerName + " " + methodName + " " + desc);
+    }
+
+    /**
+     * Read lines of classes which still exist but not in current compilation from existing index file
+     */
+    private List<String> readIndex() {
+        List<String> keptLines = new ArrayList<String>();
+        BufferedReader reader;
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            reader = new BufferedReader(new InputStreamReader(file.openInputStream(), CHARSET));
+        } catch (IOException e) {
+            // no index file yet
+            return keptLines;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String className = getRecordedClassName(line);
+                if (className == null) {
+                    continue;
+                }
+                String topLevelClassName = className.contains("$") ?
+                    className.substring(0, className.indexOf('$')) : className;
+                if (!compiledClasses.contains(topLevelClassName) &&
+                    processingEnv.getElementUtils().getTypeElement(topLevelClassName.replace('/', '.')) != null) {
+                    keptLines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read existing mock index: " + e.getMessage());
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        return keptLines;
+    }
+
+    /**
+     * Get the class whose annotations generated specified index line
+     */
+    private String getRecordedClassName(String line) {
+        String[] columns = line.split(SEPARATOR);
+        if (columns[0].equals(LINE_SOURCE) && columns.length >= 4) {
+            if (columns[2].equals(KIND_MOCK_WITH_ON_SOURCE)) {
+                return columns[1];
+            }
+            return columns[2].equals(KIND_MOCK_WITH_ON_TEST) && columns.length > 4 ? columns[4] : columns[3];
+        } else if ((columns[0].equals(LINE_MOCK) || columns[0].equals(LINE_TARGET)) && columns.length >= 2) {
+            return columns[1];
+        }
+        return null;
+    }
+
+    private void writeIndex(List<String> existingLines) {
+        Set<String> allLines = new LinkedHashSet<String>(existingLines);
+        allLines.addAll(lines);
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            Writer writer = file.openWriter();
+            try {
+                for (String line : allLines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write mock index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Source classes which would look for mock class in specified test class, including test classes nested
+     * in it with @Nested annotation
+     */
+    private List<String> getSourceClassNames(TypeElement testClass) {
+        List<String> sourceClassNames = new ArrayList<String>();
+        String testClassName = descriptorUtil.getInternalName(testClass);
+        if (testClassName.endsWith(TEST_POSTFIX)) {
+            sourceClassNames.add(testClassName.substring(0, testClassName.length() - TEST_POSTFIX.length()));
+        }
+        for (TypeElement innerClass : ElementFilter.typesIn(testClass.getEnclosedElements())) {
+            String innerClassName = descriptorUtil.getInternalName(innerClass);
+            if (getAnnotation(innerClass, JUNIT5_NESTED) != null && innerClassName.endsWith(TEST_POSTFIX)) {
+                sourceClassNames.add(innerClassName.substring(0, innerClassName.length() - TEST_POSTFIX.length()));
+            }
+        }
+        return sourceClassNames;
+    }
+
+    /**
+     * Same as agent, a class is mock class when it has @MockContainer annotation, or any method with
+     * @MockInvoke or @MockNew annotation (including inherited methods if class name ends with "Mock")
+     */
+    private boolean isMockClass(TypeElement type) {
+        if (getAnnotation(type, MOCK_CONTAINER) != null) {
+            return true;
+        }
+        List<ExecutableElement> methods = type.getSimpleName().toString().endsWith(MOCK_POSTFIX) ?
+            getAllMethods(type) : ElementFilter.methodsIn(type.getEnclosedElements());
+        for (ExecutableElement method : methods) {
+            if (getAnnotation(method, MOCK_INVOKE) != null || getAnnotation(method, MOCK_NEW) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Methods declared in the class, its super classes and interfaces
+     */
+    private List<ExecutableElement> getAllMethods(TypeElement type) {
+        List<ExecutableElement> methods = new ArrayList<ExecutableElement>(
+            ElementFilter.methodsIn(type.getEnclosedElements()));
+        TypeMirror superClass = type.getSuperclass();
+        if (superClass.getKind() == TypeKind.DECLARED &&
+            !Object.class.getName().equals(getInternalName(superClass).replace('/', '.'))) {
+            methods.addAll(getAllMethods((TypeElement)((DeclaredType)superClass).asElement()));
+        }
+        for (TypeMirror interfaceType : type.getInterfaces()) {
+            if (interfaceType.getKind() == TypeKind.DECLARED) {
+                methods.addAll(getAllMethods((TypeElement)((DeclaredType)interfaceType).asElement()));
+            }
+        }
+        return methods;
+    }
+
+    private String getInternalName(TypeMirror type) {
+        return descriptorUtil.getInternalName((TypeElement)((DeclaredType)type).asElement());
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror an : element.getAnnotationMirrors()) {
+            if (((TypeElement)an.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return an;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get explicitly assigned annotation parameter in text form, enum value is represented by its name
+     */
+    private String getParameter(AnnotationMirror an, String key) {
+        AnnotationValue value = getValue(an, key);
+        if (value == null) {
+            return null;
+        }
+        Object v = value.getValue();
+        return (v instanceof VariableElement) ? ((VariableElement)v).getSimpleName().toString() : v.toString();
+    }
+
+    private TypeElement getTypeParameter(AnnotationMirror an, String key) {
+        AnnotationValue value = getValue(an, key);
+        return (value == null) ? null : toTypeElement(value.getValue());
+    }
+
+    private List<TypeElement> getTypeListParameter(AnnotationMirror an, String key) {
+        List<TypeElement> types = new ArrayList<TypeElement>();
+        AnnotationValue value = getValue(an, key);
+        if (value != null && value.getValue() instanceof List) {
+            for (Object v : (List<?>)value.getValue()) {
+                TypeElement type = toTypeElement(((AnnotationValue)v).getValue());
+                if (type != null) {
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+
+    private TypeElement toTypeElement(Object value) {
+        if (value instanceof DeclaredType) {
+            return (TypeElement)((DeclaredType)value).asElement();
+        }
+        return null;
+    }
+
+    private AnnotationValue getValue(AnnotationMirror an, String key) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : an.getElementValues().entrySet()) {
+            if (e.getKey().getSimpleName().contentEquals(key)) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+}
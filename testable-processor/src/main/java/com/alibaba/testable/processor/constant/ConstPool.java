@@ -8,5 +8,11 @@ public final class ConstPool {
     public static final String ENABLE_PRIVATE_ACCESS = "com.alibaba.testable.processor.annotation.EnablePrivateAccess";
     public static final String TESTABLE_PRIVATE_ACCESSOR = "com.alibaba.testable.core.tool.PrivateAccessor";
     public static final String TEST_POSTFIX = "Test";
+    public static final String MOCK_POSTFIX = "Mock";
+    public static final String MOCK_INVOKE = "com.alibaba.testable.core.annotation.MockInvoke";
+    public static final String MOCK_NEW = "com.alibaba.testable.core.annotation.MockNew";
+    public static final String MOCK_CONTAINER = "com.alibaba.testable.core.annotation.MockContainer";
+    public static final String MOCK_WITH = "com.alibaba.testable.core.annotation.MockWith";
+    public static final String JUNIT5_NESTED = "org.junit.jupiter.api.Nested";
 
 }
@@ -65,4 +65,32 @@ public class PrivateAccessStatementGenerator extends BaseGenerator {
         params.addAll(expr.args);
         return cx.treeMaker.Apply(List.<JCExpression>nil(), invoker, params.toList());
     }
+
+    public JCExpression fetchTypedGetterStatement(String accessorClass, JCFieldAccess access, boolean isStatic) {
+        JCFieldAccess getter = cx.treeMaker.Select(nameToExpression(accessorClass),
+            cx.names.fromString(PrivateAccessorClassGenerator.getterName(access.name.toString())));
+        return cx.treeMaker.Apply(List.<JCExpression>nil(), getter,
+            isStatic ? List.<JCExpression>nil() : List.of(access.selected));
+    }
+
+    public JCExpression fetchTypedSetterStatement(String accessorClass, JCAssign assign, boolean isStatic) {
+        JCFieldAccess lhs = (JCFieldAccess)assign.lhs;
+        JCFieldAccess setter = cx.treeMaker.Select(nameToExpression(accessorClass),
+            cx.names.fromString(PrivateAccessorClassGenerator.setterName(lhs.name.toString())));
+        return cx.treeMaker.Apply(List.<JCExpression>nil(), setter,
+            isStatic ? List.of(assign.rhs) : List.of(lhs.selected, assign.rhs));
+    }
+
+    public JCExpression fetchTypedInvokeStatement(String accessorClass, JCMethodInvocation expr, boolean isStatic) {
+        JCFieldAccess meth = (JCFieldAccess)expr.meth;
+        JCFieldAccess invoker = cx.treeMaker.Select(nameToExpression(accessorClass),
+            cx.names.fromString(PrivateAccessorClassGenerator.invokerName(meth.name.toString())));
+        ListBuffer<JCExpression> params = new ListBuffer<JCExpression>();
+        if (!isStatic) {
+            params.add(meth.selected);
+        }
+        params.addAll(expr.args);
+        return cx.treeMaker.Apply(List.<JCExpression>nil(), invoker, params.toList());
+    }
+
 }
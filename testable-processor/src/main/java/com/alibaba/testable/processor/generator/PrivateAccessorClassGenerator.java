@@ -0,0 +1,192 @@
+package com.alibaba.testable.processor.generator;
+
+import com.alibaba.testable.processor.model.TestableContext;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.testable.processor.constant.ConstPool.TESTABLE_PRIVATE_ACCESSOR;
+
+/**
+ * Generate accessor class with one typed static method per private member of source class,
+ * each backed by a lazily resolved handle, so that accessing the member needs no name lookup at runtime
+ * One accessor class is generated for each test class, which is its only originating element
+ *
+ * @author flin
+ */
+public class PrivateAccessorClassGenerator {
+
+    private static final String ACCESSOR_POSTFIX = "_PrivateAccessor";
+    private static final String GETTER_PREFIX = "get_";
+    private static final String SETTER_PREFIX = "set_";
+    private static final String INVOKER_PREFIX = "invoke_";
+    private static final String FIELD_HANDLE_PREFIX = "field_";
+    private static final String METHOD_HANDLE_PREFIX = "method_";
+    private static final String COMPILED_FIELD = "com.alibaba.testable.core.tool.CompiledField<Object>";
+    private static final String COMPILED_METHOD = "com.alibaba.testable.core.tool.CompiledMethod<Object>";
+
+    private final TestableContext cx;
+
+    public PrivateAccessorClassGenerator(TestableContext cx) {
+        this.cx = cx;
+    }
+
+    public static String getterName(String fieldName) {
+        return GETTER_PREFIX + fieldName;
+    }
+
+    public static String setterName(String fieldName) {
+        return SETTER_PREFIX + fieldName;
+    }
+
+    public static String invokerName(String methodName) {
+        return INVOKER_PREFIX + methodName;
+    }
+
+    /**
+     * Check whether a type could be referred by generated accessor class
+     * @param type type to check
+     * @param packageName package of the accessor class
+     */
+    public boolean isAccessible(TypeMirror type, String packageName) {
+        while (type.getKind() == TypeKind.ARRAY) {
+            type = ((ArrayType)type).getComponentType();
+        }
+        type = cx.typeUtils.erasure(type);
+        if (type.getKind().isPrimitive()) {
+            return true;
+        } else if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        for (Element e = ((DeclaredType)type).asElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            NestingKind nestingKind = ((TypeElement)e).getNestingKind();
+            if (nestingKind == NestingKind.LOCAL || nestingKind == NestingKind.ANONYMOUS ||
+                e.getModifiers().contains(Modifier.PRIVATE) || (!e.getModifiers().contains(Modifier.PUBLIC) &&
+                !cx.elementUtils.getPackageOf(e).getQualifiedName().contentEquals(packageName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get full name of accessor class
+     * @param testClassBinaryName binary name of test class, e.g. "com.demo.DemoTest$InnerTest"
+     */
+    public static String getAccessorClassName(String testClassBinaryName) {
+        return testClassBinaryName.replace('$', '_') + ACCESSOR_POSTFIX;
+    }
+
+    /**
+     * Generate accessor class for specified test class
+     * @param testClass test class which accesses private members
+     * @param sourceClass class whose private members to access
+     * @param fields fields to generate getter and setter
+     * @param methods methods to generate invoker
+     * @return full name of the accessor class, null if failed to generate
+     */
+    public String generate(TypeElement testClass, TypeElement sourceClass, Map<String, VariableElement> fields,
+                           Map<String, ExecutableElement> methods) {
+        String packageName = cx.elementUtils.getPackageOf(testClass).getQualifiedName().toString();
+        String fullName = getAccessorClassName(cx.elementUtils.getBinaryName(testClass).toString());
+        String simpleName = fullName.substring(fullName.lastIndexOf('.') + 1);
+        try {
+            Writer writer = cx.filter.createSourceFile(fullName, testClass).openWriter();
+            try {
+                writer.write(generateSource(sourceClass, packageName, simpleName, fields, methods));
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            cx.logger.info("Failed to generate accessor class \"" + fullName + "\": " + e.getMessage());
+            return null;
+        }
+        return fullName;
+    }
+
+    private String generateSource(TypeElement sourceClass, String packageName, String simpleName,
+                                  Map<String, VariableElement> fields, Map<String, ExecutableElement> methods) {
+        String sourceType = sourceClass.getQualifiedName().toString();
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("/**\n * Private member accessors of ").append(sourceType)
+            .append(", generated by testable processor\n */\n");
+        sb.append("@SuppressWarnings(\"unchecked\")\n");
+        sb.append("public final class ").append(simpleName).append(" {\n");
+        for (Map.Entry<String, VariableElement> entry : fields.entrySet()) {
+            appendFieldAccessor(sb, sourceType, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, ExecutableElement> entry : methods.entrySet()) {
+            appendMethodAccessor(sb, sourceType, entry.getKey(), entry.getValue());
+        }
+        sb.append("\n}\n");
+        return sb.toString();
+    }
+
+    private void appendFieldAccessor(StringBuilder sb, String sourceType, String name, VariableElement field) {
+        boolean isStatic = field.getModifiers().contains(Modifier.STATIC);
+        String handle = FIELD_HANDLE_PREFIX + name;
+        String ref = isStatic ? "null" : "ref";
+        String refParameter = isStatic ? "" : sourceType + " ref";
+        sb.append("\n    private static ").append(COMPILED_FIELD).append(" ").append(handle).append(";\n");
+        sb.append("\n    private static ").append(COMPILED_FIELD).append(" ").append(handle).append("() {\n");
+        sb.append("        if (").append(handle).append(" == null) {\n");
+        sb.append("            ").append(handle).append(" = ").append(TESTABLE_PRIVATE_ACCESSOR).append(".compileField(")
+            .append(sourceType).append(".class, \"").append(name).append("\");\n");
+        sb.append("        }\n        return ").append(handle).append(";\n    }\n");
+        sb.append("\n    public static <T> T ").append(getterName(name)).append("(").append(refParameter).append(") {\n");
+        sb.append("        return (T)").append(handle).append("().get(").append(ref).append(");\n    }\n");
+        sb.append("\n    public static void ").append(setterName(name)).append("(").append(refParameter)
+            .append(isStatic ? "" : ", ").append(typeName(field.asType())).append(" value) {\n");
+        sb.append("        ").append(handle).append("().set(").append(ref).append(", value);\n    }\n");
+    }
+
+    private void appendMethodAccessor(StringBuilder sb, String sourceType, String name, ExecutableElement method) {
+        boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+        String handle = METHOD_HANDLE_PREFIX + name;
+        List<? extends VariableElement> parameterTypes = method.getParameters();
+        StringBuilder types = new StringBuilder();
+        StringBuilder parameters = new StringBuilder(isStatic ? "" : sourceType + " ref");
+        // always pass arguments as array, in case of single array-typed parameter
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            String typeName = typeName(parameterTypes.get(i).asType());
+            types.append(", ").append(typeName).append(".class");
+            parameters.append(parameters.length() == 0 ? "" : ", ").append(typeName).append(" p").append(i);
+            arguments.append(i == 0 ? "p" : ", p").append(i);
+        }
+        sb.append("\n    private static ").append(COMPILED_METHOD).append(" ").append(handle).append(";\n");
+        sb.append("\n    private static ").append(COMPILED_METHOD).append(" ").append(handle).append("() {\n");
+        sb.append("        if (").append(handle).append(" == null) {\n");
+        sb.append("            ").append(handle).append(" = ").append(TESTABLE_PRIVATE_ACCESSOR).append(".compile(")
+            .append(sourceType).append(".class, \"").append(name).append("\"").append(types).append(");\n");
+        sb.append("        }\n        return ").append(handle).append(";\n    }\n");
+        sb.append("\n    public static <T> T ").append(invokerName(name)).append("(").append(parameters).append(") {\n");
+        sb.append("        return (T)").append(handle).append("().invoke(").append(isStatic ? "null" : "ref")
+            .append(", new Object[] {").append(arguments).append("});\n    }\n");
+    }
+
+    /**
+     * Erased type name in source form, e.g. "int", "java.util.List", "java.lang.String[]"
+     */
+    private String typeName(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType)type).getComponentType()) + "[]";
+        }
+        type = cx.typeUtils.erasure(type);
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement)((DeclaredType)type).asElement()).getQualifiedName().toString();
+        }
+        return type.getKind().name().toLowerCase();
+    }
+
+}
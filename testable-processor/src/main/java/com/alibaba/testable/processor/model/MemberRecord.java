@@ -1,5 +1,7 @@
 package com.alibaba.testable.processor.model;
 
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -26,5 +28,13 @@ public class MemberRecord {
      * Record non-private methods and possible parameter counts (negative number means large or equals)
      */
     public final Map<String, List<Integer>> nonPrivateMethods = new HashMap<String, List<Integer>>();
+    /**
+     * Record elements of fields, the one declared in sub class first when name duplicated
+     */
+    public final Map<String, VariableElement> fields = new HashMap<String, VariableElement>();
+    /**
+     * Record elements of methods, the one declared in sub class first when name duplicated
+     */
+    public final Map<String, ExecutableElement> methods = new HashMap<String, ExecutableElement>();
 
 }
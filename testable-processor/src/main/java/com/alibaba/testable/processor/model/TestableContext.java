@@ -8,6 +8,8 @@ import com.sun.tools.javac.util.Names;
 import javax.annotation.processing.Filer;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author flin
@@ -49,6 +51,12 @@ public class TestableContext {
      */
     public final Names names;
 
+    /**
+     * Member information of source classes scanned in current round
+     * Full name of source class → member record
+     */
+    public final Map<String, MemberRecord> memberRecords = new HashMap<String, MemberRecord>();
+
     public TestableContext(TestableLogger logger, Filer filter, Elements elementUtils,
                            Types typeUtils, JavacTrees trees, TreeMaker treeMaker, Names names) {
         this.logger = logger;
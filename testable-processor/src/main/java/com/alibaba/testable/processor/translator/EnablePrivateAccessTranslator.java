@@ -1,26 +1,22 @@
 package com.alibaba.testable.processor.translator;
 
 import com.alibaba.testable.processor.generator.PrivateAccessStatementGenerator;
+import com.alibaba.testable.processor.generator.PrivateAccessorClassGenerator;
 import com.alibaba.testable.processor.model.MemberRecord;
 import com.alibaba.testable.processor.model.MemberType;
 import com.alibaba.testable.processor.model.Parameters;
 import com.alibaba.testable.processor.model.TestableContext;
-import com.alibaba.testable.processor.util.PathUtil;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.tree.JCTree.*;
 import com.sun.tools.javac.util.ListBuffer;
 import com.sun.tools.javac.util.Name;
 
-import java.io.File;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.*;
 
 import static com.alibaba.testable.processor.constant.ConstPool.TEST_POSTFIX;
 
@@ -31,11 +27,6 @@ import static com.alibaba.testable.processor.constant.ConstPool.TEST_POSTFIX;
  */
 public class EnablePrivateAccessTranslator extends BaseTranslator {
 
-    private static final String IDEA_PATHS_SELECTOR = "idea.paths.selector";
-    private static final String USER_DIR = "user.dir";
-    private static final String GRADLE_CLASS_FOLDER = "/build/classes/java/main/";
-    private static final String MAVEN_CLASS_FOLDER = "/target/classes/";
-
     /**
      * Name of source class
      */
@@ -47,7 +38,18 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
     /**
      * Member information of source class
      */
-    private final MemberRecord memberRecord = new MemberRecord();
+    private final MemberRecord memberRecord;
+    /**
+     * Fields and methods of source class which could be accessed via typed accessor
+     */
+    private final Map<String, VariableElement> typedFields = new TreeMap<String, VariableElement>();
+    private final Map<String, ExecutableElement> typedMethods = new TreeMap<String, ExecutableElement>();
+    /**
+     * Full name of generated typed accessor class, null if not available
+     */
+    private String accessorClassName = null;
+
+    private final TestableContext cx;
 
     private final PrivateAccessStatementGenerator privateAccessStatementGenerator;
     private final PrivateAccessChecker privateAccessChecker;
@@ -61,18 +63,18 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
             sourceClassFullName = p.sourceClassName;
         }
         String sourceClassShortName = sourceClassFullName.substring(sourceClassFullName.lastIndexOf('.') + 1);
+        this.cx = cx;
         this.privateAccessStatementGenerator = new PrivateAccessStatementGenerator(cx);
         this.sourceClassName = cx.names.fromString(sourceClassShortName);
-        try {
-            Class<?> cls = getSourceClass(clazz, sourceClassFullName);
-            if (cls == null) {
-                cx.logger.fatal("Failed to load source class \"" + sourceClassFullName + "\"");
-            } else {
-                findAllPrivateMembers(cls);
-            }
-        } catch (Exception e) {
-            // for any reason, interrupt the compile process
-            cx.logger.fatal("Failed to load source class \"" + sourceClassFullName + "\": " + e);
+        TypeElement sourceClass = cx.elementUtils.getTypeElement(sourceClassFullName);
+        if (sourceClass == null) {
+            cx.logger.fatal("Failed to load source class \"" + sourceClassFullName + "\"");
+            this.memberRecord = new MemberRecord();
+        } else {
+            this.memberRecord = getMemberRecord(sourceClass);
+            PrivateAccessorClassGenerator generator = new PrivateAccessorClassGenerator(cx);
+            findTypedMembers(sourceClass, generator, cx.elementUtils.getPackageOf(clazz).getQualifiedName().toString());
+            accessorClassName = generator.generate(clazz, sourceClass, typedFields, typedMethods);
         }
         this.privateAccessChecker = (p.verifyTargetExistence == null || p.verifyTargetExistence) ?
             new PrivateAccessChecker(cx, sourceClassShortName, memberRecord) : null;
@@ -80,6 +82,7 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
 
     /**
      * var = d.privateMethod(args) → var = PrivateAccessor.invoke(d, "privateMethod", args)
+     * or var = Demo_PrivateAccessor.invoke_privateMethod(d, args) when typed accessor available
      */
     @Override
     public void visitVarDef(JCVariableDecl jcVariableDecl) {
@@ -99,8 +102,12 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
     public void visitExec(JCExpressionStatement jcExpressionStatement) {
         // visitExec could be an assign statement to a private field
         if (jcExpressionStatement.expr instanceof JCAssign) {
-            MemberType memberType = checkSetterType((JCAssign)jcExpressionStatement.expr);
-            if (memberType.equals(MemberType.PRIVATE_OR_FINAL)) {
+            JCAssign assign = (JCAssign)jcExpressionStatement.expr;
+            MemberType memberType = checkSetterType(assign);
+            if (isTypedField(((JCFieldAccess)assign.lhs).name, memberType)) {
+                jcExpressionStatement.expr = privateAccessStatementGenerator.fetchTypedSetterStatement(
+                    accessorClassName, assign, memberType.equals(MemberType.STATIC_PRIVATE));
+            } else if (memberType.equals(MemberType.PRIVATE_OR_FINAL)) {
                 jcExpressionStatement.expr = privateAccessStatementGenerator.fetchSetterStatement(
                     (JCAssign)jcExpressionStatement.expr);
             } else if (memberType.equals(MemberType.STATIC_PRIVATE)) {
@@ -145,7 +152,10 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
         // check is accessing a private field of source class
         if (expr instanceof JCFieldAccess) {
             MemberType memberType = checkGetterType((JCFieldAccess)expr);
-            if (memberType.equals(MemberType.PRIVATE_OR_FINAL)) {
+            if (isTypedField(((JCFieldAccess)expr).name, memberType)) {
+                expr = privateAccessStatementGenerator.fetchTypedGetterStatement(accessorClassName,
+                    (JCFieldAccess)expr, memberType.equals(MemberType.STATIC_PRIVATE));
+            } else if (memberType.equals(MemberType.PRIVATE_OR_FINAL)) {
                 expr = privateAccessStatementGenerator.fetchGetterStatement((JCFieldAccess)expr);
             } else if (memberType.equals(MemberType.STATIC_PRIVATE)) {
                 expr = privateAccessStatementGenerator.fetchStaticGetterStatement((JCFieldAccess)expr);
@@ -155,7 +165,10 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
         if (expr instanceof JCMethodInvocation) {
             JCMethodInvocation invocation = (JCMethodInvocation)expr;
             MemberType memberType = checkInvokeType(invocation);
-            if (memberType.equals(MemberType.PRIVATE_OR_FINAL)) {
+            if (isTypedMethod(invocation, memberType)) {
+                expr = privateAccessStatementGenerator.fetchTypedInvokeStatement(accessorClassName,
+                    invocation, memberType.equals(MemberType.STATIC_PRIVATE));
+            } else if (memberType.equals(MemberType.PRIVATE_OR_FINAL)) {
                 expr = privateAccessStatementGenerator.fetchInvokeStatement(invocation);
             } else if (memberType.equals(MemberType.STATIC_PRIVATE)) {
                 expr = privateAccessStatementGenerator.fetchStaticInvokeStatement(invocation);
@@ -172,62 +185,53 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
         return expr;
     }
 
-    private Class<?> getSourceClass(Symbol.ClassSymbol clazz, String sourceClassFullName)
-        throws MalformedURLException, ClassNotFoundException {
-        Class<?> cls;
-        try {
-            // maven build goes here
-            cls = Class.forName(sourceClassFullName);
-        } catch (ClassNotFoundException e) {
-            if (System.getProperty(IDEA_PATHS_SELECTOR) != null) {
-                // fit for intellij build
-                String sourceFileWrapperString = clazz.sourcefile.toString();
-                String sourceFilePath = sourceFileWrapperString.substring(
-                    sourceFileWrapperString.lastIndexOf("[") + 1, sourceFileWrapperString.indexOf("]"));
-                int indexOfSrc = sourceFilePath.lastIndexOf(File.separator + "src" + File.separator);
-                String basePath = sourceFilePath.substring(0, indexOfSrc);
-                try {
-                    String targetFolderPath = PathUtil.fitPathString(basePath + MAVEN_CLASS_FOLDER);
-                    cls = loadClass(targetFolderPath, sourceClassFullName);
-                } catch (ClassNotFoundException e2) {
-                    String buildFolderPath = PathUtil.fitPathString(basePath + GRADLE_CLASS_FOLDER);
-                    cls = loadClass(buildFolderPath, sourceClassFullName);
-                }
-            } else {
-                // fit for gradle build
-                String path = PathUtil.fitPathString("file:" + System.getProperty(USER_DIR) + GRADLE_CLASS_FOLDER);
-                cls = loadClass(path, sourceClassFullName);
+    /**
+     * Scan members of source class and its parents via element model, the result is shared in current round
+     */
+    private MemberRecord getMemberRecord(TypeElement sourceClass) {
+        String key = sourceClass.getQualifiedName().toString();
+        MemberRecord record = cx.memberRecords.get(key);
+        if (record == null) {
+            record = new MemberRecord();
+            for (TypeElement type = sourceClass; type != null; type = getSuperClass(type)) {
+                findAllPrivateMembers(type, record);
             }
+            cx.memberRecords.put(key, record);
         }
-        return cls;
+        return record;
     }
 
-    private Class<?> loadClass(String targetFolderPath, String sourceClassFullName)
-        throws ClassNotFoundException, MalformedURLException {
-        return new URLClassLoader(new URL[] {new URL(targetFolderPath)}).loadClass(sourceClassFullName);
+    private TypeElement getSuperClass(TypeElement type) {
+        TypeMirror superClass = type.getSuperclass();
+        return superClass.getKind() == TypeKind.DECLARED ? (TypeElement)((DeclaredType)superClass).asElement() : null;
     }
 
-    private void findAllPrivateMembers(Class<?> cls) {
-        Field[] fields = cls.getDeclaredFields();
-        for (Field f : fields) {
-            if (Modifier.isFinal(f.getModifiers()) || Modifier.isPrivate(f.getModifiers())
-                || Modifier.isProtected(f.getModifiers())) {
-                memberRecord.privateOrFinalFields.add(f.getName());
-            } else {
-                memberRecord.nonPrivateNorFinalFields.add(f.getName());
-            }
-        }
-        Method[] methods = cls.getDeclaredMethods();
-        for (final Method m : methods) {
-            if (Modifier.isPrivate(m.getModifiers()) || Modifier.isProtected(m.getModifiers())) {
-                checkAndAdd(memberRecord.privateMethods, m.getName(), getParameterLength(m));
-            } else {
-                checkAndAdd(memberRecord.nonPrivateMethods, m.getName(), getParameterLength(m));
+    private void findAllPrivateMembers(TypeElement type, MemberRecord record) {
+        for (Element e : type.getEnclosedElements()) {
+            Set<Modifier> modifiers = e.getModifiers();
+            String name = e.getSimpleName().toString();
+            if (e.getKind() == ElementKind.FIELD || e.getKind() == ElementKind.ENUM_CONSTANT) {
+                if (modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.PRIVATE)
+                    || modifiers.contains(Modifier.PROTECTED)) {
+                    record.privateOrFinalFields.add(name);
+                } else {
+                    record.nonPrivateNorFinalFields.add(name);
+                }
+                if (!record.fields.containsKey(name)) {
+                    record.fields.put(name, (VariableElement)e);
+                }
+            } else if (e.getKind() == ElementKind.METHOD) {
+                ExecutableElement method = (ExecutableElement)e;
+                if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.PROTECTED)) {
+                    checkAndAdd(record.privateMethods, name, getParameterLength(method));
+                } else {
+                    checkAndAdd(record.nonPrivateMethods, name, getParameterLength(method));
+                }
+                if (!record.methods.containsKey(name)) {
+                    record.methods.put(name, method);
+                }
             }
         }
-        if (cls.getSuperclass() != null) {
-            findAllPrivateMembers(cls.getSuperclass());
-        }
     }
 
     private void checkAndAdd(Map<String, List<Integer>> map, String key, final int value) {
@@ -238,18 +242,81 @@ public class EnablePrivateAccessTranslator extends BaseTranslator {
         }
     }
 
-    private int getParameterLength(Method m) {
-        int length = m.getParameterTypes().length;
+    private int getParameterLength(ExecutableElement m) {
+        List<? extends VariableElement> parameters = m.getParameters();
+        int length = parameters.size();
         if (length == 0) {
             return 0;
         }
-        if (m.getParameterTypes()[length - 1].getName().startsWith("[")) {
+        if (parameters.get(length - 1).asType().getKind() == TypeKind.ARRAY) {
             return -(length - 1);
         } else {
             return length;
         }
     }
 
+    /**
+     * Find members which could be accessed via typed accessor, i.e. not overloaded nor shadowed,
+     * and all involved types are accessible from package of the accessor class
+     */
+    private void findTypedMembers(TypeElement sourceClass, PrivateAccessorClassGenerator generator,
+                                  String packageName) {
+        if (!generator.isAccessible(sourceClass.asType(), packageName) || isObject(sourceClass)) {
+            return;
+        }
+        for (String name : memberRecord.privateOrFinalFields) {
+            VariableElement field = memberRecord.fields.get(name);
+            if (!typedFields.containsKey(name) && !memberRecord.nonPrivateNorFinalFields.contains(name) &&
+                SourceVersion.isName(name) && !isObject(field.getEnclosingElement()) &&
+                generator.isAccessible(field.asType(), packageName)) {
+                typedFields.put(name, field);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : memberRecord.privateMethods.entrySet()) {
+            String name = entry.getKey();
+            if (entry.getValue().size() != 1 || entry.getValue().get(0) < 0 ||
+                memberRecord.nonPrivateMethods.containsKey(name) || !SourceVersion.isName(name)) {
+                continue;
+            }
+            ExecutableElement method = memberRecord.methods.get(name);
+            if (!isObject(method.getEnclosingElement()) && isAllAccessible(method, generator, packageName)) {
+                typedMethods.put(name, method);
+            }
+        }
+    }
+
+    private boolean isObject(Element type) {
+        return ((TypeElement)type).getQualifiedName().contentEquals(Object.class.getName());
+    }
+
+    private boolean isAllAccessible(ExecutableElement method, PrivateAccessorClassGenerator generator,
+                                    String packageName) {
+        for (VariableElement parameter : method.getParameters()) {
+            if (!generator.isAccessible(parameter.asType(), packageName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTypedField(Name name, MemberType memberType) {
+        if (accessorClassName == null || memberType.equals(MemberType.NON_PRIVATE)) {
+            return false;
+        }
+        VariableElement field = typedFields.get(name.toString());
+        return field != null &&
+            field.getModifiers().contains(Modifier.STATIC) == memberType.equals(MemberType.STATIC_PRIVATE);
+    }
+
+    private boolean isTypedMethod(JCMethodInvocation invocation, MemberType memberType) {
+        if (accessorClassName == null || memberType.equals(MemberType.NON_PRIVATE)) {
+            return false;
+        }
+        ExecutableElement method = typedMethods.get(((JCFieldAccess)invocation.meth).name.toString());
+        return method != null && method.getParameters().size() == invocation.args.length() &&
+            method.getModifiers().contains(Modifier.STATIC) == memberType.equals(MemberType.STATIC_PRIVATE);
+    }
+
     private MemberType checkGetterType(JCFieldAccess access) {
         if (access.selected instanceof JCIdent && memberRecord.privateOrFinalFields.contains(access.name.toString())) {
             return checkSourceClassOrIns(((JCIdent)access.selected).name);
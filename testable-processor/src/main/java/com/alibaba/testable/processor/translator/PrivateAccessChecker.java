@@ -20,9 +20,9 @@ public class PrivateAccessChecker {
 
     private static final String CLASS_NAME_PRIVATE_ACCESSOR = "PrivateAccessor";
     private static final List<String> FIELD_ACCESS_METHOD = Arrays.asList(new String[]
-        { "get", "set", "getStatic", "setStatic" }.clone());
+        { "get", "set", "getStatic", "setStatic", "compileField" }.clone());
     private static final List<String> FIELD_INVOKE_METHOD = Arrays.asList(new String[]
-        { "invoke", "invokeStatic" }.clone());
+        { "invoke", "invokeStatic", "compile" }.clone());
     private static final String TYPE_FIELD = "Field";
     private static final String TYPE_METHOD = "Method";
 
@@ -0,0 +1,75 @@
+package com.alibaba.testable.processor.util;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Convert element model to byte code format names, in accordance with what agent sees at runtime
+ *
+ * @author flin
+ */
+public class DescriptorUtil {
+
+    private final Elements elementUtils;
+    private final Types typeUtils;
+
+    public DescriptorUtil(Elements elementUtils, Types typeUtils) {
+        this.elementUtils = elementUtils;
+        this.typeUtils = typeUtils;
+    }
+
+    /**
+     * Get slash-separated binary name of class, e.g. "com/demo/Outer$Inner"
+     */
+    public String getInternalName(TypeElement type) {
+        return elementUtils.getBinaryName(type).toString().replace('.', '/');
+    }
+
+    /**
+     * Get byte code descriptor of type, generic types are erased
+     * @return descriptor, e.g. "Ljava/lang/String;", "[I"
+     */
+    public String getDescriptor(TypeMirror type) {
+        TypeMirror erasedType = typeUtils.erasure(type);
+        switch (erasedType.getKind()) {
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case CHAR: return "C";
+            case SHORT: return "S";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case VOID: return "V";
+            case ARRAY: return "[" + getDescriptor(((ArrayType)erasedType).getComponentType());
+            case DECLARED: return "L" + getInternalName((TypeElement)((DeclaredType)erasedType).asElement()) + ";";
+            default: return null;
+        }
+    }
+
+    /**
+     * Get byte code descriptor of method, e.g. "(Ljava/lang/String;I)V"
+     * @param firstParameter index of the first parameter to take, for skipping leading parameters
+     * @return descriptor, null if any parameter type is unresolvable
+     */
+    public String getMethodDescriptor(ExecutableElement method, int firstParameter) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = firstParameter; i < method.getParameters().size(); i++) {
+            VariableElement parameter = method.getParameters().get(i);
+            String descriptor = getDescriptor(parameter.asType());
+            if (descriptor == null) {
+                return null;
+            }
+            sb.append(descriptor);
+        }
+        String returnDescriptor = getDescriptor(method.getReturnType());
+        return returnDescriptor == null ? null : sb.append(')').append(returnDescriptor).toString();
+    }
+
+}
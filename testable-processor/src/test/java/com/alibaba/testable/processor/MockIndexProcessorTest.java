@@ -0,0 +1,110 @@
+package com.alibaba.testable.processor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.URI;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MockIndexProcessorTest {
+
+    private static final String ANNOTATION_PACKAGE = "package com.alibaba.testable.core.annotation; ";
+
+    @Test
+    void should_record_mock_classes_of_source_classes() throws IOException {
+        List<String> lines = compile(
+            source("com.alibaba.testable.core.annotation.MockInvoke", ANNOTATION_PACKAGE +
+                "public @interface MockInvoke { Class<?> targetClass() default Void.class; String targetMethod() default \"\"; }"),
+            source("com.alibaba.testable.core.annotation.MockNew", ANNOTATION_PACKAGE + "public @interface MockNew {}"),
+            source("com.alibaba.testable.core.annotation.MockWith", ANNOTATION_PACKAGE +
+                "public @interface MockWith { Class<?> value(); }"),
+            source("com.demo.Foo", "package com.demo; public class Foo {}"),
+            source("com.demo.FooTest", "package com.demo; import com.alibaba.testable.core.annotation.*; " +
+                "public class FooTest { public static class Mock { " +
+                "@MockInvoke(targetClass = String.class) int length() { return 0; } " +
+                "@MockInvoke(targetMethod = \"trim\") String doTrim(String self) { return self; } " +
+                "@MockNew java.util.List<String> createList(int size) { return null; } } }"),
+            source("com.demo.BarMock", "package com.demo; import com.alibaba.testable.core.annotation.*; " +
+                "public class BarMock { @MockInvoke int[] parse(Foo self, long[] values, Object o) { return null; } }"),
+            source("com.demo.BazTest", "package com.demo; @com.alibaba.testable.core.annotation.MockWith(BarMock.class) " +
+                "public class BazTest {}"));
+        assertTrue(lines.contains("source com/demo/Foo innerMock com/demo/FooTest$Mock"));
+        assertTrue(lines.contains("target com/demo/FooTest$Mock java/lang/String length ()I"));
+        assertTrue(lines.contains("target com/demo/FooTest$Mock java/lang/String trim ()Ljava/lang/String;"));
+        assertTrue(lines.contains("target com/demo/FooTest$Mock java/util/List <init> (I)Ljava/util/List;"));
+        assertTrue(lines.contains("source com/demo/Bar outerMock com/demo/BarMock"));
+        assertTrue(lines.contains("target com/demo/BarMock com/demo/Foo parse ([JLjava/lang/Object;)[I"));
+        assertTrue(lines.contains("source com/demo/Baz mockWithOnTest com/demo/BarMock com/demo/BazTest"));
+        assertFalse(lines.contains("source com/demo/FooTest$ outerMock com/demo/FooTest$Mock"));
+    }
+
+    @Test
+    void should_keep_lines_of_classes_not_recompiled() throws IOException {
+        JavaFileObject annotation = source("com.alibaba.testable.core.annotation.MockInvoke", ANNOTATION_PACKAGE +
+            "public @interface MockInvoke { Class<?> targetClass() default Void.class; }");
+        File output = createOutputFolder();
+        compile(output, annotation,
+            source("com.demo.FooMock", "package com.demo; public class FooMock { " +
+                "@com.alibaba.testable.core.annotation.MockInvoke(targetClass = String.class) int length() { return 0; } }"),
+            source("com.demo.BarMock", "package com.demo; public class BarMock { " +
+                "@com.alibaba.testable.core.annotation.MockInvoke(targetClass = String.class) int length() { return 0; } }"));
+        // partial recompiling, BarMock is no longer a mock class
+        List<String> lines = compile(output,
+            source("com.demo.BarMock", "package com.demo; public class BarMock {}"),
+            source("com.demo.BazMock", "package com.demo; public class BazMock { " +
+                "@com.alibaba.testable.core.annotation.MockInvoke(targetClass = String.class) int length() { return 0; } }"));
+        assertTrue(lines.contains("source com/demo/Foo outerMock com/demo/FooMock"));
+        assertTrue(lines.contains("target com/demo/FooMock java/lang/String length ()I"));
+        assertTrue(lines.contains("source com/demo/Baz outerMock com/demo/BazMock"));
+        assertFalse(lines.contains("mock com/demo/BarMock"));
+        assertFalse(lines.contains("target com/demo/BarMock java/lang/String length ()I"));
+    }
+
+    private List<String> compile(JavaFileObject... sources) throws IOException {
+        return compile(createOutputFolder(), sources);
+    }
+
+    private File createOutputFolder() {
+        File output = new File(System.getProperty("java.io.tmpdir"), "testable-index-" + System.nanoTime());
+        assertTrue(output.mkdirs());
+        return output;
+    }
+
+    private List<String> compile(File output, JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(output));
+        // classes compiled previously are on class path, same as incremental building
+        fileManager.setLocation(StandardLocation.CLASS_PATH, Collections.singletonList(output));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, null, null,
+            Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new MockIndexProcessor()));
+        assertTrue(task.call());
+        fileManager.close();
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(new File(output, MockIndexProcessor.INDEX_FILE)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+            JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+}
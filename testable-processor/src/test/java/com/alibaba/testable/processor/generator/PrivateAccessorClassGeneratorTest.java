@@ -0,0 +1,18 @@
+package com.alibaba.testable.processor.generator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrivateAccessorClassGeneratorTest {
+
+    @Test
+    void should_get_accessor_class_name() {
+        assertEquals("com.demo.DemoTest_PrivateAccessor",
+            PrivateAccessorClassGenerator.getAccessorClassName("com.demo.DemoTest"));
+        assertEquals("com.demo.DemoTest_InnerTest_PrivateAccessor",
+            PrivateAccessorClassGenerator.getAccessorClassName("com.demo.DemoTest$InnerTest"));
+        assertEquals("DemoTest_PrivateAccessor", PrivateAccessorClassGenerator.getAccessorClassName("DemoTest"));
+    }
+
+}